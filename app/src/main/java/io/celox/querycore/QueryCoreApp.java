@@ -9,6 +9,8 @@ import androidx.multidex.MultiDexApplication;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 
+import io.celox.querycore.models.SpillSettings;
+
 public class QueryCoreApp extends MultiDexApplication {
     
     private static final String TAG = "QueryCore";
@@ -26,6 +28,10 @@ public class QueryCoreApp extends MultiDexApplication {
         // Setup thread exception handling
         setupUncaughtExceptionHandler();
         
+        // Large query results spill to the cache dir instead of filling the heap.
+        // An eighth of the heap per result leaves room for the displayed and the next result.
+        SpillSettings.getInstance().configure(getCacheDir(), Runtime.getRuntime().maxMemory() / 8);
+        
         // Allow network operations on main thread during development
         // WARNING: This should be removed for production!
         StrictMode.ThreadPolicy policy = new StrictMode.ThreadPolicy.Builder()
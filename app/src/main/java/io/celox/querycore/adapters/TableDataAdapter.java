@@ -10,19 +10,59 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import io.celox.querycore.R;
+import io.celox.querycore.database.PageRequest;
+import io.celox.querycore.database.TablePage;
+import io.celox.querycore.models.QueryResult;
 
 public class TableDataAdapter extends RecyclerView.Adapter<TableDataAdapter.TableDataViewHolder> {
     
-    private List<Map<String, Object>> data = new ArrayList<>();
+    // Pages kept in memory around the scroll position, older ones are dropped and loaded again when needed
+    public static final int DEFAULT_RETAINED_PAGES = 5;
+    
+    private final int retainedPages;
+    private final ArrayDeque<Page> pages = new ArrayDeque<>();
+    // Requests of pages dropped from the top, the last one is the page right above the first retained one
+    private final ArrayDeque<PageRequest> droppedAbove = new ArrayDeque<>();
+    private PageRequest nextRequest;
+    private int rowCount = 0;
     private Map<String, String> structure = new LinkedHashMap<>();
     private List<String> columns = new ArrayList<>();
     
+    /**
+     * Rows of one result, a single page when showing a plain query result
+     */
+    private static class Page {
+        final TablePage source;
+        final QueryResult rows;
+        final long firstRow;
+        // Result column index for each displayed column, -1 if the result lacks it
+        int[] columnIndexes = new int[0];
+        
+        Page(TablePage source, QueryResult rows, long firstRow) {
+            this.source = source;
+            this.rows = rows;
+            this.firstRow = firstRow;
+        }
+    }
+    
+    public TableDataAdapter() {
+        this(DEFAULT_RETAINED_PAGES);
+    }
+    
+    /**
+     * @param retainedPages Number of pages kept before dropping the one farthest from the newly loaded page
+     */
+    public TableDataAdapter(int retainedPages) {
+        this.retainedPages = Math.max(2, retainedPages);
+    }
+    
     @NonNull
     @Override
     public TableDataViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -33,24 +73,36 @@ public class TableDataAdapter extends RecyclerView.Adapter<TableDataAdapter.Tabl
     
     @Override
     public void onBindViewHolder(@NonNull TableDataViewHolder holder, int position) {
-        Map<String, Object> rowData = data.get(position);
-        
         // Clear existing views
         holder.tableRow.removeAllViews();
         
+        // Find the page of the row, only a handful of pages are retained
+        Page page = null;
+        int row = position;
+        for (Page candidate : pages) {
+            if (row < candidate.rows.getRowCount()) {
+                page = candidate;
+                break;
+            }
+            row -= candidate.rows.getRowCount();
+        }
+        if (page == null) {
+            return;
+        }
+        
         // Add row number column
         TextView rowNumberView = new TextView(holder.itemView.getContext());
         rowNumberView.setPadding(16, 8, 16, 8);
-        rowNumberView.setText(String.valueOf(position + 1));
+        rowNumberView.setText(String.valueOf(page.firstRow + row + 1));
         holder.tableRow.addView(rowNumberView);
         
         // Add data columns
-        for (String column : columns) {
+        for (int columnIndex : page.columnIndexes) {
             TextView textView = new TextView(holder.itemView.getContext());
             textView.setPadding(16, 8, 16, 8);
             
-            Object value = rowData.get(column);
-            textView.setText(value != null ? value.toString() : "null");
+            String text = columnIndex >= 0 ? page.rows.getText(row, columnIndex) : null;
+            textView.setText(text != null ? text : "null");
             
             holder.tableRow.addView(textView);
         }
@@ -58,18 +110,121 @@ public class TableDataAdapter extends RecyclerView.Adapter<TableDataAdapter.Tabl
     
     @Override
     public int getItemCount() {
-        return data.size();
+        return rowCount;
     }
     
-    public void setData(List<Map<String, Object>> data) {
-        this.data = data;
+    /**
+     * Show a single result, replacing all pages. The caller keeps ownership of the result.
+     */
+    public void setData(QueryResult data) {
+        releasePages();
+        pages.clear();
+        droppedAbove.clear();
+        nextRequest = null;
+        
+        Page page = new Page(null, data != null ? data : QueryResult.empty(), 0);
+        pages.add(page);
+        rowCount = page.rows.getRowCount();
         
         // Update columns if needed
-        if (data != null && !data.isEmpty() && (columns == null || columns.isEmpty())) {
-            columns = new ArrayList<>(data.get(0).keySet());
+        updateColumns(page.rows);
+        resolveColumns(page);
+        
+        notifyDataSetChanged();
+    }
+    
+    /**
+     * Add the page below the last one, dropping the topmost page once the window is full
+     */
+    public void appendPage(TablePage tablePage) {
+        if (!pages.isEmpty() && pages.peekFirst().source == null) {
+            // A table page replaces a plain result
+            pages.clear();
+            rowCount = 0;
+            notifyDataSetChanged();
         }
+        Page page = new Page(tablePage, tablePage.getRows(), tablePage.getFirstRow());
+        updateColumns(page.rows);
+        resolveColumns(page);
+        
+        int start = rowCount;
+        pages.addLast(page);
+        rowCount += page.rows.getRowCount();
+        nextRequest = tablePage.nextRequest();
+        notifyItemRangeInserted(start, page.rows.getRowCount());
+        
+        if (pages.size() > retainedPages) {
+            Page dropped = pages.removeFirst();
+            droppedAbove.addLast(dropped.source.getRequest());
+            removeRows(0, dropped);
+        }
+    }
+    
+    /**
+     * Add a page that was dropped earlier above the first one, dropping the bottom page once the window is full
+     */
+    public void prependPage(TablePage tablePage) {
+        Page page = new Page(tablePage, tablePage.getRows(), tablePage.getFirstRow());
+        resolveColumns(page);
         
+        droppedAbove.pollLast();
+        pages.addFirst(page);
+        rowCount += page.rows.getRowCount();
+        notifyItemRangeInserted(0, page.rows.getRowCount());
+        
+        if (pages.size() > retainedPages) {
+            Page dropped = pages.removeLast();
+            // The bottom page is read again through the new last page's next request
+            nextRequest = pages.peekLast().source.nextRequest();
+            removeRows(rowCount - dropped.rows.getRowCount(), dropped);
+        }
+    }
+    
+    /**
+     * Swap the only page for a reloaded copy of it, e.g. the refresh of a stale cached first page
+     * @return false if further pages were loaded meanwhile, the copy is then not shown
+     */
+    public boolean replaceFirstPage(TablePage tablePage) {
+        if (pages.size() != 1 || pages.peekFirst().source == null || !droppedAbove.isEmpty()) {
+            return false;
+        }
+        Page previous = pages.removeFirst();
+        Page page = new Page(tablePage, tablePage.getRows(), tablePage.getFirstRow());
+        resolveColumns(page);
+        pages.addFirst(page);
+        rowCount = page.rows.getRowCount();
+        nextRequest = tablePage.nextRequest();
         notifyDataSetChanged();
+        if (previous.rows != page.rows) {
+            previous.rows.release();
+        }
+        return true;
+    }
+    
+    /**
+     * @return The page below the retained ones, null if the last page was already loaded
+     */
+    public PageRequest getNextRequest() {
+        return nextRequest;
+    }
+    
+    /**
+     * @return The dropped page right above the retained ones, null if the first retained page is the top
+     */
+    public PageRequest getPreviousRequest() {
+        return droppedAbove.peekLast();
+    }
+    
+    /**
+     * Release the rows of all pages, call when the adapter is no longer shown
+     */
+    public void releasePages() {
+        for (Page page : pages) {
+            // Plain results belong to the caller
+            if (page.source != null) {
+                page.rows.release();
+            }
+        }
     }
     
     public void setStructure(Map<String, String> structure) {
@@ -79,10 +234,38 @@ public class TableDataAdapter extends RecyclerView.Adapter<TableDataAdapter.Tabl
         if (structure != null && !structure.isEmpty()) {
             columns = new ArrayList<>(structure.keySet());
         }
+        for (Page page : pages) {
+            resolveColumns(page);
+        }
         
         notifyDataSetChanged();
     }
     
+    private void removeRows(int start, Page dropped) {
+        rowCount -= dropped.rows.getRowCount();
+        notifyItemRangeRemoved(start, dropped.rows.getRowCount());
+        dropped.rows.release();
+    }
+    
+    private void updateColumns(QueryResult data) {
+        if (columns == null || columns.isEmpty()) {
+            columns = new ArrayList<>();
+            for (int i = 0; i < data.getColumnCount(); i++) {
+                columns.add(data.getColumn(i).getName());
+            }
+        }
+    }
+    
+    /**
+     * Look up the result column of every displayed column once instead of per cell
+     */
+    private void resolveColumns(Page page) {
+        page.columnIndexes = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            page.columnIndexes[i] = page.rows.findColumn(columns.get(i));
+        }
+    }
+    
     static class TableDataViewHolder extends RecyclerView.ViewHolder {
         private final TableRow tableRow;
         
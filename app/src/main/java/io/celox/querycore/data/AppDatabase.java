@@ -5,14 +5,24 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {ConnectionEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {ConnectionEntity.class}, version = 2, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     
     private static final String DATABASE_NAME = "querycore_db";
     
     private static AppDatabase instance;
     
+    // Version 2 remembers the auth mechanism of each connection
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE connections ADD COLUMN authMechanism TEXT");
+        }
+    };
+    
     public abstract ConnectionDao connectionDao();
     
     public static synchronized AppDatabase getInstance(Context context) {
@@ -21,6 +31,7 @@ public abstract class AppDatabase extends RoomDatabase {
                     context.getApplicationContext(),
                     AppDatabase.class,
                     DATABASE_NAME)
+                    .addMigrations(MIGRATION_1_2)
                     .fallbackToDestructiveMigration()
                     .build();
         }
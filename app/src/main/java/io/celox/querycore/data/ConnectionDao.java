@@ -19,6 +19,9 @@ public interface ConnectionDao {
     @Update
     void updateConnection(ConnectionEntity connection);
     
+    @Query("UPDATE connections SET authMechanism = :authMechanism WHERE id = :id")
+    void updateAuthMechanism(int id, String authMechanism);
+    
     @Delete
     void deleteConnection(ConnectionEntity connection);
     
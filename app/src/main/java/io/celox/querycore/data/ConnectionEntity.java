@@ -29,6 +29,9 @@ public class ConnectionEntity {
     
     private String password;
     
+    // Auth mechanism or credential shape of the last successful connect, null until one succeeded
+    private String authMechanism;
+    
     public ConnectionEntity() {
     }
     
@@ -55,7 +58,7 @@ public class ConnectionEntity {
     }
     
     public ConnectionInfo toConnectionInfo() {
-        return new ConnectionInfo(
+        ConnectionInfo info = new ConnectionInfo(
                 name,
                 ConnectionInfo.DatabaseType.valueOf(type),
                 host,
@@ -64,6 +67,9 @@ public class ConnectionEntity {
                 username,
                 password
         );
+        info.setId(id);
+        info.setAuthMechanism(authMechanism);
+        return info;
     }
     
     // Getters and setters
@@ -133,4 +139,12 @@ public class ConnectionEntity {
     public void setPassword(String password) {
         this.password = password;
     }
+    
+    public String getAuthMechanism() {
+        return authMechanism;
+    }
+    
+    public void setAuthMechanism(String authMechanism) {
+        this.authMechanism = authMechanism;
+    }
 }
\ No newline at end of file
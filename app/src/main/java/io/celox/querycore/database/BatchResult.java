@@ -0,0 +1,112 @@
+package io.celox.querycore.database;
+
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Outcome of every statement of a batch, in the order the statements were given
+ */
+public class BatchResult {
+
+    /**
+     * The statement succeeded but the server did not report how many rows it changed,
+     * e.g. for inserts rewritten into one multi-row insert
+     */
+    public static final int SUCCESS_NO_INFO = Statement.SUCCESS_NO_INFO;
+
+    /**
+     * The statement failed or was not executed, see {@link #getError(int)}
+     */
+    public static final int FAILED = Statement.EXECUTE_FAILED;
+
+    private final int[] counts;
+    private final String[] errors;
+    // Rows the server reported for several statements together, e.g. the updates of one MongoDB bulk write
+    private long bulkRowsAffected;
+    private long executionTimeMs;
+
+    /**
+     * @param size Number of statements, all start as {@link #SUCCESS_NO_INFO}
+     */
+    public BatchResult(int size) {
+        this.counts = new int[size];
+        this.errors = new String[size];
+        Arrays.fill(counts, SUCCESS_NO_INFO);
+    }
+
+    public int size() {
+        return counts.length;
+    }
+
+    /**
+     * @return Rows changed by the statement, {@link #SUCCESS_NO_INFO} or {@link #FAILED}
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    public void setCount(int index, int count) {
+        counts[index] = count;
+    }
+
+    /**
+     * @return Why the statement failed, null if it succeeded
+     */
+    public String getError(int index) {
+        return errors[index];
+    }
+
+    public void setFailed(int index, String error) {
+        counts[index] = FAILED;
+        errors[index] = error;
+    }
+
+    public boolean isFailed(int index) {
+        return counts[index] == FAILED;
+    }
+
+    public int getFailedCount() {
+        int failed = 0;
+        for (int count : counts) {
+            if (count == FAILED) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Count rows that the server reported only as a total for several statements.
+     * They are part of {@link #getRowsAffected()}, the statements keep {@link #SUCCESS_NO_INFO}.
+     */
+    public void addBulkRowsAffected(long rows) {
+        bulkRowsAffected += rows;
+    }
+
+    /**
+     * Sum of the reported row counts and bulk totals, statements without a count are not included
+     */
+    public long getRowsAffected() {
+        long rows = bulkRowsAffected;
+        for (int count : counts) {
+            if (count > 0) {
+                rows += count;
+            }
+        }
+        return rows;
+    }
+
+    public long getExecutionTimeMs() {
+        return executionTimeMs;
+    }
+
+    public void setExecutionTimeMs(long executionTimeMs) {
+        this.executionTimeMs = executionTimeMs;
+    }
+
+    @Override
+    public String toString() {
+        return (size() - getFailedCount()) + " of " + size() + " statements succeeded, "
+                + getRowsAffected() + " rows affected in " + executionTimeMs + "ms";
+    }
+}
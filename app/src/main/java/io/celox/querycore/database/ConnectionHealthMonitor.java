@@ -0,0 +1,240 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.io.EOFException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cached liveness of a {@link DatabaseService}.
+ * Operations read {@link #isHealthy()}, a volatile flag, instead of pinging the server first.
+ * The flag is kept current by the outcome of real operations and by a background heartbeat
+ * that only pings when the connection has been quiet for a whole interval.
+ */
+public class ConnectionHealthMonitor {
+
+    private static final String TAG = "ConnectionHealth";
+
+    public static final long DEFAULT_HEARTBEAT_MS = 30000;
+    // Faster probing while the connection is down so recovery is noticed quickly
+    private static final long UNHEALTHY_HEARTBEAT_MS = 5000;
+
+    // A probe that has not answered by then counts as failed
+    static final long PROBE_TIMEOUT_MS = 10000;
+
+    // One daemon thread times the heartbeats of all sessions, it never blocks on the network
+    private static final ScheduledExecutorService HEARTBEAT = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connection-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The pings themselves, one thread per running probe so an unreachable server only stalls its own session
+    private static final ExecutorService PROBES = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "connection-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public enum State {
+        HEALTHY,
+        UNHEALTHY,
+        STOPPED
+    }
+
+    /**
+     * Notified on the heartbeat or operation thread whenever the state changes
+     */
+    public interface Listener {
+        void onHealthChanged(State state);
+    }
+
+    private final DatabaseService service;
+    private final long heartbeatMs;
+    private final long probeTimeoutMs;
+    private final Listener listener;
+    private ScheduledFuture<?> heartbeat;
+    // Whether a probe is waiting for its answer, it schedules the next heartbeat itself
+    private boolean probing = false;
+
+    private volatile State state = State.HEALTHY;
+    private volatile long lastSuccess = System.currentTimeMillis();
+    private volatile int consecutiveFailures = 0;
+
+    /**
+     * Start monitoring a service that has just connected successfully
+     * @param service The connected service
+     * @param heartbeatMs Quiet time after which the heartbeat pings the server
+     * @param listener Receives state changes, may be null
+     */
+    public ConnectionHealthMonitor(DatabaseService service, long heartbeatMs, Listener listener) {
+        this(service, heartbeatMs, PROBE_TIMEOUT_MS, listener);
+    }
+
+    /**
+     * @param probeTimeoutMs Time the ping may take before the connection counts as unhealthy
+     */
+    ConnectionHealthMonitor(DatabaseService service, long heartbeatMs, long probeTimeoutMs, Listener listener) {
+        this.service = service;
+        this.heartbeatMs = heartbeatMs;
+        this.probeTimeoutMs = probeTimeoutMs;
+        this.listener = listener;
+        scheduleHeartbeat(heartbeatMs);
+    }
+
+    /**
+     * Whether operations should be sent to the server. Does not touch the network.
+     */
+    public boolean isHealthy() {
+        return state == State.HEALTHY;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Record that an operation reached the server
+     */
+    public void reportSuccess() {
+        lastSuccess = System.currentTimeMillis();
+        consecutiveFailures = 0;
+        setState(State.HEALTHY);
+    }
+
+    /**
+     * Record a failed operation. Only failures of the connection itself mark it unhealthy,
+     * SQL errors like a syntax error prove the server is reachable.
+     */
+    public void reportFailure(Throwable error) {
+        if (!isConnectionFailure(error)) {
+            reportSuccess();
+            return;
+        }
+        consecutiveFailures++;
+        Log.w(TAG, "Connection failure reported: " + error.getMessage());
+        if (setState(State.UNHEALTHY)) {
+            // Probe right away, the failure may have been transient
+            scheduleHeartbeat(0);
+        }
+    }
+
+    /**
+     * Stop the heartbeat, e.g. on disconnect
+     */
+    public synchronized void stop() {
+        state = State.STOPPED;
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private void runHeartbeat() {
+        if (state == State.STOPPED) {
+            return;
+        }
+        long quietMs = System.currentTimeMillis() - lastSuccess;
+        if (state == State.HEALTHY && quietMs < heartbeatMs) {
+            // A real operation succeeded recently, no ping needed
+            scheduleHeartbeat(heartbeatMs - quietMs);
+            return;
+        }
+
+        synchronized (this) {
+            if (probing) {
+                return;
+            }
+            probing = true;
+        }
+        // Whichever comes first reports: the answer or the timeout
+        AtomicBoolean reported = new AtomicBoolean();
+        Future<?> probe = PROBES.submit(() -> {
+            boolean alive = service.isConnected();
+            if (reported.compareAndSet(false, true)) {
+                onProbeResult(alive);
+            }
+        });
+        HEARTBEAT.schedule(() -> {
+            if (reported.compareAndSet(false, true)) {
+                Log.w(TAG, "Heartbeat got no answer within " + probeTimeoutMs + "ms");
+                probe.cancel(true);
+                onProbeResult(false);
+            }
+        }, probeTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void onProbeResult(boolean alive) {
+        synchronized (this) {
+            probing = false;
+        }
+        if (state == State.STOPPED) {
+            return;
+        }
+        if (alive) {
+            reportSuccess();
+        } else {
+            consecutiveFailures++;
+            setState(State.UNHEALTHY);
+        }
+        scheduleHeartbeat(alive ? heartbeatMs : UNHEALTHY_HEARTBEAT_MS);
+    }
+
+    private synchronized void scheduleHeartbeat(long delayMs) {
+        if (state == State.STOPPED) {
+            return;
+        }
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+        heartbeat = HEARTBEAT.schedule(this::runHeartbeat, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if the state changed
+     */
+    private synchronized boolean setState(State newState) {
+        if (state == newState || state == State.STOPPED) {
+            return false;
+        }
+        Log.i(TAG, "Connection health changed: " + state + " -> " + newState);
+        state = newState;
+        if (listener != null) {
+            listener.onHealthChanged(newState);
+        }
+        return true;
+    }
+
+    /**
+     * Whether an error means the connection is gone rather than the statement being rejected
+     */
+    static boolean isConnectionFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    return true;
+                }
+            }
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException
+                    || cause instanceof EOFException
+                    || cause instanceof com.mongodb.MongoSocketException
+                    || cause instanceof com.mongodb.MongoTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -5,8 +5,10 @@ import android.util.Log;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -22,6 +24,36 @@ import io.celox.querycore.models.ConnectionInfo;
 public class ConnectionTracker {
     private static final String TAG = "ConnectionTracker";
     private static final int MAX_HISTORY_SIZE = 20;
+    // Phase durations kept per phase for the percentiles in the summary
+    private static final int PHASE_SAMPLE_SIZE = 100;
+    
+    /**
+     * Steps of establishing a connection, timed separately to show where a slow connect spends its time
+     */
+    public enum Phase {
+        RESOLVE("resolve"),
+        SOCKET_CONNECT("socket"),
+        HANDSHAKE_AUTH("handshake/auth"),
+        VALIDATION_QUERY("validation"),
+        SERVER_INFO("server info");
+        
+        private final String label;
+        
+        Phase(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    /**
+     * A connect step whose duration is recorded with {@link #timePhase}
+     */
+    public interface PhaseAction<T> {
+        T run() throws Exception;
+    }
     
     // Singleton instance
     private static ConnectionTracker instance;
@@ -31,6 +63,11 @@ public class ConnectionTracker {
     private final AtomicInteger successfulConnections = new AtomicInteger(0);
     private final AtomicInteger failedConnections = new AtomicInteger(0);
     private final List<ConnectionEvent> connectionHistory = new ArrayList<>();
+    private final List<JdbcConnectionPool> pools = new ArrayList<>();
+    // Metadata caches of established connections by tracking ID
+    private final Map<String, MetadataCache> metadataCaches = new LinkedHashMap<>();
+    private final long[][] phaseSamples = new long[Phase.values().length][PHASE_SAMPLE_SIZE];
+    private final int[] phaseSampleCounts = new int[Phase.values().length];
     
     /**
      * Get the singleton instance of the ConnectionTracker
@@ -144,6 +181,111 @@ public class ConnectionTracker {
             
             event.status = "DISCONNECTED";
         }
+        MetadataCache cache = metadataCaches.remove(trackingId);
+        if (cache != null) {
+            Log.i(TAG, "Connection [" + trackingId + "] final metadata cache stats: " + cache);
+        }
+    }
+    
+    /**
+     * Record how long a phase of a connection attempt took.
+     * Only the first measurement of each phase counts, so connections opened later by a pool do not overwrite it.
+     * @param trackingId The tracking ID returned from trackConnectionStart
+     * @param phase The phase that finished
+     * @param durationMs Its duration in milliseconds
+     */
+    public synchronized void trackPhase(String trackingId, Phase phase, long durationMs) {
+        ConnectionEvent event = findEvent(trackingId);
+        if (event == null || event.phaseMs[phase.ordinal()] >= 0) {
+            return;
+        }
+        durationMs = Math.max(0, durationMs);
+        event.phaseMs[phase.ordinal()] = durationMs;
+        
+        int count = phaseSampleCounts[phase.ordinal()]++;
+        phaseSamples[phase.ordinal()][count % PHASE_SAMPLE_SIZE] = durationMs;
+        
+        Log.d(TAG, "Connection [" + trackingId + "] " + phase.getLabel() + ": " + durationMs + "ms");
+    }
+    
+    /**
+     * Run a connect step and record its duration, also when it fails
+     * @param trackingId The tracking ID returned from trackConnectionStart
+     * @param phase The phase the step belongs to
+     * @param action The step
+     * @return The result of the step
+     * @throws Exception If the step fails
+     */
+    public <T> T timePhase(String trackingId, Phase phase, PhaseAction<T> action) throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            return action.run();
+        } finally {
+            trackPhase(trackingId, phase, System.currentTimeMillis() - start);
+        }
+    }
+    
+    /**
+     * Wrap a pool's connection factory so the opening of physical connections is timed, split into the
+     * socket connect measured by {@link TimedSocketFactory} and the handshake/auth that takes the rest
+     * @param trackingId The tracking ID returned from trackConnectionStart
+     * @param factory Opens the physical connections through the driver
+     * @return A factory recording the phases of the connects it makes
+     */
+    public JdbcConnectionPool.ConnectionFactory timeDriverConnects(String trackingId,
+                                                                  JdbcConnectionPool.ConnectionFactory factory) {
+        return () -> {
+            long start = System.currentTimeMillis();
+            try {
+                return factory.create();
+            } finally {
+                long totalMs = System.currentTimeMillis() - start;
+                long socketMs = TimedSocketFactory.takeThreadConnectMs();
+                if (socketMs >= 0) {
+                    trackPhase(trackingId, Phase.SOCKET_CONNECT, socketMs);
+                    trackPhase(trackingId, Phase.HANDSHAKE_AUTH, totalMs - socketMs);
+                } else {
+                    // The socket never connected or the driver ignored the factory, all time goes to the handshake
+                    trackPhase(trackingId, Phase.HANDSHAKE_AUTH, totalMs);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Include a connection pool in the diagnostics
+     * @param pool The pool of an established connection
+     */
+    public synchronized void trackPool(JdbcConnectionPool pool) {
+        pools.add(pool);
+    }
+    
+    /**
+     * Include the metadata cache of an established connection in the diagnostics until it disconnects
+     * @param trackingId The tracking ID returned from trackConnectionStart
+     */
+    public synchronized void trackMetadataCache(String trackingId, MetadataCache cache) {
+        metadataCaches.put(trackingId, cache);
+    }
+    
+    /**
+     * Remove a closed connection pool from the diagnostics
+     */
+    public synchronized void untrackPool(JdbcConnectionPool pool) {
+        Log.i(TAG, "Pool [" + pool.getName() + "] final stats: " + pool.getStats());
+        pools.remove(pool);
+    }
+    
+    /**
+     * Get the statistics of all open connection pools
+     * @return Pool statistics keyed by the tracking ID of the connection
+     */
+    public synchronized Map<String, JdbcConnectionPool.Stats> getPoolStats() {
+        Map<String, JdbcConnectionPool.Stats> stats = new HashMap<>();
+        for (JdbcConnectionPool pool : pools) {
+            stats.put(pool.getName(), pool.getStats());
+        }
+        return stats;
     }
     
     /**
@@ -163,6 +305,25 @@ public class ConnectionTracker {
             summary.append("- Success rate: ").append(String.format("%.1f%%", successRate)).append("\n");
         }
         
+        // Add where connects spend their time
+        appendPhasePercentiles(summary);
+        
+        // Add connection pool usage
+        if (!pools.isEmpty()) {
+            summary.append("\nConnection Pools:\n");
+            for (JdbcConnectionPool pool : pools) {
+                summary.append("- ").append(pool.getName()).append(": ").append(pool.getStats()).append("\n");
+            }
+        }
+        
+        // Add how many metadata loads the caches saved
+        if (!metadataCaches.isEmpty()) {
+            summary.append("\nMetadata Caches:\n");
+            for (Map.Entry<String, MetadataCache> entry : metadataCaches.entrySet()) {
+                summary.append("- ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            }
+        }
+        
         // Add recent connection history
         summary.append("\nRecent Connection History (most recent first):\n");
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
@@ -180,6 +341,11 @@ public class ConnectionTracker {
                     summary.append(" (").append(event.duration).append("ms)");
                 }
                 
+                String phases = formatPhases(event);
+                if (!phases.isEmpty()) {
+                    summary.append(" [").append(phases).append("]");
+                }
+                
                 if (event.errorType != null) {
                     summary.append(" - Error: ").append(event.errorType);
                 }
@@ -219,6 +385,14 @@ public class ConnectionTracker {
                     entry.put("errorDetails", event.details);
                 }
                 
+                Map<String, Long> phases = new HashMap<>();
+                for (Phase phase : Phase.values()) {
+                    if (event.phaseMs[phase.ordinal()] >= 0) {
+                        phases.put(phase.name(), event.phaseMs[phase.ordinal()]);
+                    }
+                }
+                entry.put("phases", phases);
+                
                 history.add(entry);
             }
         }
@@ -226,6 +400,51 @@ public class ConnectionTracker {
         return history;
     }
     
+    /**
+     * Append p50/p90/max per connect phase over the recent samples
+     */
+    private void appendPhasePercentiles(StringBuilder summary) {
+        boolean headerWritten = false;
+        for (Phase phase : Phase.values()) {
+            int count = Math.min(phaseSampleCounts[phase.ordinal()], PHASE_SAMPLE_SIZE);
+            if (count == 0) {
+                continue;
+            }
+            if (!headerWritten) {
+                summary.append("\nConnect Phases (p50 / p90 / max):\n");
+                headerWritten = true;
+            }
+            long[] sorted = Arrays.copyOf(phaseSamples[phase.ordinal()], count);
+            Arrays.sort(sorted);
+            summary.append("- ").append(phase.getLabel()).append(": ")
+                    .append(percentile(sorted, 50)).append("ms / ")
+                    .append(percentile(sorted, 90)).append("ms / ")
+                    .append(sorted[count - 1]).append("ms (n=").append(count).append(")\n");
+        }
+    }
+    
+    /**
+     * Nearest-rank percentile of sorted samples
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+    
+    private static String formatPhases(ConnectionEvent event) {
+        StringBuilder phases = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            long durationMs = event.phaseMs[phase.ordinal()];
+            if (durationMs >= 0) {
+                if (phases.length() > 0) {
+                    phases.append(", ");
+                }
+                phases.append(phase.getLabel()).append(" ").append(durationMs).append("ms");
+            }
+        }
+        return phases.toString();
+    }
+    
     /**
      * Find a connection event by its tracking ID
      * @param trackingId The tracking ID to search for
@@ -260,5 +479,11 @@ public class ConnectionTracker {
         String details;
         String deviceInfo;
         int androidVersion;
+        // Duration per Phase ordinal, -1 while not measured
+        final long[] phaseMs = new long[Phase.values().length];
+        
+        ConnectionEvent() {
+            Arrays.fill(phaseMs, -1);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package io.celox.querycore.database;
+
+/**
+ * Options for {@link DatabaseService#openCursor(String, CursorOptions)}
+ */
+public class CursorOptions {
+
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private int maxRows = 0;
+
+    public static CursorOptions defaults() {
+        return new CursorOptions();
+    }
+
+    /**
+     * Rows transferred per network round trip: the JDBC fetch size or the MongoDB cursor batch size.
+     * This bounds the memory a cursor needs no matter how large the result is.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public CursorOptions setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Upper bound for the number of rows the server returns, 0 for no limit
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public CursorOptions setMaxRows(int maxRows) {
+        this.maxRows = Math.max(0, maxRows);
+        return this;
+    }
+}
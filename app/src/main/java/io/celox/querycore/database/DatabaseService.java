@@ -2,8 +2,11 @@ package io.celox.querycore.database;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import io.celox.querycore.models.ConnectionInfo;
+import io.celox.querycore.models.DatabaseSchema;
+import io.celox.querycore.models.QueryResult;
 
 public interface DatabaseService {
     
@@ -13,13 +16,144 @@ public interface DatabaseService {
     
     boolean isConnected();
     
+    /**
+     * Cache behind {@link #getDatabases()}, {@link #getTables(String)} and {@link #getTableStructure(String)}
+     */
+    MetadataCache getMetadataCache();
+    
+    /**
+     * Cache of read query results and first table pages, writes through this service drop what they change
+     */
+    QueryResultCache getResultCache();
+    
+    /**
+     * Database that queries without a qualified name run against, part of the result cache keys
+     */
+    String getCurrentDatabase();
+    
+    /**
+     * Make a database current for operations submitted from now on, without a round trip.
+     * {@link #getTables(String)} checks that it exists.
+     */
+    default void selectDatabase(String database) {
+    }
+    
+    /**
+     * Run an operation against a database instead of the current one, e.g. the database that was
+     * current when the operation was submitted. Services without a current database just run it.
+     * @param database The database, null for the current one
+     * @param operation The operation, run on this thread
+     * @return The operation's result
+     */
+    default <T> T runInDatabase(String database, Callable<T> operation) throws Exception {
+        return operation.call();
+    }
+    
+    /**
+     * How the last successful connect authenticated, so the next connect to the same server can try it first
+     * @return A service specific mechanism name, or null if there is nothing to negotiate
+     */
+    String getAuthMechanism();
+    
     List<String> getDatabases() throws Exception;
     
     List<String> getTables(String database) throws Exception;
     
-    List<Map<String, Object>> executeQuery(String query) throws Exception;
+    default QueryResult executeQuery(String query) throws Exception {
+        return executeQuery(query, new QueryHandle());
+    }
+    
+    /**
+     * Execute a query that another thread can stop through the handle
+     * @param query The query to run
+     * @param handle Receives the cancel actions for this query
+     * @return The materialized result
+     * @throws Exception If the query fails or was cancelled
+     */
+    QueryResult executeQuery(String query, QueryHandle handle) throws Exception;
+    
+    default QueryResult executeQuery(String query, Object... params) throws Exception {
+        return executeQuery(query, new QueryHandle(), params);
+    }
+    
+    /**
+     * Execute a query with ? placeholders. Services that support it keep the prepared statement
+     * and reuse it when the same query runs again.
+     * @param query The query with one ? per parameter
+     * @param handle Receives the cancel actions for this query
+     * @param params Values for the placeholders in order
+     * @return The materialized result
+     * @throws Exception If the query fails, was cancelled or the service does not support parameters
+     */
+    QueryResult executeQuery(String query, QueryHandle handle, Object... params) throws Exception;
+    
+    /**
+     * Execute a query and stream its rows instead of materializing them.
+     * The cursor holds a connection until it is closed, so always close it.
+     * @param query The query in the same format as {@link #executeQuery(String)}
+     * @param options Fetch size and row limit
+     * @return An open cursor positioned before the first row
+     */
+    default RowCursor openCursor(String query, CursorOptions options) throws Exception {
+        return openCursor(query, options, new QueryHandle());
+    }
+    
+    /**
+     * Open a cursor that another thread can stop through the handle, while the query runs
+     * and while its rows are streamed
+     * @param query The query in the same format as {@link #executeQuery(String)}
+     * @param options Fetch size and row limit
+     * @param handle Receives the cancel actions for this query
+     * @return An open cursor positioned before the first row
+     */
+    RowCursor openCursor(String query, CursorOptions options, QueryHandle handle) throws Exception;
+    
+    /**
+     * Read one page of a table in key order
+     * @param request The page, {@link PageRequest#first(String)} or the next request of the previous page
+     * @param handle Receives the cancel actions for this query
+     * @return The rows of the page
+     * @throws Exception If the query fails or was cancelled
+     */
+    TablePage executePage(PageRequest request, QueryHandle handle) throws Exception;
     
     int executeUpdate(String query) throws Exception;
     
+    /**
+     * Send several write statements together instead of one round trip each.
+     * A failing statement does not stop the others, check the result per statement.
+     * @param statements Statements in the format of {@link #executeUpdate(String)}
+     * @return The outcome of each statement in the given order
+     * @throws Exception If the batch could not be sent at all
+     */
+    BatchResult executeBatch(List<String> statements) throws Exception;
+    
+    /**
+     * Run one statement with ? placeholders once per parameter set, e.g. generated inserts
+     * @param query The statement with one ? per parameter
+     * @param params One array of placeholder values per execution
+     * @return The outcome of each execution in the given order
+     * @throws Exception If the batch could not be sent at all or the service does not support parameters
+     */
+    BatchResult executeBatch(String query, List<Object[]> params) throws Exception;
+    
     Map<String, String> getTableStructure(String table) throws Exception;
+    
+    /**
+     * All tables of a database with their columns. Services with a bulk path read it in a few queries
+     * and fill the structure of every table into the metadata cache, the default asks table by table.
+     * @param database The database to read
+     * @return The tables in the order of {@link #getTables(String)}
+     */
+    default DatabaseSchema getSchema(String database) throws Exception {
+        DatabaseSchema schema = new DatabaseSchema(database);
+        for (String name : getTables(database)) {
+            DatabaseSchema.Table table = new DatabaseSchema.Table(name, -1);
+            for (Map.Entry<String, String> column : getTableStructure(name).entrySet()) {
+                table.addColumn(new DatabaseSchema.Column(column.getKey(), column.getValue(), true, null));
+            }
+            schema.addTable(table);
+        }
+        return schema;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.celox.querycore.models.ConnectionInfo;
+
+/**
+ * Keeps several {@link DatabaseService} sessions connected at once, keyed by connection id,
+ * so switching back to a recently used connection skips the connect handshake.
+ * Beyond the session limit the least recently used session is closed, and sessions that have
+ * not been used for the idle timeout are closed by a background timer.
+ */
+public class DatabaseSessionManager {
+
+    private static final String TAG = "DatabaseSessionManager";
+
+    public static final int DEFAULT_MAX_SESSIONS = 3;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+
+    /**
+     * Notified when the health of any session changes
+     */
+    public interface SessionListener {
+        void onHealthChanged(Session session, ConnectionHealthMonitor.State state);
+    }
+
+    /**
+     * A connected service together with its health monitor and the executor ordering its writes
+     */
+    public static class Session {
+        private final ConnectionInfo connectionInfo;
+        private final DatabaseService service;
+        private final SessionExecutor executor;
+        private ConnectionHealthMonitor healthMonitor;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Session(ConnectionInfo connectionInfo, DatabaseService service) {
+            this.connectionInfo = connectionInfo;
+            this.service = service;
+            this.executor = new SessionExecutor(connectionInfo.getName(), this,
+                    DatabaseTaskScheduler.getInstance(), SessionExecutor.DEFAULT_CAPACITY);
+        }
+
+        public ConnectionInfo getConnectionInfo() {
+            return connectionInfo;
+        }
+
+        public DatabaseService getService() {
+            return service;
+        }
+
+        /**
+         * Runs operations whose order matters, like writes, in the order they were submitted
+         */
+        public SessionExecutor getExecutor() {
+            return executor;
+        }
+
+        public ConnectionHealthMonitor getHealthMonitor() {
+            return healthMonitor;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        /**
+         * Record that the session is in use, resets its idle time
+         */
+        public void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        void close() {
+            executor.shutdown();
+            healthMonitor.stop();
+            try {
+                service.disconnect();
+            } catch (Exception e) {
+                Log.w(TAG, "Error closing session " + connectionInfo.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private final int maxSessions;
+    private final long idleTimeoutMs;
+    private final SessionListener listener;
+    // Access ordered, so iteration starts at the least recently used session
+    private final LinkedHashMap<Integer, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService idleTimer;
+
+    public DatabaseSessionManager(SessionListener listener) {
+        this(DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT_MS, listener);
+    }
+
+    /**
+     * @param maxSessions Number of sessions kept connected at most
+     * @param idleTimeoutMs Time without use after which a session is closed
+     * @param listener Receives health changes of all sessions, may be null
+     */
+    public DatabaseSessionManager(int maxSessions, long idleTimeoutMs, SessionListener listener) {
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.listener = listener;
+        this.idleTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-idle-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMs = Math.max(1000, idleTimeoutMs / 4);
+        idleTimer.scheduleWithFixedDelay(this::closeIdleSessions, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the live session for a connection, connecting a new one if there is none.
+     * A cached session is replaced if it is unhealthy or the connection settings were edited.
+     * Runs the connect on the calling thread, so call it off the main thread.
+     * @param connectionInfo The connection to open
+     * @return The session, marked as most recently used
+     * @throws Exception If a new session could not connect
+     */
+    public Session open(ConnectionInfo connectionInfo) throws Exception {
+        int key = keyOf(connectionInfo);
+        Session stale = null;
+        synchronized (this) {
+            Session cached = sessions.get(key);
+            if (cached != null) {
+                if (cached.connectionInfo.hasSameSettings(connectionInfo) && cached.healthMonitor.isHealthy()) {
+                    Log.d(TAG, "Reusing session for " + connectionInfo.getName());
+                    cached.touch();
+                    return cached;
+                }
+                sessions.remove(key);
+                stale = cached;
+            }
+        }
+        if (stale != null) {
+            stale.close();
+        }
+
+        DatabaseService service = createService(connectionInfo.getType());
+        service.connect(connectionInfo);
+        Session session = new Session(connectionInfo, service);
+        session.healthMonitor = new ConnectionHealthMonitor(service,
+                ConnectionHealthMonitor.DEFAULT_HEARTBEAT_MS,
+                state -> {
+                    if (listener != null) {
+                        listener.onHealthChanged(session, state);
+                    }
+                });
+
+        List<Session> evicted = new ArrayList<>();
+        synchronized (this) {
+            // Another thread may have opened the same connection meanwhile
+            Session replaced = sessions.put(key, session);
+            if (replaced != null) {
+                evicted.add(replaced);
+            }
+            Iterator<Session> iterator = sessions.values().iterator();
+            while (sessions.size() > maxSessions && iterator.hasNext()) {
+                Session eldest = iterator.next();
+                if (eldest != session) {
+                    iterator.remove();
+                    evicted.add(eldest);
+                }
+            }
+        }
+        for (Session old : evicted) {
+            Log.d(TAG, "Evicting least recently used session " + old.connectionInfo.getName());
+            old.close();
+        }
+        Log.i(TAG, "Opened session for " + connectionInfo.getName() + ", " + size() + " live");
+        return session;
+    }
+
+    /**
+     * Close the session of a connection if one is open
+     * @param connectionInfo The connection to close
+     */
+    public void close(ConnectionInfo connectionInfo) {
+        Session session;
+        synchronized (this) {
+            session = sessions.remove(keyOf(connectionInfo));
+        }
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * Close all sessions and stop the idle timer
+     */
+    public void closeAll() {
+        idleTimer.shutdownNow();
+        List<Session> open;
+        synchronized (this) {
+            open = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        for (Session session : open) {
+            session.close();
+        }
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    private void closeIdleSessions() {
+        long now = System.currentTimeMillis();
+        List<Session> idle = new ArrayList<>();
+        synchronized (this) {
+            Session mostRecent = null;
+            for (Session session : sessions.values()) {
+                mostRecent = session;
+            }
+            Iterator<Map.Entry<Integer, Session>> iterator = sessions.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Session session = iterator.next().getValue();
+                // The most recently opened session is the one on screen, keep it
+                if (session != mostRecent && now - session.lastUsed >= idleTimeoutMs) {
+                    iterator.remove();
+                    idle.add(session);
+                }
+            }
+        }
+        for (Session session : idle) {
+            Log.d(TAG, "Closing idle session " + session.connectionInfo.getName());
+            session.close();
+        }
+    }
+
+    /**
+     * Saved connections are keyed by their id, unsaved ones share a single slot
+     */
+    private static int keyOf(ConnectionInfo connectionInfo) {
+        return Math.max(0, connectionInfo.getId());
+    }
+
+    private static DatabaseService createService(ConnectionInfo.DatabaseType type) {
+        switch (type) {
+            case MYSQL:
+                Log.d(TAG, "Using MySQL native driver");
+                return new MySqlNativeDatabaseService();
+            case MARIADB:
+                Log.d(TAG, "Using MariaDB driver");
+                return new MySqlDatabaseService();
+            case MONGODB:
+            default:
+                Log.d(TAG, "Using MongoDB driver");
+                return new MongoDbDatabaseService();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package io.celox.querycore.database;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared worker threads for all database work of the app, split into lanes so a slow query or a
+ * bulk job never delays the metadata the user is waiting for.
+ * Every lane has its own threads, thread priority and a bounded number of waiting tasks; a full lane
+ * rejects new tasks instead of queueing without limit. Tasks of one connection are additionally
+ * limited in how many run at once, when a slot of a connection frees up its waiting task of the
+ * most urgent lane runs next.
+ */
+public class DatabaseTaskScheduler {
+
+    private static final String TAG = "DatabaseTaskScheduler";
+
+    // Tasks of one connection running at once, more would only wait for a pooled connection
+    public static final int DEFAULT_CONNECTION_LIMIT = 4;
+
+    /**
+     * Kinds of work, in order of urgency
+     */
+    public enum Lane {
+        /** Database, table and structure lists the user is waiting for */
+        METADATA(2, 32, Process.THREAD_PRIORITY_DEFAULT),
+        /** Queries, pages, updates and connects started by the user */
+        QUERY(3, 16, Process.THREAD_PRIORITY_DEFAULT),
+        /** Cache refreshes, diagnostics and other work nobody waits for */
+        BACKGROUND(1, 64, Process.THREAD_PRIORITY_LOWEST);
+
+        final int threads;
+        final int queueCapacity;
+        final int threadPriority;
+
+        Lane(int threads, int queueCapacity, int threadPriority) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    /**
+     * Snapshot of a lane's counters
+     */
+    public static class Stats {
+        public final Lane lane;
+        public final int waiting;
+        public final int running;
+        public final long completed;
+        public final long rejected;
+        public final long totalWaitMs;
+        public final long maxWaitMs;
+
+        Stats(Lane lane, int waiting, int running, long completed, long rejected, long totalWaitMs, long maxWaitMs) {
+            this.lane = lane;
+            this.waiting = waiting;
+            this.running = running;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.totalWaitMs = totalWaitMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        /**
+         * Average time from submitting to starting a task
+         */
+        public long getAverageWaitMs() {
+            return completed > 0 ? totalWaitMs / completed : 0;
+        }
+
+        @Override
+        public String toString() {
+            return lane + ": " + waiting + " waiting, " + running + " running, " + completed + " completed, "
+                    + rejected + " rejected, wait " + getAverageWaitMs() + "ms avg / " + maxWaitMs + "ms max";
+        }
+    }
+
+    private class Task implements Runnable {
+        final LaneState lane;
+        final Object connection;
+        final Runnable work;
+        final long submittedAt = System.nanoTime();
+
+        Task(LaneState lane, Object connection, Runnable work) {
+            this.lane = lane;
+            this.connection = connection;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            long waitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedAt);
+            lane.started(waitMs);
+            try {
+                work.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Uncaught exception in " + lane.lane + " task: " + e.getMessage(), e);
+            } finally {
+                lane.finished();
+                if (connection != null) {
+                    releaseSlot(connection);
+                }
+            }
+        }
+    }
+
+    private static class LaneState {
+        final Lane lane;
+        final ThreadPoolExecutor executor;
+        // Submitted but not started, including tasks held back by their connection's limit
+        final AtomicInteger waiting = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        long completed = 0;
+        long rejected = 0;
+        long totalWaitMs = 0;
+        long maxWaitMs = 0;
+
+        LaneState(Lane lane) {
+            this.lane = lane;
+            AtomicInteger threadNumber = new AtomicInteger();
+            // Never rejects, admission is bounded by the waiting count before a task gets here
+            this.executor = new ThreadPoolExecutor(lane.threads, lane.threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(lane.queueCapacity), runnable -> {
+                        Thread thread = new Thread(() -> {
+                            Process.setThreadPriority(lane.threadPriority);
+                            runnable.run();
+                        }, "db-" + lane.name().toLowerCase(Locale.ROOT) + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        synchronized void started(long waitMs) {
+            waiting.decrementAndGet();
+            running.incrementAndGet();
+            totalWaitMs += waitMs;
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+        }
+
+        synchronized void finished() {
+            running.decrementAndGet();
+            completed++;
+        }
+
+        synchronized void rejected() {
+            rejected++;
+        }
+
+        synchronized Stats stats() {
+            return new Stats(lane, waiting.get(), running.get(), completed, rejected, totalWaitMs, maxWaitMs);
+        }
+    }
+
+    private static class ConnectionState {
+        int running = 0;
+        // Held back tasks per lane, taken in lane order
+        final Map<Lane, ArrayDeque<Task>> held = new EnumMap<>(Lane.class);
+    }
+
+    private static DatabaseTaskScheduler instance;
+
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private final Map<Object, ConnectionState> connections = new HashMap<>();
+    private final int connectionLimit;
+
+    public static synchronized DatabaseTaskScheduler getInstance() {
+        if (instance == null) {
+            instance = new DatabaseTaskScheduler(DEFAULT_CONNECTION_LIMIT);
+        }
+        return instance;
+    }
+
+    /**
+     * @param connectionLimit Tasks of one connection running at once
+     */
+    DatabaseTaskScheduler(int connectionLimit) {
+        this.connectionLimit = connectionLimit;
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneState(lane));
+        }
+    }
+
+    /**
+     * Run a task that does not belong to a connection
+     * @throws RejectedExecutionException if the lane has too many waiting tasks
+     */
+    public void execute(Lane lane, Runnable work) {
+        execute(lane, null, work);
+    }
+
+    /**
+     * Run a task of a connection
+     * @param lane The kind of work
+     * @param connection Key of the connection, e.g. its session, tasks with the same key share the limit.
+     *                   null for work without connection.
+     * @param work The task
+     * @throws RejectedExecutionException if the lane has too many waiting tasks
+     */
+    public void execute(Lane lane, Object connection, Runnable work) {
+        LaneState state = lanes.get(lane);
+        if (state.waiting.incrementAndGet() > lane.queueCapacity) {
+            state.waiting.decrementAndGet();
+            state.rejected();
+            Log.w(TAG, "Rejected " + lane + " task, " + lane.queueCapacity + " tasks are already waiting");
+            throw new RejectedExecutionException("Too many pending " + lane.name().toLowerCase(Locale.ROOT)
+                    + " operations, try again in a moment");
+        }
+        Task task = new Task(state, connection, work);
+        if (connection == null || acquireSlot(task)) {
+            state.executor.execute(task);
+        }
+    }
+
+    /**
+     * Take a running slot of the task's connection, or hold the task back until one frees up
+     * @return Whether the task may run now
+     */
+    private synchronized boolean acquireSlot(Task task) {
+        ConnectionState connection = connections.get(task.connection);
+        if (connection == null) {
+            connection = new ConnectionState();
+            connections.put(task.connection, connection);
+        }
+        if (connection.running < connectionLimit) {
+            connection.running++;
+            return true;
+        }
+        ArrayDeque<Task> held = connection.held.get(task.lane.lane);
+        if (held == null) {
+            held = new ArrayDeque<>();
+            connection.held.put(task.lane.lane, held);
+        }
+        held.addLast(task);
+        return false;
+    }
+
+    /**
+     * Hand a freed slot to the connection's most urgent held task
+     */
+    private void releaseSlot(Object key) {
+        Task next = null;
+        synchronized (this) {
+            ConnectionState connection = connections.get(key);
+            for (ArrayDeque<Task> held : connection.held.values()) {
+                if (!held.isEmpty()) {
+                    next = held.pollFirst();
+                    break;
+                }
+            }
+            if (next == null) {
+                connection.running--;
+                if (connection.running == 0) {
+                    connections.remove(key);
+                }
+            }
+        }
+        if (next != null) {
+            next.lane.executor.execute(next);
+        }
+    }
+
+    /**
+     * @return Queue depth, running tasks and wait times of a lane
+     */
+    public Stats getStats(Lane lane) {
+        return lanes.get(lane).stats();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("DatabaseTaskScheduler");
+        for (Lane lane : Lane.values()) {
+            builder.append("\n  ").append(getStats(lane));
+        }
+        return builder.toString();
+    }
+}
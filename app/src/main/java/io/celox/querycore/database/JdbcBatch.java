@@ -0,0 +1,50 @@
+package io.celox.querycore.database;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Runs a JDBC batch and maps the driver's update counts to a {@link BatchResult}
+ */
+final class JdbcBatch {
+
+    private JdbcBatch() {
+    }
+
+    /**
+     * Execute the statements added to the batch. A failing statement does not fail the batch,
+     * it is reported in the result, only a broken connection is thrown.
+     * @param statement Statement with all statements or parameter sets added
+     * @param size Number of batch entries
+     * @param startTime When the batch started, for the execution time
+     */
+    static BatchResult execute(Statement statement, int size, long startTime) throws SQLException {
+        BatchResult result = new BatchResult(size);
+        try {
+            copyCounts(result, statement.executeBatch(), null);
+        } catch (BatchUpdateException e) {
+            // SQLState class 08 means the connection failed, nothing after it was executed
+            if (e.getSQLState() != null && e.getSQLState().startsWith("08")) {
+                throw e;
+            }
+            copyCounts(result, e.getUpdateCounts(), e.getMessage());
+        }
+        result.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return result;
+    }
+
+    private static void copyCounts(BatchResult result, int[] counts, String error) {
+        int reported = counts != null ? counts.length : 0;
+        for (int i = 0; i < result.size(); i++) {
+            if (i < reported && counts[i] != Statement.EXECUTE_FAILED) {
+                result.setCount(i, counts[i]);
+            } else if (i <= reported) {
+                result.setFailed(i, error);
+            } else {
+                // The driver stopped at the failing statement
+                result.setFailed(i, "Not executed after an earlier failure");
+            }
+        }
+    }
+}
@@ -0,0 +1,654 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Small JDBC connection pool for one saved connection.
+ * Connections are borrowed with {@link #borrow()} and returned by closing them, so callers keep using
+ * try-with-resources. Idle connections above the minimum size are closed after the idle timeout,
+ * connections that sat idle for a while are checked with {@link Connection#isValid(int)} before reuse.
+ */
+public class JdbcConnectionPool {
+
+    private static final String TAG = "JdbcConnectionPool";
+
+    // One daemon thread evicts idle connections for all pools
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jdbc-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // USE db, the only statement that switches the database of a session
+    private static final Pattern USE_STATEMENT = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*USE\\s+(`(?:[^`]|``)+`|\\w+)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * Opens a new physical connection
+     */
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * Work that must not overlap with a borrowed connection being returned
+     */
+    public interface LeasedAction {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Pool sizing and timeouts
+     */
+    public static class Config {
+        private int minSize = 1;
+        private int maxSize = 4;
+        private long idleTimeoutMs = 60000;
+        private long borrowTimeoutMs = 20000;
+        private long validateAfterIdleMs = 5000;
+        private int validationTimeoutSeconds = 5;
+        private String sessionIdQuery;
+        private int statementCacheSize = 0;
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public Config setMinSize(int minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public Config setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public long getIdleTimeoutMs() {
+            return idleTimeoutMs;
+        }
+
+        public Config setIdleTimeoutMs(long idleTimeoutMs) {
+            this.idleTimeoutMs = idleTimeoutMs;
+            return this;
+        }
+
+        public long getBorrowTimeoutMs() {
+            return borrowTimeoutMs;
+        }
+
+        public Config setBorrowTimeoutMs(long borrowTimeoutMs) {
+            this.borrowTimeoutMs = borrowTimeoutMs;
+            return this;
+        }
+
+        /**
+         * Idle time after which a connection is validated before it is handed out again
+         */
+        public long getValidateAfterIdleMs() {
+            return validateAfterIdleMs;
+        }
+
+        public Config setValidateAfterIdleMs(long validateAfterIdleMs) {
+            this.validateAfterIdleMs = validateAfterIdleMs;
+            return this;
+        }
+
+        public int getValidationTimeoutSeconds() {
+            return validationTimeoutSeconds;
+        }
+
+        public Config setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+            return this;
+        }
+
+        /**
+         * Query returning the server's id for a connection, e.g. SELECT CONNECTION_ID().
+         * Run once per physical connection, see {@link #getSessionId(Connection)}. Null to skip.
+         */
+        public String getSessionIdQuery() {
+            return sessionIdQuery;
+        }
+
+        public Config setSessionIdQuery(String sessionIdQuery) {
+            this.sessionIdQuery = sessionIdQuery;
+            return this;
+        }
+
+        /**
+         * Prepared statements kept open per connection, see {@link StatementCache}. 0 disables the cache.
+         */
+        public int getStatementCacheSize() {
+            return statementCacheSize;
+        }
+
+        public Config setStatementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = Math.max(0, statementCacheSize);
+            return this;
+        }
+    }
+
+    /**
+     * Snapshot of the pool counters
+     */
+    public static class Stats {
+        public final int total;
+        public final int idle;
+        public final int inUse;
+        public final int maxSize;
+        public final long borrows;
+        public final long waits;
+        public final long timeouts;
+        public final long created;
+        public final long evicted;
+        public final long invalidated;
+        public final long totalWaitMs;
+        public final long statementHits;
+        public final long statementMisses;
+
+        Stats(int total, int idle, int maxSize, long borrows, long waits, long timeouts, long created,
+              long evicted, long invalidated, long totalWaitMs, long statementHits, long statementMisses) {
+            this.total = total;
+            this.idle = idle;
+            this.inUse = total - idle;
+            this.maxSize = maxSize;
+            this.borrows = borrows;
+            this.waits = waits;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.evicted = evicted;
+            this.invalidated = invalidated;
+            this.totalWaitMs = totalWaitMs;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        @Override
+        public String toString() {
+            return inUse + " in use, " + idle + " idle (max " + maxSize + "), " + borrows + " borrows, "
+                    + waits + " waited (" + totalWaitMs + "ms total), " + timeouts + " timeouts, "
+                    + created + " created, " + evicted + " evicted, " + invalidated + " invalidated, "
+                    + "statement cache " + statementHits + " hits / " + statementMisses + " misses";
+        }
+    }
+
+    private static class PooledConnection {
+        final Connection physical;
+        long lastReturned;
+        String catalog;
+        boolean broken;
+        long sessionId = -1;
+        StatementCache statements;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.lastReturned = System.currentTimeMillis();
+        }
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final Config config;
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledFuture<?> eviction;
+    private int total = 0;
+    private boolean closed = false;
+    private volatile String catalog;
+
+    private long borrows;
+    private long waits;
+    private long timeouts;
+    private long created;
+    private long evicted;
+    private long invalidated;
+    private long totalWaitMs;
+    private long statementHits;
+    private long statementMisses;
+
+    /**
+     * Create the pool and open the minimum number of connections
+     * @param name Name used in logs and statistics, usually the connection tracking id
+     * @param factory Opens physical connections
+     * @param config Sizing and timeouts
+     * @throws SQLException if the first connection cannot be opened
+     */
+    public JdbcConnectionPool(String name, ConnectionFactory factory, Config config) throws SQLException {
+        this.name = name;
+        this.factory = factory;
+        this.config = config;
+
+        try {
+            for (int i = 0; i < Math.max(1, config.getMinSize()); i++) {
+                PooledConnection connection = open();
+                synchronized (this) {
+                    total++;
+                    created++;
+                    idle.push(connection);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (PooledConnection connection : idle) {
+                closeQuietly(connection);
+            }
+            throw e;
+        }
+
+        long period = Math.max(1000, config.getIdleTimeoutMs() / 2);
+        this.eviction = EVICTOR.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        Log.i(TAG, "Pool [" + name + "] started with " + total + " connection(s), max " + config.getMaxSize());
+    }
+
+    /**
+     * Database that borrowed connections are switched to, like a USE on a single connection
+     */
+    public void setCatalog(String catalog) {
+        this.catalog = catalog;
+    }
+
+    public String getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Database a USE statement switches to. Services run it through {@link #setCatalog} instead of
+     * on one borrowed connection, where it would only change whichever session happened to run it.
+     * @return The unquoted database name, null if the statement is no USE
+     */
+    public static String usedDatabase(String statement) {
+        Matcher matcher = statement != null ? USE_STATEMENT.matcher(statement) : null;
+        if (matcher == null || !matcher.find()) {
+            return null;
+        }
+        String name = matcher.group(1);
+        return name.startsWith("`") ? name.substring(1, name.length() - 1).replace("``", "`") : name;
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout if all connections are in use.
+     * Closing the returned connection gives it back to the pool.
+     */
+    public Connection borrow() throws SQLException {
+        return borrow(catalog);
+    }
+
+    /**
+     * Borrow a connection switched to a given database instead of the pool's current one
+     * @param catalog The database, null to keep whatever the connection uses
+     */
+    public Connection borrow(String catalog) throws SQLException {
+        return borrow(catalog, config.getBorrowTimeoutMs());
+    }
+
+    /**
+     * Borrow a connection, waiting at most the given time for one to become free
+     * @param catalog The database, null to keep whatever the connection uses
+     * @param timeoutMs Time to wait while all connections are in use, 0 to fail at once
+     * @throws SQLTransientConnectionException if no connection became free in time. The pool is busy,
+     *                                         the server may well be fine.
+     */
+    public Connection borrow(String catalog, long timeoutMs) throws SQLException {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMs;
+        boolean waited = false;
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+
+            synchronized (this) {
+                while (candidate == null && !create) {
+                    if (closed) {
+                        throw new SQLException("Connection pool [" + name + "] is closed", "08003");
+                    }
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pop();
+                    } else if (total < config.getMaxSize()) {
+                        // Reserve the slot, the connection is opened outside the lock
+                        total++;
+                        create = true;
+                    } else {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            // Only waits that ran out count, not a check whether a connection is free
+                            if (timeoutMs > 0) {
+                                timeouts++;
+                            }
+                            // HYT00 rather than class 08, a busy pool is no connection failure
+                            throw new SQLTransientConnectionException("Timed out after " + timeoutMs
+                                    + "ms waiting for a free database connection (" + total + " in use)", "HYT00");
+                        }
+                        waited = true;
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a database connection", "08001", e);
+                        }
+                    }
+                }
+            }
+
+            if (create) {
+                try {
+                    candidate = open();
+                } catch (SQLException | RuntimeException e) {
+                    synchronized (this) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+                synchronized (this) {
+                    created++;
+                }
+            } else if (!isUsable(candidate)) {
+                discard(candidate);
+                continue;
+            }
+
+            try {
+                applyCatalog(candidate, catalog);
+            } catch (SQLException e) {
+                // An unknown database is reported by the server, the connection itself is still fine
+                candidate.broken = e.getSQLState() != null && e.getSQLState().startsWith("08");
+                release(candidate);
+                throw e;
+            }
+
+            synchronized (this) {
+                borrows++;
+                if (waited) {
+                    waits++;
+                    totalWaitMs += System.currentTimeMillis() - start;
+                }
+            }
+            return lease(candidate);
+        }
+    }
+
+    /**
+     * Close all idle connections and refuse further borrows. Borrowed connections are closed when returned.
+     */
+    public void close() {
+        eviction.cancel(false);
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        for (PooledConnection connection : toClose) {
+            closeQuietly(connection);
+        }
+        Log.i(TAG, "Pool [" + name + "] closed");
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Server id of the session behind a borrowed connection, used to kill its query from another connection
+     * @param leased A connection returned by {@link #borrow()}
+     * @return The id, or -1 if unknown or no session id query is configured
+     */
+    public long getSessionId(Connection leased) {
+        if (!Proxy.isProxyClass(leased.getClass())) {
+            return -1;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(leased);
+        return handler instanceof Lease ? ((Lease) handler).connection.sessionId : -1;
+    }
+
+    /**
+     * Run an action while a borrowed connection is kept from being returned, e.g. to kill its query
+     * without hitting the next borrower of the same session. Returning the connection waits for the action.
+     * @param leased A connection returned by {@link #borrow()}
+     * @param action The action, only run if the connection is still borrowed
+     * @return false if the connection was already returned and the action did not run
+     */
+    public boolean runWhileBorrowed(Connection leased, LeasedAction action) throws SQLException {
+        if (!Proxy.isProxyClass(leased.getClass()) || !(Proxy.getInvocationHandler(leased) instanceof Lease)) {
+            return false;
+        }
+        Lease lease = (Lease) Proxy.getInvocationHandler(leased);
+        synchronized (lease) {
+            if (lease.returned) {
+                return false;
+            }
+            action.run();
+            return true;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(total, idle.size(), config.getMaxSize(), borrows, waits, timeouts, created,
+                evicted, invalidated, totalWaitMs, statementHits, statementMisses);
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection connection = new PooledConnection(factory.create());
+        if (config.getStatementCacheSize() > 0) {
+            connection.statements = new StatementCache(connection.physical, config.getStatementCacheSize(),
+                    this::countStatement);
+        }
+        String query = config.getSessionIdQuery();
+        if (query != null) {
+            try (Statement statement = connection.physical.createStatement();
+                 ResultSet resultSet = statement.executeQuery(query)) {
+                if (resultSet.next()) {
+                    connection.sessionId = resultSet.getLong(1);
+                }
+            } catch (SQLException e) {
+                // Only the last resort of query cancellation needs the id
+                Log.w(TAG, "Pool [" + name + "] could not read session id: " + e.getMessage());
+            }
+        }
+        return connection;
+    }
+
+    private synchronized void countStatement(boolean hit) {
+        if (hit) {
+            statementHits++;
+        } else {
+            statementMisses++;
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        try {
+            if (connection.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - connection.lastReturned < config.getValidateAfterIdleMs()) {
+                return true;
+            }
+            return connection.physical.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            Log.w(TAG, "Pool [" + name + "] validation failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void applyCatalog(PooledConnection connection, String wanted) throws SQLException {
+        if (wanted != null && !wanted.equals(connection.catalog)) {
+            connection.physical.setCatalog(wanted);
+            connection.catalog = wanted;
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        if (!connection.broken) {
+            try {
+                // Leave no open transaction behind for the next borrower
+                if (!connection.physical.getAutoCommit()) {
+                    connection.physical.rollback();
+                    connection.physical.setAutoCommit(true);
+                }
+                // A USE run as a statement switched the session without the lease seeing it
+                connection.catalog = connection.physical.getCatalog();
+            } catch (SQLException e) {
+                connection.broken = true;
+            }
+        }
+
+        synchronized (this) {
+            if (!closed && !connection.broken) {
+                connection.lastReturned = System.currentTimeMillis();
+                idle.push(connection);
+                notifyAll();
+                return;
+            }
+        }
+        discard(connection);
+    }
+
+    private void discard(PooledConnection connection) {
+        closeQuietly(connection);
+        synchronized (this) {
+            total--;
+            invalidated++;
+            notifyAll();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (this) {
+            // Oldest connections are at the tail, the most recently returned one is reused first
+            Iterator<PooledConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext() && total > config.getMinSize()) {
+                PooledConnection connection = iterator.next();
+                if (now - connection.lastReturned >= config.getIdleTimeoutMs()) {
+                    iterator.remove();
+                    total--;
+                    evicted++;
+                    expired.add(connection);
+                }
+            }
+        }
+        // Closing talks to the server, borrowers must not wait for it
+        for (PooledConnection connection : expired) {
+            closeQuietly(connection);
+        }
+    }
+
+    private void closeQuietly(PooledConnection connection) {
+        if (connection.statements != null) {
+            connection.statements.clear();
+        }
+        try {
+            connection.physical.close();
+        } catch (SQLException e) {
+            Log.d(TAG, "Pool [" + name + "] error closing connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Wrap a pooled connection so that close() returns it to the pool instead of closing it
+     */
+    private Connection lease(PooledConnection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Lease(connection));
+    }
+
+    private class Lease implements InvocationHandler {
+        final PooledConnection connection;
+        // Only set while holding the lease's lock, see runWhileBorrowed
+        private volatile boolean returned = false;
+
+        Lease(PooledConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (returned) {
+                            return null;
+                        }
+                        returned = true;
+                    }
+                    release(connection);
+                    return null;
+                case "isClosed":
+                    return returned || connection.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "] " + connection.physical;
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection was returned to the pool", "08003");
+            }
+            try {
+                // Keep the catalog known, borrow() and the statement cache rely on it
+                if ("setCatalog".equals(method.getName())) {
+                    connection.physical.setCatalog((String) args[0]);
+                    connection.catalog = (String) args[0];
+                    return null;
+                }
+                // Plain prepareStatement(sql) is served from the statement cache
+                if (connection.statements != null && "prepareStatement".equals(method.getName())
+                        && args.length == 1) {
+                    return connection.statements.prepare(connection.catalog, (String) args[0]);
+                }
+                return method.invoke(connection.physical, args);
+            } catch (InvocationTargetException e) {
+                throw checkBroken(e.getCause());
+            } catch (SQLException e) {
+                throw checkBroken(e);
+            }
+        }
+
+        /**
+         * SQLState class 08 means the connection itself failed, do not pool it again
+         */
+        private Throwable checkBroken(Throwable cause) {
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("08")) {
+                connection.broken = true;
+            }
+            return cause;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import io.celox.querycore.models.QueryResult;
+
+/**
+ * Reads one page of a MySQL/MariaDB table. With a single column primary key the page seeks past
+ * the last key of the previous page, so every page costs an index range scan no matter how deep
+ * it is. Other tables use LIMIT/OFFSET, where the server reads and discards all skipped rows.
+ */
+final class JdbcPageQuery {
+
+    private static final String TAG = "JdbcPageQuery";
+
+    private JdbcPageQuery() {
+    }
+
+    /**
+     * @param pool The pool the connection was borrowed from, for cancelling
+     * @param connection A borrowed connection
+     * @param request The page to read
+     * @param handle The handle the caller may cancel
+     * @return The page with the key to continue after
+     */
+    static TablePage execute(JdbcConnectionPool pool, Connection connection, PageRequest request,
+                             QueryHandle handle) throws Exception {
+        String keyColumn = request.isKeyResolved()
+                ? request.getKeyColumn()
+                : findKeyColumn(connection, request.getTable());
+        long startTime = System.currentTimeMillis();
+
+        String sql = buildQuery(request.getTable(), keyColumn, request.getAfterKey() != null);
+        QueryResult.Builder builder = new QueryResult.Builder();
+        Object lastKey = null;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            JdbcQueryCancel.register(handle, pool, connection, statement);
+            int parameter = 1;
+            if (keyColumn != null && request.getAfterKey() != null) {
+                statement.setObject(parameter++, request.getAfterKey());
+            }
+            statement.setInt(parameter++, request.getPageSize());
+            if (keyColumn == null) {
+                statement.setLong(parameter, request.getOffset());
+            }
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                JdbcResultDecoder decoder = new JdbcResultDecoder(resultSet.getMetaData(), builder);
+                int keyIndex = keyColumn != null ? resultSet.findColumn(keyColumn) : -1;
+                while (resultSet.next()) {
+                    if (handle.isCancelled()) {
+                        throw new Exception("Query cancelled");
+                    }
+                    decoder.readRow(resultSet);
+                    if (keyIndex > 0) {
+                        lastKey = resultSet.getObject(keyIndex);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            builder.discard();
+            throw e;
+        }
+
+        QueryResult rows = builder.build();
+        rows.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        Log.d(TAG, "Page " + request.getPageIndex() + " of " + request.getTable() + ": " + rows.getRowCount()
+                + " rows by " + (keyColumn != null ? "key " + keyColumn : "offset " + request.getOffset())
+                + " in " + rows.getExecutionTimeMs() + "ms");
+        return new TablePage(request, rows, keyColumn, lastKey);
+    }
+
+    /**
+     * @return The primary key column if the key has exactly one column, otherwise null
+     */
+    static String findKeyColumn(Connection connection, String table) throws SQLException {
+        String keyColumn = null;
+        int columns = 0;
+        try (ResultSet keys = connection.getMetaData().getPrimaryKeys(connection.getCatalog(), null, table)) {
+            while (keys.next()) {
+                keyColumn = keys.getString("COLUMN_NAME");
+                columns++;
+            }
+        }
+        if (columns != 1) {
+            Log.d(TAG, "No single column primary key on " + table + " (" + columns + " columns), paging by offset");
+            return null;
+        }
+        return keyColumn;
+    }
+
+    static String buildQuery(String table, String keyColumn, boolean afterKey) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(quote(table));
+        if (keyColumn == null) {
+            return sql.append(" LIMIT ? OFFSET ?").toString();
+        }
+        if (afterKey) {
+            sql.append(" WHERE ").append(quote(keyColumn)).append(" > ?");
+        }
+        return sql.append(" ORDER BY ").append(quote(keyColumn)).append(" LIMIT ?").toString();
+    }
+
+    /**
+     * Quote an identifier with backticks
+     */
+    static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+}
@@ -0,0 +1,50 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Cancel actions for a statement running on a pooled MySQL/MariaDB connection
+ */
+final class JdbcQueryCancel {
+
+    private static final String TAG = "JdbcQueryCancel";
+
+    private JdbcQueryCancel() {
+    }
+
+    /**
+     * Cancel the statement through the driver first, and if the query keeps running send
+     * KILL QUERY for its session over another connection of the pool
+     * @param handle The handle the caller may cancel
+     * @param pool The pool the connection was borrowed from
+     * @param connection The borrowed connection running the statement
+     * @param statement The statement to cancel, already owned by the caller's try-with-resources
+     */
+    static void register(QueryHandle handle, JdbcConnectionPool pool, Connection connection, Statement statement) {
+        handle.onCancel(statement::cancel);
+
+        long sessionId = pool.getSessionId(connection);
+        if (sessionId < 0) {
+            return;
+        }
+        handle.onCancelTimeout(() -> {
+            if (connection.isClosed()) {
+                return;
+            }
+            try (Connection side = pool.borrow();
+                 Statement kill = side.createStatement()) {
+                // Once returned the session may already run someone else's query, so it stays borrowed until KILL is sent
+                boolean sent = pool.runWhileBorrowed(connection, () -> {
+                    Log.w(TAG, "Killing query of session " + sessionId);
+                    kill.execute("KILL QUERY " + sessionId);
+                });
+                if (!sent) {
+                    Log.d(TAG, "Session " + sessionId + " was returned before KILL, nothing to kill");
+                }
+            }
+        });
+    }
+}
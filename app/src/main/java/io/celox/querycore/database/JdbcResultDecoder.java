@@ -0,0 +1,218 @@
+package io.celox.querycore.database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import io.celox.querycore.models.BooleanColumnVector;
+import io.celox.querycore.models.ColumnVector;
+import io.celox.querycore.models.DictionaryColumnVector;
+import io.celox.querycore.models.DoubleColumnVector;
+import io.celox.querycore.models.FloatColumnVector;
+import io.celox.querycore.models.IntColumnVector;
+import io.celox.querycore.models.LongColumnVector;
+import io.celox.querycore.models.ObjectColumnVector;
+import io.celox.querycore.models.QueryResult;
+
+/**
+ * Decodes JDBC result rows into typed column vectors.
+ * The storage of each column is chosen once per query from {@link ResultSetMetaData#getColumnType},
+ * numeric columns are then read with the primitive getters and {@link ResultSet#wasNull()}
+ * so no value is boxed while the result is materialized. Short string columns are dictionary encoded
+ * until the sampled cardinality shows that most values are distinct.
+ */
+class JdbcResultDecoder {
+
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_INT = 1;
+    private static final int KIND_LONG = 2;
+    private static final int KIND_DOUBLE = 3;
+    private static final int KIND_BOOLEAN = 4;
+    private static final int KIND_STRING = 5;
+    private static final int KIND_FLOAT = 6;
+
+    // Rows after which string columns decide between dictionary and plain storage
+    private static final int DICTIONARY_SAMPLE_ROWS = 1024;
+    // A dictionary pays off while at most one in this many values is distinct
+    private static final int DICTIONARY_MIN_REPEAT = 4;
+    private static final int DICTIONARY_MAX_SIZE = 1 << 16;
+
+    private final QueryResult.Builder builder;
+    private final int[] kinds;
+    private final ColumnVector[] vectors;
+    private int rowsRead = 0;
+    private boolean hasDictionaries = false;
+    // Row count at which the dictionary columns are checked next, doubles after each check
+    private int nextDictionaryCheck = DICTIONARY_SAMPLE_ROWS;
+
+    /**
+     * Declare the result columns on the builder and pick a vector per column
+     * @param metaData Metadata of the result set that will be decoded
+     * @param builder A new builder without columns that receives the rows
+     */
+    JdbcResultDecoder(ResultSetMetaData metaData, QueryResult.Builder builder) throws SQLException {
+        this.builder = builder;
+        int columnCount = metaData.getColumnCount();
+        this.kinds = new int[columnCount];
+        this.vectors = new ColumnVector[columnCount];
+
+        for (int i = 1; i <= columnCount; i++) {
+            int kind = kindOf(metaData, i);
+            ColumnVector vector = newVector(kind);
+            builder.addColumn(metaData.getColumnName(i), metaData.getColumnType(i),
+                    metaData.getColumnTypeName(i), vector);
+            kinds[i - 1] = kind;
+            vectors[i - 1] = vector;
+            hasDictionaries |= kind == KIND_STRING;
+        }
+    }
+
+    /**
+     * Append the row the result set is currently positioned on
+     */
+    void readRow(ResultSet resultSet) throws SQLException {
+        for (int i = 0; i < kinds.length; i++) {
+            int column = i + 1;
+            switch (kinds[i]) {
+                case KIND_INT: {
+                    int value = resultSet.getInt(column);
+                    if (resultSet.wasNull()) {
+                        vectors[i].appendNull();
+                    } else {
+                        ((IntColumnVector) vectors[i]).appendInt(value);
+                    }
+                    break;
+                }
+                case KIND_LONG: {
+                    long value = resultSet.getLong(column);
+                    if (resultSet.wasNull()) {
+                        vectors[i].appendNull();
+                    } else {
+                        ((LongColumnVector) vectors[i]).appendLong(value);
+                    }
+                    break;
+                }
+                case KIND_DOUBLE: {
+                    double value = resultSet.getDouble(column);
+                    if (resultSet.wasNull()) {
+                        vectors[i].appendNull();
+                    } else {
+                        ((DoubleColumnVector) vectors[i]).appendDouble(value);
+                    }
+                    break;
+                }
+                case KIND_FLOAT: {
+                    float value = resultSet.getFloat(column);
+                    if (resultSet.wasNull()) {
+                        vectors[i].appendNull();
+                    } else {
+                        ((FloatColumnVector) vectors[i]).appendFloat(value);
+                    }
+                    break;
+                }
+                case KIND_BOOLEAN: {
+                    boolean value = resultSet.getBoolean(column);
+                    if (resultSet.wasNull()) {
+                        vectors[i].appendNull();
+                    } else {
+                        ((BooleanColumnVector) vectors[i]).appendBoolean(value);
+                    }
+                    break;
+                }
+                case KIND_STRING:
+                    ((DictionaryColumnVector) vectors[i]).appendString(resultSet.getString(column));
+                    break;
+                default:
+                    vectors[i].appendObject(resultSet.getObject(column));
+                    break;
+            }
+        }
+        rowsRead++;
+        if (hasDictionaries && rowsRead == nextDictionaryCheck) {
+            checkDictionaries();
+            nextDictionaryCheck = rowsRead > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : rowsRead * 2;
+        }
+        builder.commitRow();
+    }
+
+    /**
+     * Fall back to plain storage for string columns whose sampled cardinality is too high for a dictionary.
+     * Runs after the sample and then each time the row count doubles, a column that went plain stays plain.
+     */
+    private void checkDictionaries() {
+        hasDictionaries = false;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] != KIND_STRING) {
+                continue;
+            }
+            DictionaryColumnVector dictionary = (DictionaryColumnVector) vectors[i];
+            int distinct = dictionary.getDictionarySize();
+            // Rows buffered since the last spill, the dictionary only covers those
+            int rows = dictionary.size();
+            boolean sampled = rows >= DICTIONARY_SAMPLE_ROWS;
+            if ((sampled && distinct * DICTIONARY_MIN_REPEAT > rows) || distinct > DICTIONARY_MAX_SIZE) {
+                ObjectColumnVector plain = dictionary.toObjectVector();
+                builder.replaceVector(i, plain);
+                vectors[i] = plain;
+                kinds[i] = KIND_OBJECT;
+            } else {
+                hasDictionaries = true;
+            }
+        }
+    }
+
+    /**
+     * Choose the storage for a column. Unsigned types move up one size so they never overflow,
+     * anything without a lossless primitive representation (DECIMAL, unsigned BIGINT, BIT(n), ...) stays an object.
+     */
+    private static int kindOf(ResultSetMetaData metaData, int column) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                return KIND_INT;
+            case Types.INTEGER:
+                return metaData.isSigned(column) ? KIND_INT : KIND_LONG;
+            case Types.BIGINT:
+                return metaData.isSigned(column) ? KIND_LONG : KIND_OBJECT;
+            case Types.REAL:
+                // MySQL FLOAT, widening it to double would show 0.1 as 0.10000000149011612
+                return KIND_FLOAT;
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return KIND_DOUBLE;
+            case Types.BOOLEAN:
+                return KIND_BOOLEAN;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                // Starts dictionary encoded, checkDictionaries falls back to objects for high cardinality
+                return KIND_STRING;
+            case Types.BIT:
+                // TINYINT(1) and BIT(1) are reported as BIT, wider BIT columns are byte arrays
+                return metaData.getPrecision(column) <= 1 ? KIND_BOOLEAN : KIND_OBJECT;
+            default:
+                return KIND_OBJECT;
+        }
+    }
+
+    private static ColumnVector newVector(int kind) {
+        switch (kind) {
+            case KIND_INT:
+                return new IntColumnVector();
+            case KIND_LONG:
+                return new LongColumnVector();
+            case KIND_DOUBLE:
+                return new DoubleColumnVector();
+            case KIND_FLOAT:
+                return new FloatColumnVector();
+            case KIND_BOOLEAN:
+                return new BooleanColumnVector();
+            case KIND_STRING:
+                return new DictionaryColumnVector();
+            default:
+                return new ObjectColumnVector();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.celox.querycore.models.QueryResult;
+import io.celox.querycore.models.ResultColumn;
+
+/**
+ * {@link RowCursor} over a forward-only, read-only JDBC result set with a bounded fetch size
+ */
+class JdbcRowCursor implements RowCursor {
+
+    private static final String TAG = "JdbcRowCursor";
+
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final List<ResultColumn> columns;
+    private final boolean cancelOnEarlyClose;
+
+    private QueryResult.Builder decoderBuilder;
+    private JdbcResultDecoder decoder;
+    private int rowsRead = 0;
+    private boolean exhausted = false;
+    private boolean closed = false;
+
+    private JdbcRowCursor(Connection connection, Statement statement, ResultSet resultSet,
+                          boolean cancelOnEarlyClose) throws SQLException {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.cancelOnEarlyClose = cancelOnEarlyClose;
+
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        List<ResultColumn> header = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            header.add(new ResultColumn(metaData.getColumnName(i), metaData.getColumnType(i),
+                    metaData.getColumnTypeName(i)));
+        }
+        this.columns = Collections.unmodifiableList(header);
+    }
+
+    /**
+     * Execute a query as streaming cursor
+     * @param pool The pool the connection was borrowed from, for the last resort cancel
+     * @param connection A borrowed connection, owned by the cursor and closed together with it
+     * @param query The SQL query
+     * @param options Fetch size and row limit
+     * @param cancelOnEarlyClose Cancel the statement when closed before the end. Needed for drivers that
+     *                           stream over the text protocol and would otherwise read all remaining rows on close.
+     * @param handle Cancels the statement while it runs or streams
+     */
+    static JdbcRowCursor open(JdbcConnectionPool pool, Connection connection, String query, CursorOptions options,
+                              boolean cancelOnEarlyClose, QueryHandle handle) throws SQLException {
+        PreparedStatement statement = null;
+        try {
+            // Prepared so MySQL Connector/J can serve the fetch size from a server-side cursor (useCursorFetch)
+            statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            JdbcQueryCancel.register(handle, pool, connection, statement);
+            statement.setFetchSize(options.getFetchSize());
+            if (options.getMaxRows() > 0) {
+                statement.setMaxRows(options.getMaxRows());
+            }
+            ResultSet resultSet = statement.executeQuery();
+            return new JdbcRowCursor(connection, statement, resultSet, cancelOnEarlyClose);
+        } catch (SQLException e) {
+            if (statement != null) {
+                statement.close();
+            }
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ResultColumn> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (exhausted || closed) {
+            return false;
+        }
+        if (!resultSet.next()) {
+            exhausted = true;
+            return false;
+        }
+        rowsRead++;
+        return true;
+    }
+
+    @Override
+    public Object getValue(int column) throws SQLException {
+        return resultSet.getObject(column + 1);
+    }
+
+    @Override
+    public int fetchInto(QueryResult.Builder builder, int maxRows) throws SQLException {
+        if (builder != decoderBuilder) {
+            decoder = new JdbcResultDecoder(resultSet.getMetaData(), builder);
+            decoderBuilder = builder;
+        }
+        int appended = 0;
+        while (appended < maxRows && next()) {
+            decoder.readRow(resultSet);
+            appended++;
+        }
+        return appended;
+    }
+
+    @Override
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!exhausted && cancelOnEarlyClose) {
+            try {
+                Log.d(TAG, "Cursor closed after " + rowsRead + " rows, cancelling remaining transfer");
+                statement.cancel();
+            } catch (SQLException e) {
+                Log.w(TAG, "Could not cancel statement: " + e.getMessage());
+            }
+        }
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            // A cancelled statement reports the interruption when its result set is closed
+            Log.d(TAG, "Error closing result set: " + e.getMessage());
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Log.d(TAG, "Error closing statement: " + e.getMessage());
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Log.d(TAG, "Error releasing connection: " + e.getMessage());
+        }
+    }
+}
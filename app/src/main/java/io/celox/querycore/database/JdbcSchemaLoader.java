@@ -0,0 +1,82 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import io.celox.querycore.models.DatabaseSchema;
+
+/**
+ * Reads the whole schema of a MySQL/MariaDB database from INFORMATION_SCHEMA in two queries,
+ * instead of listing the tables and sending one DESCRIBE per table
+ */
+final class JdbcSchemaLoader {
+
+    private static final String TAG = "JdbcSchemaLoader";
+
+    // Base tables only, like DatabaseMetaData.getTables with type TABLE
+    private static final String COLUMNS_QUERY =
+            "SELECT t.TABLE_NAME, t.TABLE_ROWS, c.COLUMN_NAME, c.COLUMN_TYPE, c.IS_NULLABLE, c.COLUMN_KEY"
+            + " FROM INFORMATION_SCHEMA.TABLES t"
+            + " JOIN INFORMATION_SCHEMA.COLUMNS c"
+            + " ON c.TABLE_SCHEMA = t.TABLE_SCHEMA AND c.TABLE_NAME = t.TABLE_NAME"
+            + " WHERE t.TABLE_SCHEMA = ? AND t.TABLE_TYPE = 'BASE TABLE'"
+            + " ORDER BY t.TABLE_NAME, c.ORDINAL_POSITION";
+
+    private static final String INDEXES_QUERY =
+            "SELECT TABLE_NAME, INDEX_NAME, NON_UNIQUE, COLUMN_NAME"
+            + " FROM INFORMATION_SCHEMA.STATISTICS"
+            + " WHERE TABLE_SCHEMA = ?"
+            + " ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX";
+
+    private JdbcSchemaLoader() {
+    }
+
+    /**
+     * @param connection A borrowed connection, the statements come from its statement cache
+     * @param database The database to read
+     * @return All base tables with columns, keys, indexes and estimated row counts
+     */
+    static DatabaseSchema load(Connection connection, String database) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        DatabaseSchema schema = new DatabaseSchema(database);
+
+        try (PreparedStatement statement = connection.prepareStatement(COLUMNS_QUERY)) {
+            statement.setString(1, database);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                DatabaseSchema.Table table = null;
+                while (resultSet.next()) {
+                    String tableName = resultSet.getString(1);
+                    if (table == null || !table.getName().equals(tableName)) {
+                        long rows = resultSet.getLong(2);
+                        table = new DatabaseSchema.Table(tableName, resultSet.wasNull() ? -1 : rows);
+                        schema.addTable(table);
+                    }
+                    table.addColumn(new DatabaseSchema.Column(resultSet.getString(3), resultSet.getString(4),
+                            "YES".equals(resultSet.getString(5)), resultSet.getString(6)));
+                }
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INDEXES_QUERY)) {
+            statement.setString(1, database);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    // Views and tables filtered out above have no entry
+                    DatabaseSchema.Table table = schema.getTable(resultSet.getString(1));
+                    if (table != null) {
+                        table.index(resultSet.getString(2), resultSet.getInt(3) == 0)
+                                .addColumn(resultSet.getString(4));
+                    }
+                }
+            }
+        }
+
+        Log.i(TAG, "Loaded schema of " + database + ": " + schema.getTables().size() + " tables in "
+                + (System.currentTimeMillis() - startTime) + "ms");
+        return schema;
+    }
+}
@@ -0,0 +1,236 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Databases, tables and table structures of one connection, which rarely change.
+ * Entries younger than the TTL are served as they are. Older entries are still served right away
+ * and reloaded in the background (stale-while-revalidate), the listener hears about changed values.
+ * Statements that change the schema invalidate the whole cache.
+ * Overlapping loads of the same key, e.g. several screens asking for the databases right after connecting,
+ * share one round trip.
+ */
+public class MetadataCache {
+
+    private static final String TAG = "MetadataCache";
+
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    public static final String KEY_DATABASES = "databases";
+
+    // DDL that can add, remove or change databases, tables or columns
+    private static final Pattern SCHEMA_CHANGE = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(CREATE|ALTER|DROP|RENAME)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * Loads a value over the network
+     */
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    /**
+     * Told when a background refresh found a different value
+     */
+    public interface Listener {
+        void onRefreshed(String key, Object value);
+    }
+
+    private static class Entry {
+        final Object value;
+        final long loadedAt;
+
+        Entry(Object value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final long ttlMs;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final SingleFlight<String, Object> loads = new SingleFlight<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    // Bumped by every invalidation, so a load started before it does not store what it read
+    private volatile long generation = 0;
+    private volatile Listener listener;
+
+    public MetadataCache() {
+        this(DEFAULT_TTL_MS);
+    }
+
+    /**
+     * @param ttlMs Age after which an entry is refreshed in the background on its next use
+     */
+    public MetadataCache(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    public static String tablesKey(String database) {
+        return "tables:" + database;
+    }
+
+    public static String structureKey(String database, String table) {
+        return "structure:" + database + "." + table;
+    }
+
+    public static String schemaKey(String database) {
+        return "schema:" + database;
+    }
+
+    /**
+     * Whether a statement changes the schema and must invalidate the cache
+     */
+    public static boolean isSchemaChange(String statement) {
+        return statement != null && SCHEMA_CHANGE.matcher(statement).find();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get a value, loading it on this thread if it is not cached
+     * @param key Key of the value, see the key helpers
+     * @param loader Loads the value, also used for the background refresh
+     * @return The cached value, possibly stale, or the freshly loaded one
+     * @throws Exception The loader's failure if there was no cached value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Loader<T> loader) throws Exception {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            long loadGeneration = generation;
+            T value = load(key, loader, loadGeneration);
+            store(key, value, loadGeneration);
+            return value;
+        }
+        hits.incrementAndGet();
+        if (System.currentTimeMillis() - entry.loadedAt >= ttlMs) {
+            staleHits.incrementAndGet();
+            refreshInBackground(key, loader);
+        }
+        return (T) entry.value;
+    }
+
+    /**
+     * @return The cached value even if stale, null if there is none. Never loads.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T peek(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? (T) entry.value : null;
+    }
+
+    /**
+     * Generation to pass to {@link #put}, read before the value is loaded
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Store a value that was loaded together with another one, e.g. table structures read with the schema.
+     * Dropped if the cache was invalidated while it was loading.
+     * @param loadGeneration {@link #getGeneration()} from before the load
+     */
+    public void put(String key, Object value, long loadGeneration) {
+        store(key, value, loadGeneration);
+    }
+
+    public synchronized void invalidate(String key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        Log.d(TAG, "Metadata cache invalidated");
+    }
+
+    /**
+     * Load a value, or wait for the load of the same key already running.
+     * Loads started before an invalidation are not joined, they may have read the old schema.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T load(String key, Loader<T> loader, long loadGeneration) throws Exception {
+        return (T) loads.run(loadGeneration + ":" + key, loader::load);
+    }
+
+    private synchronized void store(String key, Object value, long loadGeneration) {
+        if (loadGeneration == generation) {
+            entries.put(key, new Entry(value, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Uses served from the cache, including stale entries
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Loads sent to the server, by misses and background refreshes
+     */
+    public long getLoads() {
+        return loads.getCalls() - loads.getShared();
+    }
+
+    /**
+     * Loads that waited for an identical load in flight instead of sending their own
+     */
+    public long getJoinedLoads() {
+        return loads.getShared();
+    }
+
+    private <T> void refreshInBackground(String key, Loader<T> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            // Nobody waits for a refresh, so it runs behind all work the user started
+            DatabaseTaskScheduler.getInstance().execute(DatabaseTaskScheduler.Lane.BACKGROUND,
+                    () -> refresh(key, loader));
+        } catch (RejectedExecutionException e) {
+            // The next use tries again
+            refreshing.remove(key);
+        }
+    }
+
+    private <T> void refresh(String key, Loader<T> loader) {
+        try {
+            long loadGeneration = generation;
+            T value = load(key, loader, loadGeneration);
+            Entry previous = entries.get(key);
+            store(key, value, loadGeneration);
+            Listener current = listener;
+            if (current != null && loadGeneration == generation
+                    && (previous == null || !Objects.equals(previous.value, value))) {
+                current.onRefreshed(key, value);
+            }
+        } catch (Exception e) {
+            // Keep serving the stale value, the next use tries again
+            Log.w(TAG, "Refreshing " + key + " failed: " + e.getMessage());
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataCache{entries=" + entries.size() + ", hits=" + hits.get() + " (" + staleHits.get()
+                + " stale), loads=" + getLoads() + ", joined=" + getJoinedLoads() + "}";
+    }
+}
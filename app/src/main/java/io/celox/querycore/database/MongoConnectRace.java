@@ -0,0 +1,231 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoCredential;
+import com.mongodb.ServerAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Connects to MongoDB with several client configurations at once and keeps the first that
+ * authenticates and answers a ping, instead of trying them one after another with a full
+ * timeout each. The clients of all other candidates are closed.
+ * Candidates with credentials win over anonymous ones: an anonymous client can ping a server
+ * that requires authentication, so it is only used once every authenticated candidate has failed,
+ * never while one is still connecting when the deadline passes.
+ */
+class MongoConnectRace {
+
+    private static final String TAG = "MongoConnectRace";
+
+    /**
+     * One client configuration to try
+     */
+    static class Candidate {
+        private final String mechanism;
+        private final MongoCredential credential;
+
+        /**
+         * @param mechanism Name of the auth mechanism, used in logs and to remember the winner
+         * @param credential Credential to authenticate with, null for an anonymous client
+         */
+        Candidate(String mechanism, MongoCredential credential) {
+            this.mechanism = mechanism;
+            this.credential = credential;
+        }
+
+        String getMechanism() {
+            return mechanism;
+        }
+
+        boolean isAuthenticated() {
+            return credential != null;
+        }
+
+        MongoClient open(ServerAddress serverAddress, MongoClientOptions options) {
+            return credential != null
+                    ? new MongoClient(serverAddress, Collections.singletonList(credential), options)
+                    : new MongoClient(serverAddress, options);
+        }
+
+        /**
+         * Authenticate and reach the server, throws if either fails
+         */
+        void ping(MongoClient client, String database) {
+            client.getDB(database).command(new BasicDBObject("ping", 1));
+        }
+    }
+
+    /**
+     * The candidate that won and its connected client
+     */
+    static class Winner {
+        final Candidate candidate;
+        final MongoClient client;
+
+        Winner(Candidate candidate, MongoClient client) {
+            this.candidate = candidate;
+            this.client = client;
+        }
+    }
+
+    private final ServerAddress serverAddress;
+    private final MongoClientOptions options;
+    private final String database;
+    private final List<Candidate> candidates;
+
+    private final Object lock = new Object();
+    private final List<MongoClient> openClients = new ArrayList<>();
+    private boolean finished = false;
+
+    /**
+     * @param serverAddress Server to connect to
+     * @param options Client options shared by all candidates
+     * @param database Database the ping is sent to
+     * @param candidates Configurations to try, in order of preference
+     */
+    MongoConnectRace(ServerAddress serverAddress, MongoClientOptions options, String database,
+                     List<Candidate> candidates) {
+        this.serverAddress = serverAddress;
+        this.options = options;
+        this.database = database;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Run all candidates concurrently until one wins or the deadline passes
+     * @param deadlineMs Time to wait for a winner
+     * @return The winning candidate with its client, which the caller now owns
+     * @throws Exception The failure of the most preferred candidate if none connected
+     */
+    Winner run(long deadlineMs) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(candidates.size(), runnable -> {
+            Thread thread = new Thread(runnable, "mongo-connect-race");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<Winner> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Winner>> futures = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            futures.add(completion.submit(() -> attempt(candidate)));
+        }
+
+        Winner winner = null;
+        Winner anonymousFallback = null;
+        Exception[] failures = new Exception[candidates.size()];
+        int pendingAuthenticated = 0;
+        for (Candidate candidate : candidates) {
+            if (candidate.isAuthenticated()) {
+                pendingAuthenticated++;
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + deadlineMs;
+        try {
+            for (int pending = candidates.size(); pending > 0 && winner == null; pending--) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<Winner> done = remaining > 0 ? completion.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (done == null) {
+                    break;
+                }
+                int index = futures.indexOf(done);
+                Candidate candidate = candidates.get(index);
+                try {
+                    Winner result = done.get();
+                    if (candidate.isAuthenticated() || pendingAuthenticated == 0) {
+                        winner = result;
+                    } else if (anonymousFallback == null) {
+                        // Hold on to it until the authenticated candidates have had their chance
+                        anonymousFallback = result;
+                    }
+                } catch (ExecutionException e) {
+                    failures[index] = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    Log.d(TAG, candidate.getMechanism() + " failed: " + failures[index].getMessage());
+                }
+                if (candidate.isAuthenticated()) {
+                    pendingAuthenticated--;
+                    if (winner == null && pendingAuthenticated == 0 && anonymousFallback != null) {
+                        winner = anonymousFallback;
+                    }
+                }
+            }
+            // At the deadline with authenticated candidates still connecting, the anonymous client may just
+            // be one the server lets ping but would refuse everything else
+            if (winner == null && pendingAuthenticated == 0) {
+                winner = anonymousFallback;
+            }
+        } finally {
+            finish(winner);
+            executor.shutdownNow();
+        }
+
+        if (winner != null) {
+            Log.i(TAG, "Connected with " + winner.candidate.getMechanism());
+            return winner;
+        }
+        if (pendingAuthenticated > 0) {
+            throw new TimeoutException("MongoDB authentication did not complete within " + deadlineMs + "ms");
+        }
+        for (Exception failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        throw new TimeoutException("No MongoDB connection within " + deadlineMs + "ms");
+    }
+
+    private Winner attempt(Candidate candidate) throws Exception {
+        MongoClient client = candidate.open(serverAddress, options);
+        synchronized (lock) {
+            if (finished) {
+                client.close();
+                throw new CancellationException("Connect race already decided");
+            }
+            openClients.add(client);
+        }
+        try {
+            candidate.ping(client, database);
+        } catch (Exception e) {
+            client.close();
+            throw e;
+        }
+        return new Winner(candidate, client);
+    }
+
+    /**
+     * Close every client except the winner's. Candidates still connecting close their client themselves.
+     */
+    private void finish(Winner winner) {
+        List<MongoClient> losers = new ArrayList<>();
+        synchronized (lock) {
+            finished = true;
+            for (MongoClient client : openClients) {
+                if (winner == null || client != winner.client) {
+                    losers.add(client);
+                }
+            }
+            openClients.clear();
+        }
+        for (MongoClient client : losers) {
+            try {
+                client.close();
+            } catch (Exception e) {
+                // Ignore cleanup errors
+            }
+        }
+    }
+}
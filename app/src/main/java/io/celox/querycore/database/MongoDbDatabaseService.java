@@ -2,7 +2,13 @@ package io.celox.querycore.database;
 
 import android.util.Log;
 
+import com.mongodb.AggregationOptions;
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.Cursor;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -14,24 +20,44 @@ import com.mongodb.MongoException;
 import com.mongodb.ServerAddress;
 import com.mongodb.WriteConcern;
 import com.mongodb.WriteResult;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
 
+import java.net.InetAddress;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
+import io.celox.querycore.models.CollectionSchema;
 import io.celox.querycore.models.ConnectionInfo;
+import io.celox.querycore.models.QueryResult;
+import io.celox.querycore.models.StringDictionary;
 
 public class MongoDbDatabaseService implements DatabaseService {
 
     private MongoClient mongoClient;
     private DB mongoDatabase;
+    private final MetadataCache metadataCache = new MetadataCache();
+    private final QueryResultCache resultCache = QueryResultCache.forDocuments();
     private ConnectionInfo connectionInfo;
     private String connectionTrackingId;
+    // Auth mechanism of the candidate that won the last connect
+    private String authMechanism;
 
     private static final String TAG = "MongoDbService";
+    // Time all connect candidates together get to authenticate and answer a ping
+    private static final long CONNECT_DEADLINE_MS = 20000;
+    // Documents returned for a bare {"collection": ...} query without find criteria or limit
+    private static final int DIRECT_QUERY_LIMIT = 100;
 
     static {
         // MongoDB connection properties
@@ -209,9 +235,19 @@ public class MongoDbDatabaseService implements DatabaseService {
 
             Log.d(TAG, "Attempting to connect to MongoDB server: " + connectionInfo.getHost());
 
+            // Resolve up front so the DNS lookup is timed on its own, the driver then hits the resolver cache
+            ConnectionTracker tracker = ConnectionTracker.getInstance();
+            String trackingId = connectionTrackingId;
+            tracker.timePhase(trackingId, ConnectionTracker.Phase.RESOLVE,
+                    () -> InetAddress.getAllByName(connectionInfo.getHost()));
+
             // Build server address
             ServerAddress serverAddress = new ServerAddress(connectionInfo.getHost(), connectionInfo.getPort());
 
+            // The driver connects on its own threads, so socket and ping times are reported through callbacks
+            AtomicLong socketConnectMs = new AtomicLong(-1);
+            AtomicLong pingServerMs = new AtomicLong(-1);
+
             // Configure client options with more conservative timeouts for mobile networks
             MongoClientOptions options = MongoClientOptions.builder()
                     .connectTimeout(20000) // 20 seconds
@@ -222,116 +258,25 @@ public class MongoDbDatabaseService implements DatabaseService {
                     .connectionsPerHost(2) // Reduced for mobile
                     .maxWaitTime(20000) // 20 seconds
                     .writeConcern(WriteConcern.ACKNOWLEDGED)
+                    .socketFactory(new TimedSocketFactory(durationMs -> {
+                        if (socketConnectMs.compareAndSet(-1, durationMs)) {
+                            tracker.trackPhase(trackingId, ConnectionTracker.Phase.SOCKET_CONNECT, durationMs);
+                        }
+                    }))
+                    .addCommandListener(new PingTimer(pingServerMs))
                     .build();
 
             Log.d(TAG, "MongoDB options configured");
             
+            // Race all auth configurations at once instead of giving each a full timeout in turn.
+            // The first ping also waits for server selection and opens and authenticates a pooled
+            // connection, so everything but the ping itself is handshake/auth
+            long raceStart = System.currentTimeMillis();
+            MongoConnectRace.Winner winner;
             try {
-                // Simple approach: check if credentials are provided
-                if (connectionInfo.getUsername() != null && !connectionInfo.getUsername().isEmpty() &&
-                        connectionInfo.getPassword() != null && !connectionInfo.getPassword().isEmpty()) {
-                    
-                    Log.d(TAG, "Attempting authenticated connection");
-                    
-                    // Try different authentication mechanisms, starting with the most modern
-                    MongoCredential credential;
-                    
-                    Log.i(TAG, "Creating MongoDB credentials for authentication");
-                    Log.d(TAG, "Username: " + connectionInfo.getUsername());
-                    Log.d(TAG, "Auth Database: " + connectionInfo.getDatabase());
-                    Log.d(TAG, "Has Password: " + (connectionInfo.getPassword() != null && !connectionInfo.getPassword().isEmpty()));
-                    
-                    // Set authentication database to admin by default
-                    String authDb = "admin";
-                    Log.d(TAG, "Using admin database for authentication instead of: " + connectionInfo.getDatabase());
-                    
-                    // URL encode the password to handle special characters
-                    String encodedPassword;
-                    try {
-                        encodedPassword = java.net.URLEncoder.encode(
-                            connectionInfo.getPassword(), "UTF-8")
-                            .replace("+", "%20");  // Replace space encoding + with %20
-                        
-                        Log.d(TAG, "Password contains special characters, using URL encoding");
-                    } catch (Exception e) {
-                        // If encoding fails, use the raw password (may still have issues)
-                        encodedPassword = connectionInfo.getPassword();
-                        Log.e(TAG, "Failed to URL encode password, using raw password");
-                    }
-                    
-                    try {
-                        Log.d(TAG, "Attempting SCRAM-SHA-256 authentication (MongoDB 4.0+)");
-                        // First try SCRAM-SHA-256 (more secure, MongoDB 4.0+)
-                        credential = MongoCredential.createScramSha256Credential(
-                                connectionInfo.getUsername(),
-                                authDb,
-                                encodedPassword.toCharArray()
-                        );
-                        Log.i(TAG, "Successfully created SCRAM-SHA-256 credential object");
-                    } catch (Throwable e) {
-                        Log.w(TAG, "SCRAM-SHA-256 not available: " + e.getMessage(), e);
-                        Log.d(TAG, "Falling back to SCRAM-SHA-1 authentication (MongoDB 3.0+)");
-                        
-                        // Fall back to SCRAM-SHA-1 (MongoDB 3.0+)
-                        try {
-                            credential = MongoCredential.createScramSha1Credential(
-                                    connectionInfo.getUsername(),
-                                    authDb,
-                                    encodedPassword.toCharArray()
-                            );
-                            Log.i(TAG, "Successfully created SCRAM-SHA-1 credential object");
-                        } catch (Exception e2) {
-                            Log.w(TAG, "SCRAM-SHA-1 credential creation failed: " + e2.getMessage(), e2);
-                            Log.d(TAG, "Falling back to plain credential");
-                            
-                            // Last resort: plain credential
-                            credential = MongoCredential.createCredential(
-                                    connectionInfo.getUsername(),
-                                    authDb,
-                                    encodedPassword.toCharArray()
-                            );
-                            Log.i(TAG, "Using plain credential as last resort");
-                        }
-                    }
-                    
-                    // Explicitly disable SASL authentication mechanism which requires SASL
-                    System.setProperty("org.mongodb.driver.disableSaslAuthentication", "true");
-                    Log.d(TAG, "Disabled SASL authentication, using legacy MONGODB-CR");
-                    
-                    // Create client with credentials
-                    this.mongoClient = new MongoClient(serverAddress, Arrays.asList(credential), options);
-                    
-                } else {
-                    // Create anonymous client
-                    Log.d(TAG, "Attempting anonymous connection");
-                    this.mongoClient = new MongoClient(serverAddress, options);
-                }
-                
-                // Get database and test connection
-                this.mongoDatabase = mongoClient.getDB(connectionInfo.getDatabase());
-                
-                // Quick ping test
-                DBObject pingCmd = new BasicDBObject("ping", 1);
-                mongoDatabase.command(pingCmd);
-                
-                Log.d(TAG, "MongoDB connection tested successfully");
-                this.connectionInfo = connectionInfo;
-                
-                // Record successful connection
-                String version = "unknown";
-                try {
-                    DBObject buildInfo = mongoDatabase.command(new BasicDBObject("buildInfo", 1));
-                    if (buildInfo != null && buildInfo.containsField("version")) {
-                        version = buildInfo.get("version").toString();
-                    }
-                } catch (Exception ex) {
-                    Log.w(TAG, "Could not retrieve MongoDB version: " + ex.getMessage());
-                }
-                String dbDetails = "MongoDB " + version;
-                ConnectionTracker.getInstance().trackConnectionSuccess(connectionTrackingId, dbDetails);
-                
+                winner = connectWithCandidates(serverAddress, options, connectionInfo);
             } catch (Exception e) {
-                Log.e(TAG, "Initial connection attempt failed: " + e.getMessage(), e);
+                Log.e(TAG, "All MongoDB connection attempts failed: " + e.getMessage(), e);
                 
                 // Check if this is a database type mismatch
                 String wrongDbTypeError = detectWrongDatabaseType(e);
@@ -349,124 +294,37 @@ public class MongoDbDatabaseService implements DatabaseService {
                     throw new Exception(authError, e);
                 }
                 
-                // Cleanup failed connection
-                if (mongoClient != null) {
-                    try {
-                        mongoClient.close();
-                    } catch (Exception closeEx) {
-                        // Ignore cleanup errors
-                    }
-                    mongoClient = null;
-                }
-                
-                // Try with direct connection string as fallback
-                try {
-                    Log.d(TAG, "Attempting direct connection string as fallback");
-                    
-                    // Build connection string manually with special authentication mechanism
-                    
-                    try {
-                        // Explicitly disable SCRAM authentication mechanism which requires SASL
-                        System.setProperty("org.mongodb.driver.disableSaslAuthentication", "true");
-                        
-                        Log.d(TAG, "Disabled SASL authentication, using legacy MONGODB-CR");
-                        
-                        // Set authentication database to admin by default in fallback mode
-                        String authDb = "admin";
-                        
-                        StringBuilder connString = new StringBuilder("mongodb://");
-                        
-                        // Add credentials if available
-                        if (connectionInfo.getUsername() != null && !connectionInfo.getUsername().isEmpty() &&
-                                connectionInfo.getPassword() != null && !connectionInfo.getPassword().isEmpty()) {
-                            
-                            // URL encode the password to handle special characters
-                            String encodedPassword;
-                            try {
-                                encodedPassword = java.net.URLEncoder.encode(
-                                    connectionInfo.getPassword(), "UTF-8")
-                                    .replace("+", "%20");  // Replace space encoding + with %20
-                                
-                                Log.d(TAG, "Password contains special characters, using URL encoding");
-                            } catch (Exception ex) {
-                                // If encoding fails, use the raw password (may still have issues)
-                                encodedPassword = connectionInfo.getPassword();
-                                Log.e(TAG, "Failed to URL encode password, using raw password");
-                            }
-                            
-                            connString.append(connectionInfo.getUsername())
-                                    .append(":")
-                                    .append(encodedPassword)
-                                    .append("@");
-                        }
-                        
-                        // Add host:port/database with additional options for legacy auth
-                        connString.append(connectionInfo.getHost())
-                                .append(":")
-                                .append(connectionInfo.getPort())
-                                .append("/")
-                                .append(authDb)  // Use admin database for auth
-                                .append("?authSource=")
-                                .append(authDb)
-                                .append("&connectTimeoutMS=20000&socketTimeoutMS=30000")
-                                .append("&authMechanism=MONGODB-CR");  // Use legacy auth mechanism
-                        
-                        Log.d(TAG, "Using connection string (credentials hidden): mongodb://[auth_if_provided]@" +
-                                connectionInfo.getHost() + ":" + connectionInfo.getPort() + "/" + 
-                                authDb + "?authSource=" + authDb + 
-                                "&connectTimeoutMS=20000&socketTimeoutMS=30000&authMechanism=MONGODB-CR");
-                        
-                        // Build options without SASL
-                        MongoClientOptions fallbackOptions = MongoClientOptions.builder()
-                                .connectTimeout(20000)
-                                .socketTimeout(30000)
-                                .serverSelectionTimeout(20000)
-                                .build();
-                        
-                        // Try simplified connection
-                        this.mongoClient = new MongoClient(serverAddress, fallbackOptions);
-                        
-                        // Get the requested database regardless of auth database
-                        this.mongoDatabase = mongoClient.getDB(connectionInfo.getDatabase());
-                        
-                    } catch (Exception fallbackEx) {
-                        Log.e(TAG, "Legacy auth approach failed, trying direct connection: " + fallbackEx.getMessage());
-                        
-                        // Last attempt - simple connection
-                        this.mongoClient = new MongoClient(serverAddress);
-                        this.mongoDatabase = mongoClient.getDB(connectionInfo.getDatabase());
-                    }
-                    
-                    // Test connection
-                    DBObject pingCmd = new BasicDBObject("ping", 1);
-                    mongoDatabase.command(pingCmd);
-                    
-                    Log.d(TAG, "Fallback connection successful");
-                    this.connectionInfo = connectionInfo;
-                    
-                } catch (Exception fallbackEx) {
-                    Log.e(TAG, "Fallback connection failed: " + fallbackEx.getMessage(), fallbackEx);
-                    
-                    // Check if the fallback attempt indicates wrong database type
-                    String fallbackWrongDbError = detectWrongDatabaseType(fallbackEx);
-                    if (fallbackWrongDbError != null) {
-                        throw new Exception(fallbackWrongDbError);
-                    }
-                    
-                    // Check for authentication errors
-                    String fallbackAuthError = detectAuthenticationError(fallbackEx);
-                    if (fallbackAuthError != null) {
-                        throw new Exception(fallbackAuthError, fallbackEx);
-                    }
-                    
-                    String errorMsg = "All MongoDB connection attempts failed: " + fallbackEx.getMessage();
-                    ConnectionTracker.getInstance().trackConnectionFailure(connectionTrackingId, errorMsg, "CONNECTION_FAILED");
-                    throw new Exception(errorMsg);
-                }
+                String errorMsg = "All MongoDB connection attempts failed: " + e.getMessage();
+                ConnectionTracker.getInstance().trackConnectionFailure(connectionTrackingId, errorMsg, "CONNECTION_FAILED");
+                throw new Exception(errorMsg, e);
             }
+            long pingMs = Math.max(0, pingServerMs.get());
+            tracker.trackPhase(trackingId, ConnectionTracker.Phase.VALIDATION_QUERY, pingMs);
+            tracker.trackPhase(trackingId, ConnectionTracker.Phase.HANDSHAKE_AUTH,
+                    System.currentTimeMillis() - raceStart - pingMs - Math.max(0, socketConnectMs.get()));
+            
+            this.mongoClient = winner.client;
+            // An anonymous winner despite credentials is not remembered, the next connect negotiates again
+            this.authMechanism = winner.candidate.isAuthenticated() || !hasCredentials(connectionInfo)
+                    ? winner.candidate.getMechanism() : null;
+            this.mongoDatabase = mongoClient.getDB(connectionInfo.getDatabase());
+            this.connectionInfo = connectionInfo;
+            Log.d(TAG, "MongoDB connection tested successfully using " + winner.candidate.getMechanism());
             
-            Log.d(TAG, "MongoDB connection established successfully");
-            ConnectionTracker.getInstance().trackConnectionSuccess(connectionTrackingId, "MongoDB connection established");
+            // Record successful connection
+            String version = "unknown";
+            try {
+                DBObject buildInfo = tracker.timePhase(trackingId, ConnectionTracker.Phase.SERVER_INFO,
+                        () -> mongoDatabase.command(new BasicDBObject("buildInfo", 1)));
+                if (buildInfo != null && buildInfo.containsField("version")) {
+                    version = buildInfo.get("version").toString();
+                }
+            } catch (Exception ex) {
+                Log.w(TAG, "Could not retrieve MongoDB version: " + ex.getMessage());
+            }
+            String dbDetails = "MongoDB " + version;
+            ConnectionTracker.getInstance().trackConnectionSuccess(connectionTrackingId, dbDetails);
+            ConnectionTracker.getInstance().trackMetadataCache(connectionTrackingId, metadataCache);
             
         } catch (MongoException e) {
             Log.e(TAG, "MongoDB error: " + e.getMessage(), e);
@@ -479,6 +337,69 @@ public class MongoDbDatabaseService implements DatabaseService {
         }
     }
 
+    /**
+     * Connect with the auth mechanism that worked last time on its own, and only race all
+     * candidates if the server rejects it. An unreachable server fails right away instead,
+     * since trying other mechanisms cannot help.
+     */
+    private MongoConnectRace.Winner connectWithCandidates(ServerAddress serverAddress, MongoClientOptions options,
+                                                          ConnectionInfo connectionInfo) throws Exception {
+        List<MongoConnectRace.Candidate> candidates = buildConnectCandidates(connectionInfo);
+        String remembered = connectionInfo.getAuthMechanism();
+        for (MongoConnectRace.Candidate candidate : candidates) {
+            // An anonymous client would connect without ever trying the credentials
+            if (candidate.getMechanism().equals(remembered)
+                    && (candidate.isAuthenticated() || !hasCredentials(connectionInfo))) {
+                try {
+                    return new MongoConnectRace(serverAddress, options, connectionInfo.getDatabase(),
+                            Collections.singletonList(candidate)).run(CONNECT_DEADLINE_MS);
+                } catch (Exception e) {
+                    if (ConnectionHealthMonitor.isConnectionFailure(e) || e instanceof TimeoutException) {
+                        throw e;
+                    }
+                    Log.w(TAG, "Remembered auth mechanism " + remembered + " failed, negotiating again: " + e.getMessage());
+                }
+                break;
+            }
+        }
+        return new MongoConnectRace(serverAddress, options, connectionInfo.getDatabase(), candidates)
+                .run(CONNECT_DEADLINE_MS);
+    }
+    
+    /**
+     * Client configurations to race when connecting, in order of preference.
+     * Authenticated candidates use the admin database as auth source, an anonymous client comes last.
+     */
+    private List<MongoConnectRace.Candidate> buildConnectCandidates(ConnectionInfo connectionInfo) {
+        List<MongoConnectRace.Candidate> candidates = new ArrayList<>();
+        String username = connectionInfo.getUsername();
+        String password = connectionInfo.getPassword();
+        if (hasCredentials(connectionInfo)) {
+            String authDb = "admin";
+            char[] secret = password.toCharArray();
+            // SCRAM-SHA-256 needs MongoDB 4.0+, SCRAM-SHA-1 covers 3.x and MONGODB-CR older servers
+            candidates.add(new MongoConnectRace.Candidate("SCRAM-SHA-256",
+                    MongoCredential.createScramSha256Credential(username, authDb, secret)));
+            candidates.add(new MongoConnectRace.Candidate("SCRAM-SHA-1",
+                    MongoCredential.createScramSha1Credential(username, authDb, secret)));
+            candidates.add(new MongoConnectRace.Candidate("MONGODB-CR",
+                    MongoCredential.createMongoCRCredential(username, authDb, secret)));
+        }
+        candidates.add(new MongoConnectRace.Candidate("NONE", null));
+        return candidates;
+    }
+    
+    private static boolean hasCredentials(ConnectionInfo connectionInfo) {
+        String username = connectionInfo.getUsername();
+        String password = connectionInfo.getPassword();
+        return username != null && !username.isEmpty() && password != null && !password.isEmpty();
+    }
+
+    @Override
+    public String getAuthMechanism() {
+        return authMechanism;
+    }
+
     @Override
     public void disconnect() throws Exception {
         if (mongoClient != null) {
@@ -514,8 +435,27 @@ public class MongoDbDatabaseService implements DatabaseService {
         }
     }
 
+    @Override
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    @Override
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @Override
+    public String getCurrentDatabase() {
+        return mongoDatabase != null ? mongoDatabase.getName() : null;
+    }
+
     @Override
     public List<String> getDatabases() throws Exception {
+        return metadataCache.get(MetadataCache.KEY_DATABASES, this::loadDatabases);
+    }
+
+    private List<String> loadDatabases() throws Exception {
         List<String> databases = new ArrayList<>();
         try {
             // First, try to use the specific database we're connected to
@@ -584,6 +524,10 @@ public class MongoDbDatabaseService implements DatabaseService {
 
     @Override
     public List<String> getTables(String database) throws Exception {
+        return metadataCache.get(MetadataCache.tablesKey(database), () -> loadTables(database));
+    }
+
+    private List<String> loadTables(String database) throws Exception {
         List<String> collections = new ArrayList<>();
         try {
             Log.d(TAG, "Attempting to get collections for database: " + database);
@@ -715,72 +659,106 @@ public class MongoDbDatabaseService implements DatabaseService {
     }
 
     @Override
-    public List<Map<String, Object>> executeQuery(String query) throws Exception {
-        // For MongoDB, query is a JSON string representing a find operation
-        List<Map<String, Object>> result = new ArrayList<>();
+    public QueryResult executeQuery(String query, QueryHandle handle) throws Exception {
+        // For MongoDB, query is a JSON string representing a find or aggregate operation
+        QueryResult.Builder builder = new QueryResult.Builder();
+        long startTime = System.currentTimeMillis();
 
         try {
             Log.d(TAG, "Executing MongoDB query: " + query);
             
-            // Parse query document
-            BasicDBObject queryDocument;
+            BasicDBObject queryDocument = parseQuery(query);
+            DBCollection collection = getQueryCollection(queryDocument);
+            Cursor cursor;
+            if (queryDocument.containsField("aggregate")) {
+                cursor = openAggregateCursor(queryDocument, collection, 0, handle);
+            } else {
+                // If no find criteria, just get all documents (with limit for safety)
+                DBCursor findCursor = openFindCursor(queryDocument, collection, DIRECT_QUERY_LIMIT);
+                registerCancel(findCursor, handle);
+                cursor = findCursor;
+            }
+            
+            // Process results, repeated strings share one instance per field
+            int count = 0;
+            StringDictionary strings = new StringDictionary();
             try {
-                queryDocument = BasicDBObject.parse(query);
+                while (cursor.hasNext()) {
+                    if (handle.isCancelled()) {
+                        throw new Exception("Query cancelled");
+                    }
+                    appendDocument(builder, cursor.next(), strings);
+                    count++;
+                }
             } catch (Exception e) {
-                Log.e(TAG, "Error parsing query JSON: " + e.getMessage(), e);
-                throw new IllegalArgumentException("Invalid query format. Query must be valid JSON: " + e.getMessage());
+                builder.discard();
+                throw e;
+            } finally {
+                cursor.close();
             }
             
-            String collectionName = queryDocument.getString("collection");
-            if (collectionName == null) {
-                Log.e(TAG, "No collection specified in query");
-                throw new IllegalArgumentException("Query format incorrect. Please specify the 'collection' field.");
+            Log.i(TAG, "Query returned " + count + " results from collection " + collection.getName());
+            QueryResult result = builder.build();
+            result.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return result;
+            
+        } catch (IllegalStateException e) {
+            // Reading from a cursor closed by cancel
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
             }
+            throw e;
+        } catch (MongoException e) {
+            Log.e(TAG, "Error executing MongoDB query: " + e.getMessage(), e);
             
-            // Check if this is a direct collection query or a find operation
-            boolean isDirectQuery = !queryDocument.containsField("find");
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
+            }
             
-            // Get the collection 
-            DBCollection collection;
-            try {
-                collection = mongoDatabase.getCollection(collectionName);
-                Log.d(TAG, "Using collection: " + collectionName);
-            } catch (Exception e) {
-                Log.e(TAG, "Error accessing collection '" + collectionName + "': " + e.getMessage(), e);
-                throw new Exception("Cannot access collection '" + collectionName + "': " + e.getMessage(), e);
+            // Check for authentication errors
+            String authError = detectAuthenticationError(e);
+            if (authError != null) {
+                throw new Exception(authError, e);
             }
             
-            // Execute query with cursor timeout
-            DBCursor cursor;
+            throw new Exception("Query execution failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public QueryResult executeQuery(String query, QueryHandle handle, Object... params) throws Exception {
+        if (params.length > 0) {
+            throw new IllegalArgumentException("MongoDB queries take no parameters, put the values into the query document.");
+        }
+        return executeQuery(query, handle);
+    }
+
+    @Override
+    public RowCursor openCursor(String query, CursorOptions options, QueryHandle handle) throws Exception {
+        try {
+            Log.d(TAG, "Opening MongoDB cursor (batch size " + options.getFetchSize() + "): " + query);
             
-            if (isDirectQuery) {
-                // If no find criteria, just get all documents (with limit for safety)
-                Log.d(TAG, "No find criteria specified, returning first 100 documents");
-                cursor = collection.find().limit(100).maxTime(30, TimeUnit.SECONDS);
-            } else {
-                // Normal find operation with criteria
-                BasicDBObject find = (BasicDBObject) queryDocument.get("find");
-                if (find == null) {
-                    throw new IllegalArgumentException("Find criteria incorrectly formatted. Please provide a valid 'find' object.");
-                }
-                
-                Log.d(TAG, "Executing find with criteria: " + find);
-                cursor = collection.find(find).maxTime(30, TimeUnit.SECONDS);
+            BasicDBObject queryDocument = parseQuery(query);
+            DBCollection collection = getQueryCollection(queryDocument);
+            if (queryDocument.containsField("aggregate")) {
+                // Limit the pipeline with a $limit stage, maxRows is not applied here
+                return new MongoRowCursor(openAggregateCursor(queryDocument, collection, options.getFetchSize(), handle));
             }
             
-            // Process results
-            int count = 0;
-            while (cursor.hasNext()) {
-                result.add(dbObjectToMap(cursor.next()));
-                count++;
+            // A bare collection query keeps its safety limit, the query's own limit lifts it
+            DBCursor cursor = openFindCursor(queryDocument, collection, DIRECT_QUERY_LIMIT);
+            registerCancel(cursor, handle);
+            // The query's own batchSize and a lower limit win over the cursor options
+            if (cursor.getBatchSize() == 0) {
+                cursor.batchSize(options.getFetchSize());
             }
-            cursor.close();
-            
-            Log.i(TAG, "Query returned " + count + " results from collection " + collectionName);
-            return result;
+            if (options.getMaxRows() > 0 && (cursor.getLimit() == 0 || cursor.getLimit() > options.getMaxRows())) {
+                cursor.limit(options.getMaxRows());
+            }
+            return new MongoRowCursor(cursor);
             
         } catch (MongoException e) {
-            Log.e(TAG, "Error executing MongoDB query: " + e.getMessage(), e);
+            Log.e(TAG, "Error opening MongoDB cursor: " + e.getMessage(), e);
             
             // Check for authentication errors
             String authError = detectAuthenticationError(e);
@@ -792,6 +770,284 @@ public class MongoDbDatabaseService implements DatabaseService {
         }
     }
 
+    @Override
+    public TablePage executePage(PageRequest request, QueryHandle handle) throws Exception {
+        QueryResult.Builder builder = new QueryResult.Builder();
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            // Every document has an indexed _id, so pages always seek instead of skipping
+            DBCollection collection = mongoDatabase.getCollection(request.getTable());
+            BasicDBObject filter = new BasicDBObject();
+            if (request.getAfterKey() != null) {
+                filter.append("_id", new BasicDBObject("$gt", request.getAfterKey()));
+            }
+            DBCursor cursor = collection.find(filter)
+                    .sort(new BasicDBObject("_id", 1))
+                    .skip(request.isKeyset() ? 0 : (int) request.getOffset())
+                    .limit(request.getPageSize())
+                    .maxTime(30, TimeUnit.SECONDS);
+            registerCancel(cursor, handle);
+            
+            Object lastKey = null;
+            StringDictionary strings = new StringDictionary();
+            try {
+                while (cursor.hasNext()) {
+                    if (handle.isCancelled()) {
+                        throw new Exception("Query cancelled");
+                    }
+                    DBObject document = cursor.next();
+                    appendDocument(builder, document, strings);
+                    lastKey = document.get("_id");
+                }
+            } catch (Exception e) {
+                builder.discard();
+                throw e;
+            } finally {
+                cursor.close();
+            }
+            
+            QueryResult rows = builder.build();
+            rows.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            Log.d(TAG, "Page " + request.getPageIndex() + " of " + request.getTable() + ": " + rows.getRowCount()
+                    + " documents in " + rows.getExecutionTimeMs() + "ms");
+            return new TablePage(request, rows, "_id", lastKey);
+            
+        } catch (IllegalStateException e) {
+            // Reading from a cursor closed by cancel
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
+            }
+            throw e;
+        } catch (MongoException e) {
+            Log.e(TAG, "Error loading MongoDB page: " + e.getMessage(), e);
+            
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
+            }
+            
+            // Check for authentication errors
+            String authError = detectAuthenticationError(e);
+            if (authError != null) {
+                throw new Exception(authError, e);
+            }
+            
+            throw new Exception("Failed to load page of collection '" + request.getTable() + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closing the cursor stops fetching further batches, a find still waiting for its
+     * first batch is found by its comment and killed on the server
+     */
+    private void registerCancel(DBCursor cursor, QueryHandle handle) {
+        String operationTag = "querycore-" + UUID.randomUUID();
+        cursor.comment(operationTag);
+        handle.onCancel(cursor::close);
+        handle.onCancelTimeout(() -> killOperations(new BasicDBObject("command.comment", operationTag)));
+    }
+
+    /**
+     * Kill the server operations of a query
+     * @param filter currentOp filter matching only the query's operations
+     */
+    private void killOperations(DBObject filter) {
+        DB admin = mongoClient.getDB("admin");
+        BasicDBObject currentOp = new BasicDBObject("currentOp", 1);
+        currentOp.putAll(filter);
+        DBObject currentOps = admin.command(currentOp);
+        Object inProgress = currentOps.get("inprog");
+        if (!(inProgress instanceof List)) {
+            return;
+        }
+        for (Object operation : (List<?>) inProgress) {
+            Object opId = ((DBObject) operation).get("opid");
+            Log.w(TAG, "Killing MongoDB operation " + opId);
+            admin.command(new BasicDBObject("killOp", 1).append("op", opId));
+        }
+    }
+
+    /**
+     * Parse a query document
+     * @param query The query JSON
+     */
+    private static BasicDBObject parseQuery(String query) {
+        try {
+            return BasicDBObject.parse(query);
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing query JSON: " + e.getMessage(), e);
+            throw new IllegalArgumentException("Invalid query format. Query must be valid JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The collection named by the 'collection' field of a query document
+     */
+    private DBCollection getQueryCollection(BasicDBObject queryDocument) throws Exception {
+        String collectionName = queryDocument.getString("collection");
+        if (collectionName == null) {
+            Log.e(TAG, "No collection specified in query");
+            throw new IllegalArgumentException("Query format incorrect. Please specify the 'collection' field.");
+        }
+        
+        try {
+            DBCollection collection = mongoDatabase.getCollection(collectionName);
+            Log.d(TAG, "Using collection: " + collectionName);
+            return collection;
+        } catch (Exception e) {
+            Log.e(TAG, "Error accessing collection '" + collectionName + "': " + e.getMessage(), e);
+            throw new Exception("Cannot access collection '" + collectionName + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Create the cursor of a {collection, find, projection, sort, skip, limit, batchSize, hint, maxTimeMS}
+     * query document
+     * @param queryDocument The parsed query
+     * @param collection The query's collection
+     * @param directQueryLimit Limit for queries with neither find criteria nor limit, 0 for none
+     */
+    static DBCursor openFindCursor(BasicDBObject queryDocument, DBCollection collection, int directQueryLimit) {
+        // Check if this is a direct collection query or a find operation
+        boolean isDirectQuery = !queryDocument.containsField("find");
+        
+        BasicDBObject find = new BasicDBObject();
+        if (!isDirectQuery) {
+            find = documentOption(queryDocument, "find");
+            if (find == null) {
+                throw new IllegalArgumentException("Find criteria incorrectly formatted. Please provide a valid 'find' object.");
+            }
+            Log.d(TAG, "Executing find with criteria: " + find);
+        }
+        
+        // Only the projected fields are sent over the network
+        DBCursor cursor = collection.find(find, documentOption(queryDocument, "projection"));
+        
+        BasicDBObject sort = documentOption(queryDocument, "sort");
+        if (sort != null) {
+            cursor.sort(sort);
+        }
+        if (queryDocument.containsField("skip")) {
+            cursor.skip(intOption(queryDocument, "skip"));
+        }
+        if (queryDocument.containsField("limit")) {
+            cursor.limit(intOption(queryDocument, "limit"));
+        } else if (isDirectQuery) {
+            Log.d(TAG, "No find criteria specified, returning " +
+                    (directQueryLimit > 0 ? "first " + directQueryLimit : "all") + " documents");
+            cursor.limit(directQueryLimit);
+        }
+        if (queryDocument.containsField("batchSize")) {
+            cursor.batchSize(intOption(queryDocument, "batchSize"));
+        }
+        
+        // Index name or key pattern
+        Object hint = queryDocument.get("hint");
+        if (hint instanceof String) {
+            cursor.hint((String) hint);
+        } else if (hint instanceof DBObject) {
+            cursor.hint((DBObject) hint);
+        } else if (hint != null) {
+            throw new IllegalArgumentException("'hint' must be an index name or an index key document.");
+        }
+        
+        // Execute query with cursor timeout
+        long maxTimeMs = queryDocument.containsField("maxTimeMS") ? intOption(queryDocument, "maxTimeMS") : 30000;
+        return cursor.maxTime(maxTimeMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a {collection, aggregate: [stages], allowDiskUse, batchSize, maxTimeMS} query document.
+     * The pipeline runs on the server and its output is read batch by batch, so only the
+     * reduced documents cross the network.
+     * @param queryDocument The parsed query
+     * @param collection The query's collection
+     * @param defaultBatchSize Batch size if the query sets none, 0 for the server default
+     * @param handle Cancels the pipeline
+     */
+    private Cursor openAggregateCursor(BasicDBObject queryDocument, DBCollection collection,
+                                       int defaultBatchSize, QueryHandle handle) {
+        List<DBObject> pipeline = parsePipeline(queryDocument);
+        AggregationOptions options = aggregationOptions(queryDocument, defaultBatchSize);
+        
+        // The legacy API cannot tag an aggregate with a comment, the pipeline identifies it instead
+        BasicDBObject filter = new BasicDBObject("command.aggregate", collection.getName())
+                .append("command.pipeline", pipeline);
+        handle.onCancelTimeout(() -> killOperations(filter));
+        
+        Log.d(TAG, "Executing aggregation pipeline with " + pipeline.size() + " stages on " + collection.getName());
+        // Runs the pipeline up to its first batch
+        Cursor cursor = collection.aggregate(pipeline, options);
+        handle.onCancel(cursor::close);
+        return cursor;
+    }
+
+    /**
+     * @return The stages of the query's 'aggregate' array
+     */
+    static List<DBObject> parsePipeline(BasicDBObject queryDocument) {
+        Object stages = queryDocument.get("aggregate");
+        if (!(stages instanceof List)) {
+            throw new IllegalArgumentException("'aggregate' must be an array of pipeline stages.");
+        }
+        List<DBObject> pipeline = new ArrayList<>();
+        for (Object stage : (List<?>) stages) {
+            if (!(stage instanceof DBObject)) {
+                throw new IllegalArgumentException("Every pipeline stage in 'aggregate' must be a document.");
+            }
+            pipeline.add((DBObject) stage);
+        }
+        return pipeline;
+    }
+
+    /**
+     * @param queryDocument The parsed query with optional allowDiskUse, batchSize and maxTimeMS
+     * @param defaultBatchSize Batch size if the query sets none, 0 for the server default
+     */
+    static AggregationOptions aggregationOptions(BasicDBObject queryDocument, int defaultBatchSize) {
+        // Large $group and $sort stages may spill to disk instead of failing at the memory limit
+        Object allowDiskUse = queryDocument.get("allowDiskUse");
+        if (allowDiskUse != null && !(allowDiskUse instanceof Boolean)) {
+            throw new IllegalArgumentException("'allowDiskUse' must be true or false.");
+        }
+        int batchSize = queryDocument.containsField("batchSize")
+                ? intOption(queryDocument, "batchSize") : defaultBatchSize;
+        long maxTimeMs = queryDocument.containsField("maxTimeMS") ? intOption(queryDocument, "maxTimeMS") : 30000;
+        AggregationOptions.Builder options = AggregationOptions.builder()
+                .allowDiskUse(allowDiskUse != null ? (Boolean) allowDiskUse : Boolean.TRUE)
+                .maxTime(maxTimeMs, TimeUnit.MILLISECONDS);
+        if (batchSize > 0) {
+            options.batchSize(batchSize);
+        }
+        return options.build();
+    }
+
+    /**
+     * @return The named sub-document of the query, null if missing
+     */
+    private static BasicDBObject documentOption(BasicDBObject queryDocument, String name) {
+        Object value = queryDocument.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof BasicDBObject)) {
+            throw new IllegalArgumentException("'" + name + "' must be a document.");
+        }
+        return (BasicDBObject) value;
+    }
+
+    /**
+     * @return The named non-negative number of the query
+     */
+    private static int intOption(BasicDBObject queryDocument, String name) {
+        Object value = queryDocument.get(name);
+        if (!(value instanceof Number) || ((Number) value).longValue() < 0
+                || ((Number) value).longValue() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("'" + name + "' must be a non-negative number.");
+        }
+        return ((Number) value).intValue();
+    }
+
     @Override
     public int executeUpdate(String query) throws Exception {
         // For MongoDB, query is a JSON string representing an update operation
@@ -808,6 +1064,7 @@ public class MongoDbDatabaseService implements DatabaseService {
             // Execute update
             DBCollection collection = mongoDatabase.getCollection(collectionName);
             WriteResult result = collection.update(filter, update, false, true);
+            resultCache.invalidateTable(collectionName);
 
             return result.getN();
         } catch (MongoException e) {
@@ -824,22 +1081,148 @@ public class MongoDbDatabaseService implements DatabaseService {
     }
 
     @Override
-    public Map<String, String> getTableStructure(String table) throws Exception {
-        Map<String, String> structure = new HashMap<>();
-
-        try {
-            // Get one document to infer schema
-            DBCollection collection = mongoDatabase.getCollection(table);
-            DBObject document = collection.findOne();
-
-            if (document != null) {
-                for (String key : document.keySet()) {
-                    Object value = document.get(key);
-                    structure.put(key, (value != null) ? value.getClass().getSimpleName() : "null");
+    public BatchResult executeBatch(List<String> statements) throws Exception {
+        BatchResult result = new BatchResult(statements.size());
+        long startTime = System.currentTimeMillis();
+        
+        // One unordered bulk write per collection, with the batch index of each of its operations
+        Map<String, BulkWriteOperation> bulks = new LinkedHashMap<>();
+        Map<String, List<Integer>> batchIndexes = new HashMap<>();
+        for (int i = 0; i < statements.size(); i++) {
+            BasicDBObject document;
+            try {
+                document = BasicDBObject.parse(statements.get(i));
+            } catch (Exception e) {
+                result.setFailed(i, "Invalid statement format. Statement must be valid JSON: " + e.getMessage());
+                continue;
+            }
+            String collectionName = document.getString("collection");
+            if (collectionName == null) {
+                result.setFailed(i, "Statement format incorrect. Please specify the 'collection' field.");
+                continue;
+            }
+            
+            BulkWriteOperation bulk = bulks.get(collectionName);
+            if (bulk == null) {
+                bulk = mongoDatabase.getCollection(collectionName).initializeUnorderedBulkOperation();
+                bulks.put(collectionName, bulk);
+                batchIndexes.put(collectionName, new ArrayList<>());
+            }
+            if (document.get("insert") instanceof DBObject) {
+                bulk.insert((DBObject) document.get("insert"));
+                result.setCount(i, 1);
+            } else if (document.get("delete") instanceof DBObject) {
+                bulk.find((DBObject) document.get("delete")).remove();
+            } else if (document.get("filter") instanceof DBObject && document.get("update") instanceof DBObject) {
+                // Same semantics as executeUpdate: all matching documents
+                bulk.find((DBObject) document.get("filter")).update((DBObject) document.get("update"));
+            } else {
+                result.setFailed(i, "Statement format incorrect. Please specify 'insert', 'delete', or 'filter' and 'update'.");
+                continue;
+            }
+            batchIndexes.get(collectionName).add(i);
+        }
+        
+        for (Map.Entry<String, BulkWriteOperation> bulk : bulks.entrySet()) {
+            List<Integer> indexes = batchIndexes.get(bulk.getKey());
+            if (indexes.isEmpty()) {
+                continue;
+            }
+            try {
+                copyBulkCounts(result, indexes, bulk.getValue().execute());
+            } catch (BulkWriteException e) {
+                // Unordered: the other operations were still applied
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    result.setFailed(indexes.get(error.getIndex()), error.getMessage());
+                }
+                if (e.getWriteConcernError() != null) {
+                    // Applied on the primary, but not confirmed by the requested write concern
+                    String message = "Write concern error: " + e.getWriteConcernError().getMessage();
+                    Log.w(TAG, message + " in bulk write on " + bulk.getKey());
+                    for (int index : indexes) {
+                        if (!result.isFailed(index)) {
+                            result.setFailed(index, message);
+                        }
+                    }
+                }
+                copyBulkCounts(result, indexes, e.getWriteResult());
+            } catch (MongoException e) {
+                Log.e(TAG, "Error executing MongoDB bulk write: " + e.getMessage(), e);
+                
+                String authError = detectAuthenticationError(e);
+                String message = authError != null ? authError : "Bulk write failed: " + e.getMessage();
+                for (int index : indexes) {
+                    result.setFailed(index, message);
                 }
             }
+        }
+        
+        // Inserts create missing collections
+        if (!bulks.isEmpty()) {
+            metadataCache.invalidate(MetadataCache.tablesKey(mongoDatabase.getName()));
+        }
+        for (String collectionName : bulks.keySet()) {
+            resultCache.invalidateTable(collectionName);
+        }
+        
+        result.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        Log.i(TAG, "Batch executed on " + bulks.size() + " collection(s): " + result);
+        return result;
+    }
+
+    /**
+     * Take the changed document counts of one collection's bulk write into the batch result.
+     * A bulk write only reports totals, so they go to the statement itself only if it was the
+     * bulk's single update or delete that succeeded, and to the batch total otherwise.
+     * @param indexes Batch index of each operation of the bulk write
+     */
+    private static void copyBulkCounts(BatchResult result, List<Integer> indexes, BulkWriteResult written) {
+        if (written == null || !written.isAcknowledged()) {
+            return;
+        }
+        // Inserts already count one each
+        long changed = (long) written.getModifiedCount() + written.getRemovedCount();
+        int withoutCount = -1;
+        int withoutCountSize = 0;
+        for (int index : indexes) {
+            if (result.getCount(index) == BatchResult.SUCCESS_NO_INFO) {
+                withoutCount = index;
+                withoutCountSize++;
+            }
+        }
+        if (withoutCountSize == 1 && changed <= Integer.MAX_VALUE) {
+            result.setCount(withoutCount, (int) changed);
+        } else {
+            result.addBulkRowsAffected(changed);
+        }
+    }
+
+    @Override
+    public BatchResult executeBatch(String query, List<Object[]> params) throws Exception {
+        throw new IllegalArgumentException("MongoDB statements take no parameters, use executeBatch with one statement per write.");
+    }
+
+    @Override
+    public Map<String, String> getTableStructure(String table) throws Exception {
+        // Stable column set for the grid, derived from the cached sample
+        return getCollectionSchema(table).getStructure();
+    }
+
+    /**
+     * Fields of a collection inferred from a random sample of its documents, cached per collection
+     * @param collection The collection in the current database
+     * @return Field paths with their types and how many sampled documents contain them
+     */
+    public CollectionSchema getCollectionSchema(String collection) throws Exception {
+        DB database = mongoDatabase;
+        // Cached under the structure key, the sample is the structure of a collection
+        return metadataCache.get(MetadataCache.structureKey(database.getName(), collection),
+                () -> sampleCollection(database, collection));
+    }
 
-            return structure;
+    private CollectionSchema sampleCollection(DB database, String collection) throws Exception {
+        try {
+            return MongoSchemaSampler.sample(database.getCollection(collection), MongoSchemaSampler.DEFAULT_SAMPLE_SIZE);
         } catch (MongoException e) {
             Log.e(TAG, "Error getting MongoDB collection structure: " + e.getMessage(), e);
             
@@ -853,18 +1236,93 @@ public class MongoDbDatabaseService implements DatabaseService {
         }
     }
 
-    private Map<String, Object> dbObjectToMap(DBObject document) {
+    /**
+     * Append a top-level document as one result row, fields become columns on first sight
+     */
+    static void appendDocument(QueryResult.Builder builder, DBObject document, StringDictionary strings) {
+        builder.addRow(toRow(document, strings), MongoDbDatabaseService::bsonTypeName);
+    }
+
+    /**
+     * Convert a top-level document to an ordered row, nested documents become maps
+     * @param strings Shares repeated string values between rows
+     */
+    static Map<String, Object> toRow(DBObject document, StringDictionary strings) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String key : document.keySet()) {
+            row.put(key, toValue(key, document.get(key), strings));
+        }
+        return row;
+    }
+
+    /**
+     * Map a decoded BSON value to the BSON type name used in the result header
+     */
+    static String bsonTypeName(Object value) {
+        if (value == null) return "null";
+        if (value instanceof String) return "string";
+        if (value instanceof Integer) return "int";
+        if (value instanceof Long) return "long";
+        if (value instanceof Double) return "double";
+        if (value instanceof Boolean) return "bool";
+        if (value instanceof java.util.Date) return "date";
+        if (value instanceof org.bson.types.ObjectId) return "objectId";
+        if (value instanceof org.bson.types.Decimal128) return "decimal";
+        if (value instanceof List) return "array";
+        if (value instanceof Map) return "object";
+        if (value instanceof byte[] || value instanceof org.bson.types.Binary) return "binData";
+        return value.getClass().getSimpleName();
+    }
+
+    private static Map<String, Object> dbObjectToMap(String path, DBObject document, StringDictionary strings) {
         Map<String, Object> map = new HashMap<>();
 
         for (String key : document.keySet()) {
-            Object value = document.get(key);
-            if (value instanceof DBObject) {
-                map.put(key, dbObjectToMap((DBObject) value));
-            } else {
-                map.put(key, value);
-            }
+            map.put(key, toValue(path + "." + key, document.get(key), strings));
         }
 
         return map;
     }
-}
\ No newline at end of file
+
+    private static Object toValue(String path, Object value, StringDictionary strings) {
+        // BasicDBList is a DBObject too, checked first so arrays stay lists and are typed "array"
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                list.add(toValue(path, element, strings));
+            }
+            return list;
+        } else if (value instanceof DBObject) {
+            return dbObjectToMap(path, (DBObject) value, strings);
+        } else if (value instanceof String) {
+            return strings.intern(path, (String) value);
+        }
+        return value;
+    }
+
+    /**
+     * Records the round trip of the first ping as measured by the driver, which excludes connecting and authenticating
+     */
+    private static class PingTimer implements CommandListener {
+        private final AtomicLong pingMs;
+
+        PingTimer(AtomicLong pingMs) {
+            this.pingMs = pingMs;
+        }
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            if ("ping".equals(event.getCommandName())) {
+                pingMs.compareAndSet(-1, event.getElapsedTime(TimeUnit.MILLISECONDS));
+            }
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+        }
+    }
+}
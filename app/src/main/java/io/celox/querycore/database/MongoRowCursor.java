@@ -0,0 +1,100 @@
+package io.celox.querycore.database;
+
+import com.mongodb.Cursor;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.celox.querycore.models.QueryResult;
+import io.celox.querycore.models.ResultColumn;
+import io.celox.querycore.models.StringDictionary;
+
+/**
+ * {@link RowCursor} over a MongoDB find or aggregation {@link Cursor}. Documents are fetched in batches
+ * of the cursor's batch size and each top-level field becomes a column the first time it is seen.
+ */
+class MongoRowCursor implements RowCursor {
+
+    private final Cursor cursor;
+    private final List<ResultColumn> columns = new ArrayList<>();
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final StringDictionary strings = new StringDictionary();
+
+    private Map<String, Object> currentRow;
+    private int rowsRead = 0;
+    private boolean exhausted = false;
+    private boolean closed = false;
+
+    MongoRowCursor(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public List<ResultColumn> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    @Override
+    public boolean next() {
+        if (exhausted || closed) {
+            return false;
+        }
+        if (!cursor.hasNext()) {
+            exhausted = true;
+            currentRow = null;
+            return false;
+        }
+        currentRow = MongoDbDatabaseService.toRow(cursor.next(), strings);
+        for (Map.Entry<String, Object> field : currentRow.entrySet()) {
+            if (!columnIndexes.containsKey(field.getKey())) {
+                columnIndexes.put(field.getKey(), columns.size());
+                columns.add(new ResultColumn(field.getKey(), Types.OTHER,
+                        MongoDbDatabaseService.bsonTypeName(field.getValue())));
+            }
+        }
+        rowsRead++;
+        return true;
+    }
+
+    @Override
+    public Object getValue(int column) {
+        if (currentRow == null) {
+            throw new IllegalStateException("Cursor is not positioned on a row");
+        }
+        return currentRow.get(columns.get(column).getName());
+    }
+
+    @Override
+    public int fetchInto(QueryResult.Builder builder, int maxRows) {
+        int appended = 0;
+        while (appended < maxRows && next()) {
+            builder.addRow(currentRow, MongoDbDatabaseService::bsonTypeName);
+            appended++;
+        }
+        return appended;
+    }
+
+    @Override
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Kills the server-side cursor if documents are left, nothing is drained
+        cursor.close();
+    }
+}
@@ -0,0 +1,102 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoCommandException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.celox.querycore.models.CollectionSchema;
+
+/**
+ * Infers the fields of a collection from a random sample of its documents instead of a single one,
+ * so fields missing from some documents and fields of mixed type still show up
+ */
+final class MongoSchemaSampler {
+
+    private static final String TAG = "MongoSchemaSampler";
+
+    public static final int DEFAULT_SAMPLE_SIZE = 200;
+
+    // Nested documents deeper than this are only recorded as "object"
+    private static final int MAX_DEPTH = 3;
+
+    // "Unrecognized pipeline stage name" on servers without $sample (before 3.2)
+    private static final int UNKNOWN_STAGE = 40324;
+    private static final int UNKNOWN_STAGE_LEGACY = 16436;
+
+    private MongoSchemaSampler() {
+    }
+
+    /**
+     * Draw documents with $sample and merge their field paths, types and presence
+     * @param collection The collection to sample
+     * @param size Number of documents to draw
+     */
+    static CollectionSchema sample(DBCollection collection, int size) {
+        long startTime = System.currentTimeMillis();
+        List<DBObject> documents = new ArrayList<>();
+        try {
+            Cursor cursor = collection.aggregate(
+                    Collections.singletonList(new BasicDBObject("$sample", new BasicDBObject("size", size))),
+                    AggregationOptions.builder().batchSize(size).maxTime(30, TimeUnit.SECONDS).build());
+            try {
+                while (cursor.hasNext()) {
+                    documents.add(cursor.next());
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (MongoCommandException e) {
+            if (e.getErrorCode() != UNKNOWN_STAGE && e.getErrorCode() != UNKNOWN_STAGE_LEGACY) {
+                throw e;
+            }
+            // Not random, but still far more than one document
+            Log.w(TAG, "Server does not support $sample, using the first " + size + " documents");
+            DBCursor cursor = collection.find().limit(size).maxTime(30, TimeUnit.SECONDS);
+            try {
+                while (cursor.hasNext()) {
+                    documents.add(cursor.next());
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        CollectionSchema schema = infer(documents);
+        Log.i(TAG, "Sampled " + documents.size() + " documents of " + collection.getName() + ": "
+                + schema.getFields().size() + " field paths in " + (System.currentTimeMillis() - startTime) + "ms");
+        return schema;
+    }
+
+    /**
+     * Merge the field paths, types and presence of sampled documents
+     */
+    static CollectionSchema infer(List<? extends DBObject> documents) {
+        CollectionSchema schema = new CollectionSchema(documents.size());
+        for (DBObject document : documents) {
+            record(schema, document, "", 0);
+        }
+        return schema;
+    }
+
+    private static void record(CollectionSchema schema, DBObject document, String prefix, int depth) {
+        for (String key : document.keySet()) {
+            Object value = document.get(key);
+            String path = prefix + key;
+            schema.record(path, depth, MongoDbDatabaseService.bsonTypeName(value));
+            if (value instanceof DBObject && !(value instanceof List) && depth + 1 < MAX_DEPTH) {
+                record(schema, (DBObject) value, path + ".", depth + 1);
+            }
+        }
+    }
+}
@@ -2,25 +2,40 @@ package io.celox.querycore.database;
 
 import android.util.Log;
 
+import java.net.InetAddress;
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
 import io.celox.querycore.models.ConnectionInfo;
+import io.celox.querycore.models.DatabaseSchema;
+import io.celox.querycore.models.QueryResult;
 
 public class MySqlDatabaseService implements DatabaseService {
     
     private static final String TAG = "MySqlDatabaseService";
+    // Prepared statements kept open per pooled connection
+    private static final int STATEMENT_CACHE_SIZE = 50;
+    // The heartbeat's ping gives up after this long
+    private static final int PING_TIMEOUT_SECONDS = 5;
+    static final String CREDENTIALS_IN_URL = "URL";
+    static final String CREDENTIALS_IN_PROPERTIES = "PROPERTIES";
+    // URL parameters of both credential shapes, the remaining settings are in connectionProperties()
+    private static final String URL_OPTIONS = "?useSSL=false&connectTimeout=20000"
+            + "&socketTimeout=30000&allowPublicKeyRetrieval=true&useCompression=true"
+            + "&characterEncoding=utf8&enablePacketDebug=true";
     private String connectionTrackingId;
     
     static {
@@ -41,7 +56,14 @@ public class MySqlDatabaseService implements DatabaseService {
         Log.i("MySqlDatabaseService", "MySQL/MariaDB JDBC driver system properties configured");
     }
     
-    private Connection connection;
+    // Connections for concurrent metadata browsing and queries
+    private JdbcConnectionPool pool;
+    private final MetadataCache metadataCache = new MetadataCache();
+    private final QueryResultCache resultCache = QueryResultCache.forSql();
+    // Database the operation running on this thread was submitted for, see runInDatabase
+    private final ThreadLocal<String> operationDatabase = new ThreadLocal<>();
+    // Where the credentials went on the last successful connect
+    private String authMechanism;
     private ConnectionInfo connectionInfo;
     
     /**
@@ -102,6 +124,50 @@ public class MySqlDatabaseService implements DatabaseService {
         return null;
     }
     
+    /**
+     * The pool of the current connection
+     * @throws SQLException if not connected
+     */
+    private JdbcConnectionPool requirePool() throws SQLException {
+        JdbcConnectionPool current = pool;
+        if (current == null || current.isClosed()) {
+            throw new SQLException("Not connected to a database", "08003");
+        }
+        return current;
+    }
+    
+    /**
+     * Borrow a pooled connection, close it to give it back
+     */
+    private Connection borrowConnection() throws SQLException {
+        String database = operationDatabase.get();
+        return database != null ? requirePool().borrow(database) : requirePool().borrow();
+    }
+    
+    /**
+     * Make a database the default for all pooled connections, like USE on a single connection.
+     * The database is checked before it becomes the default.
+     * @return A borrowed connection that is already switched to the database
+     */
+    private Connection switchDatabase(String database) throws SQLException {
+        JdbcConnectionPool current = requirePool();
+        Log.d(TAG, "Switching to database: " + database);
+        Connection connection = current.borrow(database);
+        current.setCatalog(database);
+        return connection;
+    }
+    
+    /**
+     * Close the pool after a failed connection attempt
+     */
+    private void closePool() {
+        if (pool != null) {
+            ConnectionTracker.getInstance().untrackPool(pool);
+            pool.close();
+            pool = null;
+        }
+    }
+    
     @Override
     public void connect(ConnectionInfo connectionInfo) throws Exception {
         // Start connection tracking
@@ -176,20 +242,14 @@ public class MySqlDatabaseService implements DatabaseService {
         }
         
         // Create connection URL with advanced options for better error handling
-        String baseUrl;
-        
-        // Build URL with enhanced parameters for diagnostics
-        baseUrl = String.format("jdbc:mariadb://%s:%d/%s?useSSL=false&connectTimeout=20000" +
-                "&socketTimeout=30000&allowPublicKeyRetrieval=true&useCompression=true" +
-                "&characterEncoding=utf8&enablePacketDebug=true",
+        String baseUrl = String.format("jdbc:mariadb://%s:%d/%s" + URL_OPTIONS,
                 connectionInfo.getHost(),
                 connectionInfo.getPort(),
                 connectionInfo.getDatabase());
         
         Log.d(TAG, "Connection URL (without credentials): " + baseUrl);
         
-        // Create a properties object with enhanced options
-        Properties props = new Properties();
+        Properties props = connectionProperties();
         props.setProperty("user", connectionInfo.getUsername());
         
         // Make sure password is not null and properly set
@@ -200,82 +260,91 @@ public class MySqlDatabaseService implements DatabaseService {
             Log.w(TAG, "Password is empty or null - this will likely cause authentication issues");
         }
         
-        props.setProperty("connectTimeout", "20000"); // 20 seconds
-        props.setProperty("socketTimeout", "30000"); // 30 seconds
-        props.setProperty("loginTimeout", "20000"); // 20 seconds
-        props.setProperty("tcpKeepAlive", "true");
-        props.setProperty("useUnicode", "true");
-        props.setProperty("characterEncoding", "UTF-8");
-        props.setProperty("allowMultiQueries", "false"); // Security measure
-        props.setProperty("usePipelineAuth", "false"); // More compatible
-        props.setProperty("passwordCharacterEncoding", "UTF-8"); // Ensure password encoding is correct
-        
         Log.d(TAG, "Connection properties configured");
         
         // Connect with enhanced error handling
         try {
             Log.d(TAG, "Attempting to establish MariaDB connection");
             
-            // Let's build the URL with credentials directly embedded in it, bypassing properties
-            String fullUrl;
+            // Resolve up front so the DNS lookup is timed on its own, the driver then hits the resolver cache
+            ConnectionTracker tracker = ConnectionTracker.getInstance();
+            tracker.timePhase(connectionTrackingId, ConnectionTracker.Phase.RESOLVE,
+                    () -> InetAddress.getAllByName(connectionInfo.getHost()));
+            
+            // Credentials go either embedded in the URL or in the properties. Try the shape that worked
+            // last time first and only fall back to the other one if the server rejects the login
+            List<String> shapes = new ArrayList<>();
             if (connectionInfo.getUsername() != null && !connectionInfo.getUsername().isEmpty() && 
                 connectionInfo.getPassword() != null && !connectionInfo.getPassword().isEmpty()) {
-                
-                // URL encode the password
-                String encodedPassword;
-                try {
-                    encodedPassword = java.net.URLEncoder.encode(connectionInfo.getPassword(), "UTF-8");
-                    Log.d(TAG, "Password encoded for URL inclusion");
-                } catch (Exception e) {
-                    encodedPassword = connectionInfo.getPassword();
-                    Log.e(TAG, "Failed to URL encode password", e);
+                shapes.add(CREDENTIALS_IN_URL);
+                shapes.add(CREDENTIALS_IN_PROPERTIES);
+                if (CREDENTIALS_IN_PROPERTIES.equals(connectionInfo.getAuthMechanism())) {
+                    Collections.reverse(shapes);
                 }
-                
-                fullUrl = String.format("jdbc:mariadb://%s:%s@%s:%d/%s?useSSL=false&connectTimeout=20000" +
-                        "&socketTimeout=30000&allowPublicKeyRetrieval=true&useCompression=true" +
-                        "&characterEncoding=utf8&enablePacketDebug=true",
-                        connectionInfo.getUsername(),
-                        encodedPassword,
-                        connectionInfo.getHost(),
-                        connectionInfo.getPort(),
-                        connectionInfo.getDatabase());
-                
-                Log.d(TAG, "Using URL with embedded credentials (password hidden): " + 
-                      fullUrl.replaceAll(encodedPassword, "********"));
-                
-                // Connect with URL only
-                this.connection = DriverManager.getConnection(fullUrl);
             } else {
-                // Fall back to original method
-                this.connection = DriverManager.getConnection(baseUrl, props);
+                shapes.add(CREDENTIALS_IN_PROPERTIES);
             }
             
-            // Test connection with a simple query
-            try (Statement stmt = connection.createStatement()) {
-                Log.d(TAG, "Testing connection with 'SELECT 1'");
-                ResultSet rs = stmt.executeQuery("SELECT 1");
-                if (rs.next()) {
-                    Log.i(TAG, "Connection test successful: " + rs.getInt(1));
+            JdbcConnectionPool connected = null;
+            for (int i = 0; connected == null; i++) {
+                String shape = shapes.get(i);
+                JdbcConnectionPool.ConnectionFactory factory = CREDENTIALS_IN_URL.equals(shape)
+                        ? urlCredentialsFactory(connectionInfo)
+                        : () -> DriverManager.getConnection(baseUrl, props);
+                try {
+                    connected = new JdbcConnectionPool(connectionTrackingId,
+                            tracker.timeDriverConnects(connectionTrackingId, factory),
+                            new JdbcConnectionPool.Config()
+                            .setSessionIdQuery("SELECT CONNECTION_ID()")
+                            .setStatementCacheSize(STATEMENT_CACHE_SIZE));
+                    this.authMechanism = shape;
+                } catch (SQLException e) {
+                    boolean accessDenied = e.getErrorCode() == 1045 || "28000".equals(e.getSQLState());
+                    if (!accessDenied || i == shapes.size() - 1) {
+                        throw e;
+                    }
+                    Log.w(TAG, "Login with credentials " + shape + " rejected, trying " + shapes.get(i + 1));
                 }
             }
+            this.pool = connected;
+            tracker.trackPool(pool);
             
-            // Log connection success details
-            Log.i(TAG, "Successfully connected to MySQL/MariaDB database");
             String dbDetails = "";
-            if (connection.getMetaData() != null) {
-                dbDetails = connection.getMetaData().getDatabaseProductName() + " " +
-                      connection.getMetaData().getDatabaseProductVersion();
-                Log.i(TAG, "Connected to: " + dbDetails);
-                Log.i(TAG, "JDBC Driver: " + connection.getMetaData().getDriverName() + " " +
-                      connection.getMetaData().getDriverVersion());
+            try (Connection connection = pool.borrow()) {
+                // Test connection with a simple query
+                long phaseStart = System.currentTimeMillis();
+                try (Statement stmt = connection.createStatement()) {
+                    Log.d(TAG, "Testing connection with 'SELECT 1'");
+                    ResultSet rs = stmt.executeQuery("SELECT 1");
+                    if (rs.next()) {
+                        Log.i(TAG, "Connection test successful: " + rs.getInt(1));
+                    }
+                }
+                tracker.trackPhase(connectionTrackingId, ConnectionTracker.Phase.VALIDATION_QUERY,
+                        System.currentTimeMillis() - phaseStart);
+                
+                // Log connection success details
+                Log.i(TAG, "Successfully connected to MySQL/MariaDB database");
+                phaseStart = System.currentTimeMillis();
+                if (connection.getMetaData() != null) {
+                    dbDetails = connection.getMetaData().getDatabaseProductName() + " " +
+                          connection.getMetaData().getDatabaseProductVersion();
+                    Log.i(TAG, "Connected to: " + dbDetails);
+                    Log.i(TAG, "JDBC Driver: " + connection.getMetaData().getDriverName() + " " +
+                          connection.getMetaData().getDriverVersion());
+                }
+                tracker.trackPhase(connectionTrackingId, ConnectionTracker.Phase.SERVER_INFO,
+                        System.currentTimeMillis() - phaseStart);
             }
             
             this.connectionInfo = connectionInfo;
             
             // Record successful connection
             ConnectionTracker.getInstance().trackConnectionSuccess(connectionTrackingId, dbDetails);
+            ConnectionTracker.getInstance().trackMetadataCache(connectionTrackingId, metadataCache);
             
         } catch (SQLException e) {
+            closePool();
             Log.e(TAG, "SQL exception during connection: " + e.getMessage(), e);
             
             // Get more detailed nested exceptions if available
@@ -297,6 +366,7 @@ public class MySqlDatabaseService implements DatabaseService {
             ConnectionTracker.getInstance().trackConnectionFailure(connectionTrackingId, errorMsg, "SQL_ERROR");
             throw new Exception(errorMsg, e);
         } catch (Exception e) {
+            closePool();
             Log.e(TAG, "Non-SQL exception during connection: " + e.getMessage(), e);
             String errorMsg = "Unexpected error connecting to MySQL/MariaDB: " + e.getMessage();
             ConnectionTracker.getInstance().trackConnectionFailure(connectionTrackingId, errorMsg, "UNEXPECTED_ERROR");
@@ -304,9 +374,67 @@ public class MySqlDatabaseService implements DatabaseService {
         }
     }
     
+    /**
+     * Driver settings of every pooled connection, without credentials.
+     * Shared by both credential shapes, so statements and batches behave the same whichever one connected.
+     */
+    private static Properties connectionProperties() {
+        Properties props = new Properties();
+        props.setProperty("connectTimeout", "20000"); // 20 seconds
+        props.setProperty("socketTimeout", "30000"); // 30 seconds
+        props.setProperty("loginTimeout", "20000"); // 20 seconds
+        props.setProperty("tcpKeepAlive", "true");
+        props.setProperty("useUnicode", "true");
+        props.setProperty("characterEncoding", "UTF-8");
+        props.setProperty("allowMultiQueries", "false"); // Security measure
+        props.setProperty("usePipelineAuth", "false"); // More compatible
+        props.setProperty("passwordCharacterEncoding", "UTF-8"); // Ensure password encoding is correct
+        // Prepare on the server so statements kept in the pool's statement cache skip parsing on reuse
+        props.setProperty("useServerPrepStmts", "true");
+        // Pipeline batches instead of one round trip per statement, rewriteBatchedStatements
+        // would turn server-side prepares off again in this driver
+        props.setProperty("useBatchMultiSend", "true");
+        // Times the TCP connect separately from the handshake for the connection tracker
+        props.setProperty("socketFactory", TimedSocketFactory.class.getName());
+        return props;
+    }
+    
+    /**
+     * Connection factory with the credentials embedded in the URL instead of the properties
+     */
+    private JdbcConnectionPool.ConnectionFactory urlCredentialsFactory(ConnectionInfo connectionInfo) {
+        // URL encode the password
+        String encodedPassword;
+        try {
+            encodedPassword = java.net.URLEncoder.encode(connectionInfo.getPassword(), "UTF-8");
+            Log.d(TAG, "Password encoded for URL inclusion");
+        } catch (Exception e) {
+            encodedPassword = connectionInfo.getPassword();
+            Log.e(TAG, "Failed to URL encode password", e);
+        }
+        
+        String fullUrl = String.format("jdbc:mariadb://%s:%s@%s:%d/%s" + URL_OPTIONS,
+                connectionInfo.getUsername(),
+                encodedPassword,
+                connectionInfo.getHost(),
+                connectionInfo.getPort(),
+                connectionInfo.getDatabase());
+        
+        Log.d(TAG, "Using URL with embedded credentials (password hidden): " + 
+              fullUrl.replace(encodedPassword, "********"));
+        
+        Properties props = connectionProperties();
+        return () -> DriverManager.getConnection(fullUrl, props);
+    }
+    
+    @Override
+    public String getAuthMechanism() {
+        return authMechanism;
+    }
+    
     @Override
     public void disconnect() throws Exception {
-        if (connection != null && !connection.isClosed()) {
+        if (pool != null && !pool.isClosed()) {
             // Track disconnection if we had a successful connection
             if (connectionTrackingId != null) {
                 ConnectionTracker.getInstance().trackDisconnection(connectionTrackingId);
@@ -314,8 +442,7 @@ public class MySqlDatabaseService implements DatabaseService {
             }
             
             Log.d(TAG, "Disconnecting from MySQL/MariaDB database");
-            connection.close();
-            connection = null;
+            closePool();
             Log.i(TAG, "Successfully disconnected from MySQL/MariaDB database");
         } else {
             Log.d(TAG, "Disconnect called but no active connection exists");
@@ -325,23 +452,28 @@ public class MySqlDatabaseService implements DatabaseService {
     @Override
     public boolean isConnected() {
         try {
-            if (connection == null) {
-                Log.d(TAG, "Connection check: connection is null");
+            if (pool == null) {
+                Log.d(TAG, "Connection check: connection pool is null");
                 return false;
             }
             
-            if (connection.isClosed()) {
-                Log.d(TAG, "Connection check: connection is closed");
+            if (pool.isClosed()) {
+                Log.d(TAG, "Connection check: connection pool is closed");
                 return false;
             }
             
-            // Test connection with a lightweight ping
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("/* ping */ SELECT 1");
-                Log.d(TAG, "Connection check: connection is valid and working");
-                return true;
+            // Ping on a free connection without waiting for one, the heartbeat must not queue behind queries
+            try (Connection connection = pool.borrow(pool.getCatalog(), 0)) {
+                boolean valid = connection.isValid(PING_TIMEOUT_SECONDS);
+                Log.d(TAG, "Connection check: connection is " + (valid ? "valid" : "not answering"));
+                return valid;
             }
             
+        } catch (SQLTransientConnectionException e) {
+            // Every connection is running a query. The pool is busy, not dead, and a lost server
+            // fails those queries, which report it.
+            Log.d(TAG, "Connection check skipped, all connections in use");
+            return true;
         } catch (SQLException e) {
             Log.e(TAG, "Connection check failed: " + e.getMessage(), e);
             return false;
@@ -351,12 +483,58 @@ public class MySqlDatabaseService implements DatabaseService {
         }
     }
     
+    @Override
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+    
+    @Override
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    @Override
+    public String getCurrentDatabase() {
+        String database = operationDatabase.get();
+        if (database != null) {
+            return database;
+        }
+        // Until another database is selected connections use the one from the connection settings
+        JdbcConnectionPool current = pool;
+        String catalog = current != null ? current.getCatalog() : null;
+        return catalog != null || connectionInfo == null ? catalog : connectionInfo.getDatabase();
+    }
+    
+    @Override
+    public void selectDatabase(String database) {
+        JdbcConnectionPool current = pool;
+        if (current != null) {
+            current.setCatalog(database);
+        }
+    }
+    
+    @Override
+    public <T> T runInDatabase(String database, Callable<T> operation) throws Exception {
+        String previous = operationDatabase.get();
+        operationDatabase.set(database);
+        try {
+            return operation.call();
+        } finally {
+            operationDatabase.set(previous);
+        }
+    }
+    
     @Override
     public List<String> getDatabases() throws Exception {
+        return metadataCache.get(MetadataCache.KEY_DATABASES, this::loadDatabases);
+    }
+    
+    private List<String> loadDatabases() throws Exception {
         List<String> databases = new ArrayList<>();
         
         Log.d(TAG, "Retrieving list of databases");
-        try (ResultSet resultSet = connection.getMetaData().getCatalogs()) {
+        try (Connection connection = borrowConnection();
+             ResultSet resultSet = connection.getMetaData().getCatalogs()) {
             while (resultSet.next()) {
                 String dbName = resultSet.getString(1);
                 databases.add(dbName);
@@ -380,53 +558,90 @@ public class MySqlDatabaseService implements DatabaseService {
     
     @Override
     public List<String> getTables(String database) throws Exception {
-        List<String> tables = new ArrayList<>();
-        
-        Log.d(TAG, "Retrieving tables for database: " + database);
+        // Later queries run against this database, also when the tables come from the cache
         try {
-            // Switch to the requested database for compatibility
-            try (Statement stmt = connection.createStatement()) {
-                Log.d(TAG, "Switching to database: " + database);
-                stmt.execute("USE " + database);
-            }
+            switchDatabase(database).close();
+        } catch (SQLException e) {
+            Log.e(TAG, "Error switching to database '" + database + "': " + e.getMessage(), e);
             
-            DatabaseMetaData metaData = connection.getMetaData();
-            try (ResultSet resultSet = metaData.getTables(database, null, "%", new String[]{"TABLE"})) {
-                while (resultSet.next()) {
-                    String tableName = resultSet.getString("TABLE_NAME");
-                    tables.add(tableName);
-                    Log.d(TAG, "Found table: " + tableName);
-                }
+            if (e.getErrorCode() == 1044 || e.getMessage().contains("Access denied")) {
+                throw new Exception("Permission denied: Your database user account doesn't have permission to view tables in '" + 
+                      database + "'. You need SELECT privilege.", e);
+            } else if (e.getErrorCode() == 1049 || e.getMessage().contains("Unknown database")) {
+                throw new Exception("Database '" + database + "' does not exist. Please check the database name.", e);
             }
             
-            Log.i(TAG, "Successfully retrieved " + tables.size() + " tables from database " + database);
+            throw new Exception("Failed to switch to database '" + database + "': " + e.getMessage(), e);
+        }
+        // The schema load also caches the structure of every table for the table views
+        return metadataCache.get(MetadataCache.tablesKey(database), () -> loadSchema(database).getTableNames());
+    }
+    
+    @Override
+    public DatabaseSchema getSchema(String database) throws Exception {
+        return metadataCache.get(MetadataCache.schemaKey(database), () -> loadSchema(database));
+    }
+    
+    /**
+     * Read all tables, columns and indexes of a database in one go and cache the table list and every
+     * table structure with it. Names the database in the queries instead of switching to it,
+     * so a background refresh leaves the pool alone.
+     */
+    private DatabaseSchema loadSchema(String database) throws Exception {
+        Log.d(TAG, "Retrieving schema for database: " + database);
+        // Structures read before a schema change must not be stored as fresh after it
+        long loadGeneration = metadataCache.getGeneration();
+        try (Connection connection = borrowConnection()) {
+            DatabaseSchema schema = JdbcSchemaLoader.load(connection, database);
+            metadataCache.put(MetadataCache.tablesKey(database), schema.getTableNames(), loadGeneration);
+            for (DatabaseSchema.Table table : schema.getTables()) {
+                metadataCache.put(MetadataCache.structureKey(database, table.getName()), table.getStructure(),
+                        loadGeneration);
+            }
+            return schema;
             
         } catch (SQLException e) {
-            Log.e(TAG, "Error retrieving tables for database '" + database + "': " + e.getMessage(), e);
+            Log.e(TAG, "Error retrieving schema for database '" + database + "': " + e.getMessage(), e);
             
-            // Check for permission or database not exists issues
+            // Check for permission issues
             if (e.getErrorCode() == 1044 || e.getMessage().contains("Access denied")) {
                 throw new Exception("Permission denied: Your database user account doesn't have permission to view tables in '" + 
                       database + "'. You need SELECT privilege.", e);
-            } else if (e.getErrorCode() == 1049 || e.getMessage().contains("Unknown database")) {
-                throw new Exception("Database '" + database + "' does not exist. Please check the database name.", e);
             }
             
             throw new Exception("Failed to retrieve tables from database '" + database + "': " + e.getMessage(), e);
         }
-        
-        return tables;
     }
     
     @Override
-    public List<Map<String, Object>> executeQuery(String query) throws Exception {
-        List<Map<String, Object>> resultList = new ArrayList<>();
+    public QueryResult executeQuery(String query, QueryHandle handle) throws Exception {
+        return runQuery(query, handle, null);
+    }
+    
+    @Override
+    public QueryResult executeQuery(String query, QueryHandle handle, Object... params) throws Exception {
+        return runQuery(query, handle, params);
+    }
+    
+    /**
+     * Run a query as a plain statement, or as a cached prepared statement if it has parameters
+     * @param params Values for the ? placeholders, null for a plain statement
+     */
+    private QueryResult runQuery(String query, QueryHandle handle, Object[] params) throws Exception {
+        QueryResult.Builder builder = new QueryResult.Builder();
         
         Log.d(TAG, "Executing query: " + query.trim());
         long startTime = System.currentTimeMillis();
         
-        try (Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
+        String database = JdbcConnectionPool.usedDatabase(query);
+        if (database != null) {
+            // USE switches all pooled connections instead of only the borrowed one, the result shows the new database
+            query = "SELECT DATABASE()";
+            params = null;
+        }
+        try (Connection connection = database != null ? switchDatabase(database) : borrowConnection();
+             Statement statement = params != null ? connection.prepareStatement(query) : connection.createStatement();
+             ResultSet resultSet = execute(handle, connection, statement, query, params)) {
             ResultSetMetaData metaData = resultSet.getMetaData();
             int columnCount = metaData.getColumnCount();
             
@@ -439,30 +654,39 @@ public class MySqlDatabaseService implements DatabaseService {
             }
             Log.d(TAG, columnInfo.toString());
             
-            int rowCount = 0;
-            while (resultSet.next()) {
-                Map<String, Object> row = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    Object value = resultSet.getObject(i);
-                    row.put(columnName, value);
-                }
-                resultList.add(row);
-                rowCount++;
-                
-                // Log sample rows (first few rows only)
-                if (rowCount <= 3) {
-                    Log.d(TAG, "Sample row " + rowCount + ": " + row);
+            // One shared header for all rows, storage picked per column type
+            JdbcResultDecoder decoder = new JdbcResultDecoder(metaData, builder);
+            try {
+                while (resultSet.next()) {
+                    if (handle.isCancelled()) {
+                        throw new Exception("Query cancelled");
+                    }
+                    decoder.readRow(resultSet);
                 }
+            } catch (Exception e) {
+                builder.discard();
+                throw e;
             }
             
             long duration = System.currentTimeMillis() - startTime;
-            Log.i(TAG, "Query executed successfully. Retrieved " + rowCount + " rows in " + duration + "ms");
+            QueryResult result = builder.build();
+            result.setExecutionTimeMs(duration);
+            Log.i(TAG, "Query executed successfully. Retrieved " + result.getRowCount() + " rows in " + duration + "ms");
+            
+            // Log sample rows (first few rows only)
+            for (int i = 0; i < Math.min(3, result.getRowCount()); i++) {
+                Log.d(TAG, "Sample row " + (i + 1) + ": " + result.asMaps().get(i));
+            }
+            return result;
             
         } catch (SQLException e) {
             long duration = System.currentTimeMillis() - startTime;
             Log.e(TAG, "Error executing query (" + duration + "ms): " + e.getMessage(), e);
             
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
+            }
+            
             // Detect specific SQL errors
             if (e.getErrorCode() == 1064) { // Syntax error
                 throw new Exception("SQL syntax error: " + e.getMessage(), e);
@@ -474,8 +698,78 @@ public class MySqlDatabaseService implements DatabaseService {
             
             throw new Exception("Query execution failed: " + e.getMessage(), e);
         }
+    }
+    
+    /**
+     * Make a statement cancellable through the handle and run the query on it
+     * @param statement A prepared statement if there are params, otherwise a plain one
+     */
+    private ResultSet execute(QueryHandle handle, Connection connection, Statement statement, String query,
+                              Object[] params) throws SQLException {
+        JdbcQueryCancel.register(handle, requirePool(), connection, statement);
+        return params != null ? bind((PreparedStatement) statement, params).executeQuery() : statement.executeQuery(query);
+    }
+    
+    /**
+     * Set the ? placeholders of a prepared statement in order
+     */
+    private static PreparedStatement bind(PreparedStatement statement, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+        return statement;
+    }
+    
+    @Override
+    public RowCursor openCursor(String query, CursorOptions options, QueryHandle handle) throws Exception {
+        Log.d(TAG, "Opening cursor (fetch size " + options.getFetchSize() + "): " + query.trim());
         
-        return resultList;
+        try {
+            String database = JdbcConnectionPool.usedDatabase(query);
+            if (database != null) {
+                // USE switches all pooled connections instead of only the borrowed one, the result shows the new database
+                return JdbcRowCursor.open(requirePool(), switchDatabase(database), "SELECT DATABASE()", options,
+                        true, handle);
+            }
+            // MariaDB streams over the text protocol and would read all remaining rows on close, cancel instead
+            return JdbcRowCursor.open(requirePool(), borrowConnection(), query, options, true, handle);
+        } catch (SQLException e) {
+            Log.e(TAG, "Error opening cursor: " + e.getMessage(), e);
+            
+            if (e.getErrorCode() == 1064) { // Syntax error
+                throw new Exception("SQL syntax error: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1146) { // Table doesn't exist
+                throw new Exception("Table not found: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1142) { // Permission issue
+                throw new Exception("Permission denied: You don't have sufficient privileges to execute this query.", e);
+            }
+            
+            throw new Exception("Query execution failed: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public TablePage executePage(PageRequest request, QueryHandle handle) throws Exception {
+        Log.d(TAG, "Loading page " + request.getPageIndex() + " of table: " + request.getTable());
+        
+        try (Connection connection = borrowConnection()) {
+            return JdbcPageQuery.execute(requirePool(), connection, request, handle);
+        } catch (SQLException e) {
+            Log.e(TAG, "Error loading page: " + e.getMessage(), e);
+            
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
+            }
+            
+            if (e.getErrorCode() == 1146) { // Table doesn't exist
+                throw new Exception("Table not found: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1142) { // Permission issue
+                throw new Exception("Permission denied: You don't have sufficient privileges to read table '" +
+                      request.getTable() + "'.", e);
+            }
+            
+            throw new Exception("Failed to load page of table '" + request.getTable() + "': " + e.getMessage(), e);
+        }
     }
     
     @Override
@@ -483,8 +777,20 @@ public class MySqlDatabaseService implements DatabaseService {
         Log.d(TAG, "Executing update query: " + query.trim());
         long startTime = System.currentTimeMillis();
         
-        try (Statement statement = connection.createStatement()) {
+        String database = JdbcConnectionPool.usedDatabase(query);
+        try (Connection connection = database != null ? switchDatabase(database) : borrowConnection();
+             Statement statement = connection.createStatement()) {
+            if (database != null) {
+                // All pooled connections switch, not only the borrowed one
+                return 0;
+            }
             int rowsAffected = statement.executeUpdate(query);
+            if (MetadataCache.isSchemaChange(query)) {
+                metadataCache.invalidateAll();
+                resultCache.invalidateAll();
+            } else {
+                resultCache.invalidateWrite(query);
+            }
             long duration = System.currentTimeMillis() - startTime;
             Log.i(TAG, "Update executed successfully. Affected " + rowsAffected + " rows in " + duration + "ms");
             return rowsAffected;
@@ -510,15 +816,86 @@ public class MySqlDatabaseService implements DatabaseService {
         }
     }
     
+    @Override
+    public BatchResult executeBatch(List<String> statements) throws Exception {
+        Log.d(TAG, "Executing batch of " + statements.size() + " statements");
+        long startTime = System.currentTimeMillis();
+        
+        try (Connection connection = borrowConnection();
+             Statement statement = connection.createStatement()) {
+            boolean schemaChange = false;
+            for (String query : statements) {
+                statement.addBatch(query);
+                schemaChange |= MetadataCache.isSchemaChange(query);
+            }
+            BatchResult result = JdbcBatch.execute(statement, statements.size(), startTime);
+            if (schemaChange) {
+                metadataCache.invalidateAll();
+                resultCache.invalidateAll();
+            } else {
+                for (String query : statements) {
+                    resultCache.invalidateWrite(query);
+                }
+            }
+            Log.i(TAG, "Batch executed: " + result);
+            return result;
+            
+        } catch (SQLException e) {
+            Log.e(TAG, "Error executing batch: " + e.getMessage(), e);
+            throw new Exception("Batch execution failed: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public BatchResult executeBatch(String query, List<Object[]> params) throws Exception {
+        Log.d(TAG, "Executing batch of " + params.size() + " parameter sets: " + query.trim());
+        long startTime = System.currentTimeMillis();
+        
+        try (Connection connection = borrowConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            for (Object[] values : params) {
+                bind(statement, values).addBatch();
+            }
+            BatchResult result = JdbcBatch.execute(statement, params.size(), startTime);
+            resultCache.invalidateWrite(query);
+            Log.i(TAG, "Batch executed: " + result);
+            return result;
+            
+        } catch (SQLException e) {
+            Log.e(TAG, "Error executing batch: " + e.getMessage(), e);
+            
+            if (e.getErrorCode() == 1064) { // Syntax error
+                throw new Exception("SQL syntax error: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1146) { // Table doesn't exist
+                throw new Exception("Table not found: " + e.getMessage(), e);
+            }
+            
+            throw new Exception("Batch execution failed: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public Map<String, String> getTableStructure(String table) throws Exception {
+        String database = getCurrentDatabase();
+        return metadataCache.get(MetadataCache.structureKey(database, table),
+                () -> loadTableStructure(database, table));
+    }
+    
+    /**
+     * @param database Database of the table, named in the statement so a background refresh
+     *                 does not depend on the database the pool is switched to
+     */
+    private Map<String, String> loadTableStructure(String database, String table) throws Exception {
         Map<String, String> structure = new HashMap<>();
         
         Log.d(TAG, "Retrieving structure for table: " + table);
         long startTime = System.currentTimeMillis();
         
-        String query = "DESCRIBE " + table;
-        try (PreparedStatement statement = connection.prepareStatement(query);
+        String query = "DESCRIBE " + (database != null && !database.isEmpty()
+                ? JdbcPageQuery.quote(database) + "." + JdbcPageQuery.quote(table)
+                : JdbcPageQuery.quote(table));
+        try (Connection connection = borrowConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
              ResultSet resultSet = statement.executeQuery()) {
             
             while (resultSet.next()) {
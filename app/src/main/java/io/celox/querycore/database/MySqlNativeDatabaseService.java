@@ -2,21 +2,25 @@ package io.celox.querycore.database;
 
 import android.util.Log;
 
+import java.net.InetAddress;
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
 import io.celox.querycore.models.ConnectionInfo;
+import io.celox.querycore.models.DatabaseSchema;
+import io.celox.querycore.models.QueryResult;
 
 /**
  * MySQL database service using the official MySQL JDBC driver instead of MariaDB
@@ -24,6 +28,10 @@ import io.celox.querycore.models.ConnectionInfo;
 public class MySqlNativeDatabaseService implements DatabaseService {
     
     private static final String TAG = "MySqlNativeService";
+    // Prepared statements kept open per pooled connection
+    private static final int STATEMENT_CACHE_SIZE = 50;
+    // The heartbeat's ping gives up after this long
+    private static final int PING_TIMEOUT_SECONDS = 5;
     private String connectionTrackingId;
     
     static {
@@ -37,7 +45,12 @@ public class MySqlNativeDatabaseService implements DatabaseService {
         Log.i("MySqlNativeService", "MySQL JDBC driver system properties configured");
     }
     
-    private Connection connection;
+    // Connections for concurrent metadata browsing and queries
+    private JdbcConnectionPool pool;
+    private final MetadataCache metadataCache = new MetadataCache();
+    private final QueryResultCache resultCache = QueryResultCache.forSql();
+    // Database the operation running on this thread was submitted for, see runInDatabase
+    private final ThreadLocal<String> operationDatabase = new ThreadLocal<>();
     private ConnectionInfo connectionInfo;
     
     /**
@@ -97,6 +110,50 @@ public class MySqlNativeDatabaseService implements DatabaseService {
         return null;
     }
     
+    /**
+     * The pool of the current connection
+     * @throws SQLException if not connected
+     */
+    private JdbcConnectionPool requirePool() throws SQLException {
+        JdbcConnectionPool current = pool;
+        if (current == null || current.isClosed()) {
+            throw new SQLException("Not connected to a database", "08003");
+        }
+        return current;
+    }
+    
+    /**
+     * Borrow a pooled connection, close it to give it back
+     */
+    private Connection borrowConnection() throws SQLException {
+        String database = operationDatabase.get();
+        return database != null ? requirePool().borrow(database) : requirePool().borrow();
+    }
+    
+    /**
+     * Make a database the default for all pooled connections, like USE on a single connection.
+     * The database is checked before it becomes the default.
+     * @return A borrowed connection that is already switched to the database
+     */
+    private Connection switchDatabase(String database) throws SQLException {
+        JdbcConnectionPool current = requirePool();
+        Log.d(TAG, "Switching to database: " + database);
+        Connection connection = current.borrow(database);
+        current.setCatalog(database);
+        return connection;
+    }
+    
+    /**
+     * Close the pool after a failed connection attempt
+     */
+    private void closePool() {
+        if (pool != null) {
+            ConnectionTracker.getInstance().untrackPool(pool);
+            pool.close();
+            pool = null;
+        }
+    }
+    
     @Override
     public void connect(ConnectionInfo connectionInfo) throws Exception {
         // Start connection tracking
@@ -174,41 +231,70 @@ public class MySqlNativeDatabaseService implements DatabaseService {
             properties.setProperty("autoReconnect", "true");
             properties.setProperty("useUnicode", "true");
             properties.setProperty("characterEncoding", "UTF-8");
+            // Let openCursor fetch in batches from a server-side cursor, so closing early does not drain the result
+            properties.setProperty("useCursorFetch", "true");
+            // Prepare on the server so statements kept in the pool's statement cache skip parsing on reuse
+            properties.setProperty("useServerPrepStmts", "true");
+            // Send batches as multi-row inserts or multi-statements, one round trip per batch
+            properties.setProperty("rewriteBatchedStatements", "true");
+            // Times the TCP connect separately from the handshake for the connection tracker
+            properties.setProperty("socketFactory", MySqlTimedSocketFactory.class.getName());
             
             // Parse just the base URL without parameters for MySQL 5.1.x
             String baseUrl = "jdbc:mysql://" + connectionInfo.getHost() + ":" + connectionInfo.getPort() + 
                     "/" + connectionInfo.getDatabase();
             
+            // Resolve up front so the DNS lookup is timed on its own, the driver then hits the resolver cache
+            ConnectionTracker tracker = ConnectionTracker.getInstance();
+            tracker.timePhase(connectionTrackingId, ConnectionTracker.Phase.RESOLVE,
+                    () -> InetAddress.getAllByName(connectionInfo.getHost()));
+            
             // Connect using separate properties object to avoid issues with URL encoding
-            this.connection = DriverManager.getConnection(baseUrl, properties);
+            this.pool = new JdbcConnectionPool(connectionTrackingId,
+                    tracker.timeDriverConnects(connectionTrackingId,
+                            () -> DriverManager.getConnection(baseUrl, properties)),
+                    new JdbcConnectionPool.Config()
+                            .setSessionIdQuery("SELECT CONNECTION_ID()")
+                            .setStatementCacheSize(STATEMENT_CACHE_SIZE));
+            tracker.trackPool(pool);
             Log.i(TAG, "Successfully connected using MySQL driver to MySQL server");
             
-            // Test connection with a simple query
-            try (Statement stmt = connection.createStatement()) {
-                Log.d(TAG, "Testing connection with 'SELECT 1'");
-                ResultSet rs = stmt.executeQuery("SELECT 1");
-                if (rs.next()) {
-                    Log.i(TAG, "Connection test successful: " + rs.getInt(1));
-                }
-            }
-            
-            // Log connection success details
-            Log.i(TAG, "Successfully connected to MySQL database");
             String dbDetails = "";
-            if (connection.getMetaData() != null) {
-                dbDetails = connection.getMetaData().getDatabaseProductName() + " " +
-                      connection.getMetaData().getDatabaseProductVersion();
-                Log.i(TAG, "Connected to: " + dbDetails);
-                Log.i(TAG, "JDBC Driver: " + connection.getMetaData().getDriverName() + " " +
-                      connection.getMetaData().getDriverVersion());
+            try (Connection connection = pool.borrow()) {
+                // Test connection with a simple query
+                long phaseStart = System.currentTimeMillis();
+                try (Statement stmt = connection.createStatement()) {
+                    Log.d(TAG, "Testing connection with 'SELECT 1'");
+                    ResultSet rs = stmt.executeQuery("SELECT 1");
+                    if (rs.next()) {
+                        Log.i(TAG, "Connection test successful: " + rs.getInt(1));
+                    }
+                }
+                tracker.trackPhase(connectionTrackingId, ConnectionTracker.Phase.VALIDATION_QUERY,
+                        System.currentTimeMillis() - phaseStart);
+                
+                // Log connection success details
+                Log.i(TAG, "Successfully connected to MySQL database");
+                phaseStart = System.currentTimeMillis();
+                if (connection.getMetaData() != null) {
+                    dbDetails = connection.getMetaData().getDatabaseProductName() + " " +
+                          connection.getMetaData().getDatabaseProductVersion();
+                    Log.i(TAG, "Connected to: " + dbDetails);
+                    Log.i(TAG, "JDBC Driver: " + connection.getMetaData().getDriverName() + " " +
+                          connection.getMetaData().getDriverVersion());
+                }
+                tracker.trackPhase(connectionTrackingId, ConnectionTracker.Phase.SERVER_INFO,
+                        System.currentTimeMillis() - phaseStart);
             }
             
             this.connectionInfo = connectionInfo;
             
             // Record successful connection
             ConnectionTracker.getInstance().trackConnectionSuccess(connectionTrackingId, dbDetails);
+            ConnectionTracker.getInstance().trackMetadataCache(connectionTrackingId, metadataCache);
             
         } catch (SQLException e) {
+            closePool();
             Log.e(TAG, "SQL exception during connection: " + e.getMessage(), e);
             
             // Get more detailed nested exceptions if available
@@ -230,6 +316,7 @@ public class MySqlNativeDatabaseService implements DatabaseService {
             ConnectionTracker.getInstance().trackConnectionFailure(connectionTrackingId, errorMsg, "SQL_ERROR");
             throw new Exception(errorMsg, e);
         } catch (Exception e) {
+            closePool();
             Log.e(TAG, "Non-SQL exception during connection: " + e.getMessage(), e);
             String errorMsg = "Unexpected error connecting to MySQL: " + e.getMessage();
             ConnectionTracker.getInstance().trackConnectionFailure(connectionTrackingId, errorMsg, "UNEXPECTED_ERROR");
@@ -237,9 +324,15 @@ public class MySqlNativeDatabaseService implements DatabaseService {
         }
     }
     
+    @Override
+    public String getAuthMechanism() {
+        // Credentials are always passed as properties, there is nothing to negotiate
+        return null;
+    }
+    
     @Override
     public void disconnect() throws Exception {
-        if (connection != null && !connection.isClosed()) {
+        if (pool != null && !pool.isClosed()) {
             // Track disconnection if we had a successful connection
             if (connectionTrackingId != null) {
                 ConnectionTracker.getInstance().trackDisconnection(connectionTrackingId);
@@ -247,8 +340,7 @@ public class MySqlNativeDatabaseService implements DatabaseService {
             }
             
             Log.d(TAG, "Disconnecting from MySQL database");
-            connection.close();
-            connection = null;
+            closePool();
             Log.i(TAG, "Successfully disconnected from MySQL database");
         } else {
             Log.d(TAG, "Disconnect called but no active connection exists");
@@ -258,23 +350,28 @@ public class MySqlNativeDatabaseService implements DatabaseService {
     @Override
     public boolean isConnected() {
         try {
-            if (connection == null) {
-                Log.d(TAG, "Connection check: connection is null");
+            if (pool == null) {
+                Log.d(TAG, "Connection check: connection pool is null");
                 return false;
             }
             
-            if (connection.isClosed()) {
-                Log.d(TAG, "Connection check: connection is closed");
+            if (pool.isClosed()) {
+                Log.d(TAG, "Connection check: connection pool is closed");
                 return false;
             }
             
-            // Test connection with a lightweight ping
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("/* ping */ SELECT 1");
-                Log.d(TAG, "Connection check: connection is valid and working");
-                return true;
+            // Ping on a free connection without waiting for one, the heartbeat must not queue behind queries
+            try (Connection connection = pool.borrow(pool.getCatalog(), 0)) {
+                boolean valid = connection.isValid(PING_TIMEOUT_SECONDS);
+                Log.d(TAG, "Connection check: connection is " + (valid ? "valid" : "not answering"));
+                return valid;
             }
             
+        } catch (SQLTransientConnectionException e) {
+            // Every connection is running a query. The pool is busy, not dead, and a lost server
+            // fails those queries, which report it.
+            Log.d(TAG, "Connection check skipped, all connections in use");
+            return true;
         } catch (SQLException e) {
             Log.e(TAG, "Connection check failed: " + e.getMessage(), e);
             return false;
@@ -284,12 +381,58 @@ public class MySqlNativeDatabaseService implements DatabaseService {
         }
     }
     
+    @Override
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+    
+    @Override
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    @Override
+    public String getCurrentDatabase() {
+        String database = operationDatabase.get();
+        if (database != null) {
+            return database;
+        }
+        // Until another database is selected connections use the one from the connection settings
+        JdbcConnectionPool current = pool;
+        String catalog = current != null ? current.getCatalog() : null;
+        return catalog != null || connectionInfo == null ? catalog : connectionInfo.getDatabase();
+    }
+    
+    @Override
+    public void selectDatabase(String database) {
+        JdbcConnectionPool current = pool;
+        if (current != null) {
+            current.setCatalog(database);
+        }
+    }
+    
+    @Override
+    public <T> T runInDatabase(String database, Callable<T> operation) throws Exception {
+        String previous = operationDatabase.get();
+        operationDatabase.set(database);
+        try {
+            return operation.call();
+        } finally {
+            operationDatabase.set(previous);
+        }
+    }
+    
     @Override
     public List<String> getDatabases() throws Exception {
+        return metadataCache.get(MetadataCache.KEY_DATABASES, this::loadDatabases);
+    }
+    
+    private List<String> loadDatabases() throws Exception {
         List<String> databases = new ArrayList<>();
         
         Log.d(TAG, "Retrieving list of databases");
-        try (ResultSet resultSet = connection.getMetaData().getCatalogs()) {
+        try (Connection connection = borrowConnection();
+             ResultSet resultSet = connection.getMetaData().getCatalogs()) {
             while (resultSet.next()) {
                 String dbName = resultSet.getString(1);
                 databases.add(dbName);
@@ -313,57 +456,90 @@ public class MySqlNativeDatabaseService implements DatabaseService {
     
     @Override
     public List<String> getTables(String database) throws Exception {
-        List<String> tables = new ArrayList<>();
-        
-        Log.d(TAG, "Retrieving tables for database: " + database);
+        // Later queries run against this database, also when the tables come from the cache
         try {
-            // Switch to the requested database for compatibility
-            try (Statement stmt = connection.createStatement()) {
-                Log.d(TAG, "Switching to database: " + database);
-                stmt.execute("USE " + database);
-            }
+            switchDatabase(database).close();
+        } catch (SQLException e) {
+            Log.e(TAG, "Error switching to database '" + database + "': " + e.getMessage(), e);
             
-            DatabaseMetaData metaData = connection.getMetaData();
-            try (ResultSet resultSet = metaData.getTables(database, null, "%", new String[]{"TABLE"})) {
-                while (resultSet.next()) {
-                    String tableName = resultSet.getString("TABLE_NAME");
-                    tables.add(tableName);
-                    Log.d(TAG, "Found table: " + tableName);
-                }
+            if (e.getErrorCode() == 1044 || e.getMessage().contains("Access denied")) {
+                throw new Exception("Permission denied: Your database user account doesn't have permission to view tables in '" + 
+                      database + "'. You need SELECT privilege.", e);
+            } else if (e.getErrorCode() == 1049 || e.getMessage().contains("Unknown database")) {
+                throw new Exception("Database '" + database + "' does not exist. Please check the database name.", e);
             }
             
-            Log.i(TAG, "Successfully retrieved " + tables.size() + " tables from database " + database);
+            throw new Exception("Failed to switch to database '" + database + "': " + e.getMessage(), e);
+        }
+        // The schema load also caches the structure of every table for the table views
+        return metadataCache.get(MetadataCache.tablesKey(database), () -> loadSchema(database).getTableNames());
+    }
+    
+    @Override
+    public DatabaseSchema getSchema(String database) throws Exception {
+        return metadataCache.get(MetadataCache.schemaKey(database), () -> loadSchema(database));
+    }
+    
+    /**
+     * Read all tables, columns and indexes of a database in one go and cache the table list and every
+     * table structure with it. Names the database in the queries instead of switching to it,
+     * so a background refresh leaves the pool alone.
+     */
+    private DatabaseSchema loadSchema(String database) throws Exception {
+        Log.d(TAG, "Retrieving schema for database: " + database);
+        // Structures read before a schema change must not be stored as fresh after it
+        long loadGeneration = metadataCache.getGeneration();
+        try (Connection connection = borrowConnection()) {
+            DatabaseSchema schema = JdbcSchemaLoader.load(connection, database);
+            metadataCache.put(MetadataCache.tablesKey(database), schema.getTableNames(), loadGeneration);
+            for (DatabaseSchema.Table table : schema.getTables()) {
+                metadataCache.put(MetadataCache.structureKey(database, table.getName()), table.getStructure(),
+                        loadGeneration);
+            }
+            return schema;
             
         } catch (SQLException e) {
-            Log.e(TAG, "Error retrieving tables for database '" + database + "': " + e.getMessage(), e);
+            Log.e(TAG, "Error retrieving schema for database '" + database + "': " + e.getMessage(), e);
             
-            // Check for permission or database not exists issues
+            // Check for permission issues
             if (e.getErrorCode() == 1044 || e.getMessage().contains("Access denied")) {
                 throw new Exception("Permission denied: Your database user account doesn't have permission to view tables in '" + 
                       database + "'. You need SELECT privilege.", e);
-            } else if (e.getErrorCode() == 1049 || e.getMessage().contains("Unknown database")) {
-                throw new Exception("Database '" + database + "' does not exist. Please check the database name.", e);
             }
             
             throw new Exception("Failed to retrieve tables from database '" + database + "': " + e.getMessage(), e);
         }
-        
-        return tables;
     }
     
     @Override
-    public List<Map<String, Object>> executeQuery(String query) throws Exception {
-        List<Map<String, Object>> resultList = new ArrayList<>();
+    public QueryResult executeQuery(String query, QueryHandle handle) throws Exception {
+        return runQuery(query, handle, null);
+    }
+    
+    @Override
+    public QueryResult executeQuery(String query, QueryHandle handle, Object... params) throws Exception {
+        return runQuery(query, handle, params);
+    }
+    
+    /**
+     * Run a query as a plain statement, or as a cached prepared statement if it has parameters
+     * @param params Values for the ? placeholders, null for a plain statement
+     */
+    private QueryResult runQuery(String query, QueryHandle handle, Object[] params) throws Exception {
+        QueryResult.Builder builder = new QueryResult.Builder();
         
         Log.d(TAG, "Executing query: " + query.trim());
         long startTime = System.currentTimeMillis();
         
-        try {
-            // Not needed for MySQL 5.1.x driver 
-            // connection.createStatement().execute("SET @@session.default_authentication_plugin='mysql_native_password'");
-            
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(query);
+        String database = JdbcConnectionPool.usedDatabase(query);
+        if (database != null) {
+            // USE switches all pooled connections instead of only the borrowed one, the result shows the new database
+            query = "SELECT DATABASE()";
+            params = null;
+        }
+        try (Connection connection = database != null ? switchDatabase(database) : borrowConnection();
+             Statement statement = params != null ? connection.prepareStatement(query) : connection.createStatement();
+             ResultSet resultSet = execute(handle, connection, statement, query, params)) {
             ResultSetMetaData metaData = resultSet.getMetaData();
             int columnCount = metaData.getColumnCount();
             
@@ -376,34 +552,39 @@ public class MySqlNativeDatabaseService implements DatabaseService {
             }
             Log.d(TAG, columnInfo.toString());
             
-            int rowCount = 0;
-            while (resultSet.next()) {
-                Map<String, Object> row = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    Object value = resultSet.getObject(i);
-                    row.put(columnName, value);
-                }
-                resultList.add(row);
-                rowCount++;
-                
-                // Log sample rows (first few rows only)
-                if (rowCount <= 3) {
-                    Log.d(TAG, "Sample row " + rowCount + ": " + row);
+            // One shared header for all rows, storage picked per column type
+            JdbcResultDecoder decoder = new JdbcResultDecoder(metaData, builder);
+            try {
+                while (resultSet.next()) {
+                    if (handle.isCancelled()) {
+                        throw new Exception("Query cancelled");
+                    }
+                    decoder.readRow(resultSet);
                 }
+            } catch (Exception e) {
+                builder.discard();
+                throw e;
             }
             
             long duration = System.currentTimeMillis() - startTime;
-            Log.i(TAG, "Query executed successfully. Retrieved " + rowCount + " rows in " + duration + "ms");
+            QueryResult result = builder.build();
+            result.setExecutionTimeMs(duration);
+            Log.i(TAG, "Query executed successfully. Retrieved " + result.getRowCount() + " rows in " + duration + "ms");
             
-            // Close resources
-            resultSet.close();
-            statement.close();
+            // Log sample rows (first few rows only)
+            for (int i = 0; i < Math.min(3, result.getRowCount()); i++) {
+                Log.d(TAG, "Sample row " + (i + 1) + ": " + result.asMaps().get(i));
+            }
+            return result;
             
         } catch (SQLException e) {
             long duration = System.currentTimeMillis() - startTime;
             Log.e(TAG, "Error executing query (" + duration + "ms): " + e.getMessage(), e);
             
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
+            }
+            
             // Detect specific SQL errors
             if (e.getErrorCode() == 1064) { // Syntax error
                 throw new Exception("SQL syntax error: " + e.getMessage(), e);
@@ -415,8 +596,78 @@ public class MySqlNativeDatabaseService implements DatabaseService {
             
             throw new Exception("Query execution failed: " + e.getMessage(), e);
         }
+    }
+    
+    /**
+     * Make a statement cancellable through the handle and run the query on it
+     * @param statement A prepared statement if there are params, otherwise a plain one
+     */
+    private ResultSet execute(QueryHandle handle, Connection connection, Statement statement, String query,
+                              Object[] params) throws SQLException {
+        JdbcQueryCancel.register(handle, requirePool(), connection, statement);
+        return params != null ? bind((PreparedStatement) statement, params).executeQuery() : statement.executeQuery(query);
+    }
+    
+    /**
+     * Set the ? placeholders of a prepared statement in order
+     */
+    private static PreparedStatement bind(PreparedStatement statement, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+        return statement;
+    }
+    
+    @Override
+    public RowCursor openCursor(String query, CursorOptions options, QueryHandle handle) throws Exception {
+        Log.d(TAG, "Opening cursor (fetch size " + options.getFetchSize() + "): " + query.trim());
         
-        return resultList;
+        try {
+            String database = JdbcConnectionPool.usedDatabase(query);
+            if (database != null) {
+                // USE switches all pooled connections instead of only the borrowed one, the result shows the new database
+                return JdbcRowCursor.open(requirePool(), switchDatabase(database), "SELECT DATABASE()", options,
+                        false, handle);
+            }
+            // Server-side cursor fetch makes an early close cheap, no cancel needed
+            return JdbcRowCursor.open(requirePool(), borrowConnection(), query, options, false, handle);
+        } catch (SQLException e) {
+            Log.e(TAG, "Error opening cursor: " + e.getMessage(), e);
+            
+            if (e.getErrorCode() == 1064) { // Syntax error
+                throw new Exception("SQL syntax error: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1146) { // Table doesn't exist
+                throw new Exception("Table not found: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1142) { // Permission issue
+                throw new Exception("Permission denied: You don't have sufficient privileges to execute this query.", e);
+            }
+            
+            throw new Exception("Query execution failed: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public TablePage executePage(PageRequest request, QueryHandle handle) throws Exception {
+        Log.d(TAG, "Loading page " + request.getPageIndex() + " of table: " + request.getTable());
+        
+        try (Connection connection = borrowConnection()) {
+            return JdbcPageQuery.execute(requirePool(), connection, request, handle);
+        } catch (SQLException e) {
+            Log.e(TAG, "Error loading page: " + e.getMessage(), e);
+            
+            if (handle.isCancelled()) {
+                throw new Exception("Query cancelled", e);
+            }
+            
+            if (e.getErrorCode() == 1146) { // Table doesn't exist
+                throw new Exception("Table not found: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1142) { // Permission issue
+                throw new Exception("Permission denied: You don't have sufficient privileges to read table '" +
+                      request.getTable() + "'.", e);
+            }
+            
+            throw new Exception("Failed to load page of table '" + request.getTable() + "': " + e.getMessage(), e);
+        }
     }
     
     @Override
@@ -424,18 +675,22 @@ public class MySqlNativeDatabaseService implements DatabaseService {
         Log.d(TAG, "Executing update query: " + query.trim());
         long startTime = System.currentTimeMillis();
         
-        try {
-            // Not needed for MySQL 5.1.x driver 
-            // connection.createStatement().execute("SET @@session.default_authentication_plugin='mysql_native_password'");
-            
-            Statement statement = connection.createStatement();
+        String database = JdbcConnectionPool.usedDatabase(query);
+        try (Connection connection = database != null ? switchDatabase(database) : borrowConnection();
+             Statement statement = connection.createStatement()) {
+            if (database != null) {
+                // All pooled connections switch, not only the borrowed one
+                return 0;
+            }
             int rowsAffected = statement.executeUpdate(query);
+            if (MetadataCache.isSchemaChange(query)) {
+                metadataCache.invalidateAll();
+                resultCache.invalidateAll();
+            } else {
+                resultCache.invalidateWrite(query);
+            }
             long duration = System.currentTimeMillis() - startTime;
             Log.i(TAG, "Update executed successfully. Affected " + rowsAffected + " rows in " + duration + "ms");
-            
-            // Close resources
-            statement.close();
-            
             return rowsAffected;
             
         } catch (SQLException e) {
@@ -459,21 +714,92 @@ public class MySqlNativeDatabaseService implements DatabaseService {
         }
     }
     
+    @Override
+    public BatchResult executeBatch(List<String> statements) throws Exception {
+        Log.d(TAG, "Executing batch of " + statements.size() + " statements");
+        long startTime = System.currentTimeMillis();
+        
+        try (Connection connection = borrowConnection();
+             Statement statement = connection.createStatement()) {
+            boolean schemaChange = false;
+            for (String query : statements) {
+                statement.addBatch(query);
+                schemaChange |= MetadataCache.isSchemaChange(query);
+            }
+            BatchResult result = JdbcBatch.execute(statement, statements.size(), startTime);
+            if (schemaChange) {
+                metadataCache.invalidateAll();
+                resultCache.invalidateAll();
+            } else {
+                for (String query : statements) {
+                    resultCache.invalidateWrite(query);
+                }
+            }
+            Log.i(TAG, "Batch executed: " + result);
+            return result;
+            
+        } catch (SQLException e) {
+            Log.e(TAG, "Error executing batch: " + e.getMessage(), e);
+            throw new Exception("Batch execution failed: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public BatchResult executeBatch(String query, List<Object[]> params) throws Exception {
+        Log.d(TAG, "Executing batch of " + params.size() + " parameter sets: " + query.trim());
+        long startTime = System.currentTimeMillis();
+        
+        try (Connection connection = borrowConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            for (Object[] values : params) {
+                bind(statement, values).addBatch();
+            }
+            BatchResult result = JdbcBatch.execute(statement, params.size(), startTime);
+            resultCache.invalidateWrite(query);
+            Log.i(TAG, "Batch executed: " + result);
+            return result;
+            
+        } catch (SQLException e) {
+            Log.e(TAG, "Error executing batch: " + e.getMessage(), e);
+            
+            if (e.getErrorCode() == 1064) { // Syntax error
+                throw new Exception("SQL syntax error: " + e.getMessage(), e);
+            } else if (e.getErrorCode() == 1146) { // Table doesn't exist
+                throw new Exception("Table not found: " + e.getMessage(), e);
+            }
+            
+            throw new Exception("Batch execution failed: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public Map<String, String> getTableStructure(String table) throws Exception {
+        String database = getCurrentDatabase();
+        return metadataCache.get(MetadataCache.structureKey(database, table),
+                () -> loadTableStructure(database, table));
+    }
+    
+    /**
+     * @param database Database of the table, named in the statement so a background refresh
+     *                 does not depend on the database the pool is switched to
+     */
+    private Map<String, String> loadTableStructure(String database, String table) throws Exception {
         Map<String, String> structure = new HashMap<>();
         
         Log.d(TAG, "Retrieving structure for table: " + table);
         long startTime = System.currentTimeMillis();
         
-        String query = "DESCRIBE " + table;
-        try {
+        String query = "DESCRIBE " + (database != null && !database.isEmpty()
+                ? JdbcPageQuery.quote(database) + "." + JdbcPageQuery.quote(table)
+                : JdbcPageQuery.quote(table));
+        // The statement comes from the pool's statement cache, closing it gives it back
+        try (Connection connection = borrowConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()) {
             // Not needed for MySQL 5.1.x driver 
             // connection.createStatement().execute("SET @@session.default_authentication_plugin='mysql_native_password'");
             
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
-            
+
             while (resultSet.next()) {
                 String fieldName = resultSet.getString("Field");
                 String fieldType = resultSet.getString("Type");
@@ -490,10 +816,6 @@ public class MySqlNativeDatabaseService implements DatabaseService {
             long duration = System.currentTimeMillis() - startTime;
             Log.i(TAG, "Retrieved structure for table '" + table + "' with " + 
                   structure.size() + " columns in " + duration + "ms");
-                  
-            // Close resources
-            resultSet.close();
-            statement.close();
             
         } catch (SQLException e) {
             Log.e(TAG, "Error retrieving table structure: " + e.getMessage(), e);
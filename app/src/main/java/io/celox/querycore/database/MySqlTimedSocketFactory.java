@@ -0,0 +1,19 @@
+package io.celox.querycore.database;
+
+import com.mysql.jdbc.StandardSocketFactory;
+
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Connector/J 5.1 only accepts its own socket factory type, this one hands out the sockets of
+ * {@link TimedSocketFactory} so the connect time is recorded for the connecting thread.
+ * Set through the {@code socketFactory} connection property.
+ */
+public class MySqlTimedSocketFactory extends StandardSocketFactory {
+
+    @Override
+    protected Socket createSocket(Properties props) {
+        return TimedSocketFactory.createThreadTimedSocket();
+    }
+}
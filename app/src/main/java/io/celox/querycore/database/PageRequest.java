@@ -0,0 +1,107 @@
+package io.celox.querycore.database;
+
+/**
+ * One page of a table for {@link DatabaseService#executePage(PageRequest, QueryHandle)}.
+ * Pages are read in key order and continue after the last key of the previous page (keyset pagination),
+ * tables without a single column primary key fall back to OFFSET.
+ * Get the request for the following page from {@link TablePage#nextRequest()}.
+ */
+public class PageRequest {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private final String table;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int pageIndex = 0;
+    private boolean keyResolved = false;
+    private String keyColumn;
+    private Object afterKey;
+    private long offset = 0;
+
+    public PageRequest(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Request for the first page, the service looks up the key column itself
+     */
+    public static PageRequest first(String table) {
+        return new PageRequest(table);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public PageRequest setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Position of the page in the table, pages before it are all full
+     */
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    public PageRequest setPageIndex(int pageIndex) {
+        this.pageIndex = pageIndex;
+        return this;
+    }
+
+    /**
+     * Whether {@link #getKeyColumn()} is known, otherwise the service looks it up
+     */
+    public boolean isKeyResolved() {
+        return keyResolved;
+    }
+
+    /**
+     * The column pages are ordered and continued by, null for OFFSET paging
+     */
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public PageRequest setKeyColumn(String keyColumn) {
+        this.keyColumn = keyColumn;
+        this.keyResolved = true;
+        return this;
+    }
+
+    /**
+     * Last key of the previous page, null for the first page
+     */
+    public Object getAfterKey() {
+        return afterKey;
+    }
+
+    public PageRequest setAfterKey(Object afterKey) {
+        this.afterKey = afterKey;
+        return this;
+    }
+
+    /**
+     * Rows to skip when there is no key column
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public PageRequest setOffset(long offset) {
+        this.offset = Math.max(0, offset);
+        return this;
+    }
+
+    public boolean isKeyset() {
+        return keyColumn != null;
+    }
+}
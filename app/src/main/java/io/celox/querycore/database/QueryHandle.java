@@ -0,0 +1,128 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets another thread stop a running query.
+ * The service executing the query registers how to stop it: {@link #onCancel} actions run right away,
+ * {@link #onCancelTimeout} actions are the last resort and only run if the query has not finished
+ * within the grace period after that.
+ */
+public class QueryHandle {
+
+    private static final String TAG = "QueryHandle";
+
+    public static final long DEFAULT_GRACE_MS = 2000;
+
+    /**
+     * One way of stopping the query, e.g. Statement.cancel()
+     */
+    public interface CancelAction {
+        void cancel() throws Exception;
+    }
+
+    private final long graceMs;
+    private final List<CancelAction> actions = new ArrayList<>();
+    private final List<CancelAction> lastResortActions = new ArrayList<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private boolean cancelled = false;
+
+    public QueryHandle() {
+        this(DEFAULT_GRACE_MS);
+    }
+
+    /**
+     * @param graceMs Time the query gets to stop after the first cancel actions before the last resort runs
+     */
+    public QueryHandle(long graceMs) {
+        this.graceMs = graceMs;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * Register a cancel action, runs at once if the handle was already cancelled
+     */
+    public void onCancel(CancelAction action) {
+        synchronized (this) {
+            if (!cancelled) {
+                actions.add(action);
+                return;
+            }
+        }
+        run(action);
+    }
+
+    /**
+     * Register a last resort, used if the query does not stop after the regular cancel actions
+     */
+    public synchronized void onCancelTimeout(CancelAction action) {
+        lastResortActions.add(action);
+    }
+
+    /**
+     * Called by the owner of the handle once the query call returned, successfully or not
+     */
+    public void finish() {
+        synchronized (this) {
+            actions.clear();
+            lastResortActions.clear();
+        }
+        finished.countDown();
+    }
+
+    /**
+     * Stop the query. Blocks for up to the grace period and may use the network, so never call it on the main thread.
+     */
+    public void cancel() {
+        List<CancelAction> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(actions);
+        }
+        for (CancelAction action : toRun) {
+            run(action);
+        }
+
+        try {
+            if (finished.await(graceMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (this) {
+            toRun = new ArrayList<>(lastResortActions);
+        }
+        Log.w(TAG, "Query still running " + graceMs + "ms after cancel, using " + toRun.size() + " last resort action(s)");
+        for (CancelAction action : toRun) {
+            run(action);
+        }
+    }
+
+    private void run(CancelAction action) {
+        if (isFinished()) {
+            return;
+        }
+        try {
+            action.cancel();
+        } catch (Exception e) {
+            Log.w(TAG, "Cancel action failed: " + e.getMessage());
+        }
+    }
+}
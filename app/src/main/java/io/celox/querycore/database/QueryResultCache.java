@@ -0,0 +1,373 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.celox.querycore.models.QueryResult;
+
+/**
+ * Results of read queries and first table pages of one connection, so showing them again after
+ * navigating back needs no round trip.
+ * Entries are bounded by their estimated heap size and evicted least recently used first. Entries
+ * older than the TTL are still returned but marked stale, the caller shows them and reloads.
+ * A write drops the entries that read the written table, writes to unknown tables drop everything.
+ * Spilled results are never cached, so releasing a cached result is harmless.
+ */
+public class QueryResultCache {
+
+    private static final String TAG = "QueryResultCache";
+
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+    public static final long DEFAULT_TTL_MS = 60 * 1000;
+
+    private static final String NAME = "(`[^`]+`|\\w+)(?:\\s*\\.\\s*(`[^`]+`|\\w+))?";
+
+    // Tables a SELECT reads
+    private static final Pattern READ_TABLE = Pattern.compile(
+            "\\b(?:FROM|JOIN)\\s+" + NAME, Pattern.CASE_INSENSITIVE);
+
+    // FROM a, b lists more tables than READ_TABLE sees
+    private static final Pattern COMMA_JOIN = Pattern.compile(
+            "\\bFROM\\s+" + NAME + "(?:\\s+(?:AS\\s+)?\\w+)?\\s*,", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern READ_STATEMENT = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(SELECT|SHOW|DESCRIBE|DESC|EXPLAIN)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    // SHOW statements listing the schema, the others report server state that changes by itself
+    private static final Pattern SCHEMA_SHOW = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*SHOW\\s+(?:(?:FULL\\s+)?(?:DATABASES|SCHEMAS|TABLES|COLUMNS|FIELDS)"
+            + "|INDEX|INDEXES|KEYS|CREATE)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    // Reads whose result differs on every run, take locks, write or run the query (EXPLAIN ANALYZE)
+    private static final Pattern VOLATILE_READ = Pattern.compile(
+            "\\b(?:NOW|SYSDATE|CURDATE|CURTIME|UTC_DATE|UTC_TIME|UTC_TIMESTAMP|UNIX_TIMESTAMP|RAND|RANDOM_BYTES"
+            + "|UUID|UUID_SHORT|CONNECTION_ID|LAST_INSERT_ID|ROW_COUNT|FOUND_ROWS|USER|SESSION_USER|SYSTEM_USER"
+            + "|SLEEP|BENCHMARK|GET_LOCK|RELEASE_LOCK|IS_FREE_LOCK|IS_USED_LOCK|NEXTVAL|LASTVAL)\\s*\\("
+            + "|\\b(?:CURRENT_DATE|CURRENT_TIME|CURRENT_TIMESTAMP|LOCALTIME|LOCALTIMESTAMP|CURRENT_USER)\\b"
+            + "|@|\\bFOR\\s+(?:UPDATE|SHARE)\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b|\\bINTO\\b|\\bANALYZE\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    // The same for pipelines and query documents
+    private static final Pattern VOLATILE_DOCUMENT = Pattern.compile(
+            "\\$sample|\\$rand|\\$\\$NOW|\\$\\$CLUSTER_TIME|\\$currentOp|\\$listSessions|\\$out|\\$merge");
+
+    // The single table a write changes
+    private static final Pattern WRITE_TABLE = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(?:INSERT\\s+(?:IGNORE\\s+)?(?:INTO\\s+)?|REPLACE\\s+(?:INTO\\s+)?"
+            + "|UPDATE\\s+(?:IGNORE\\s+)?|DELETE\\s+(?:IGNORE\\s+)?FROM\\s+|TRUNCATE\\s+(?:TABLE\\s+)?)" + NAME,
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern MULTI_TABLE = Pattern.compile("\\bJOIN\\b|\\bUSING\\b", Pattern.CASE_INSENSITIVE);
+
+    // Pipeline stages reading a second collection
+    private static final Set<String> FOREIGN_STAGES = new HashSet<>(
+            Arrays.asList("$lookup", "$graphLookup", "$unionWith"));
+
+    /**
+     * A cached value and whether it is older than the TTL
+     */
+    public static class Cached<T> {
+        private final T value;
+        private final boolean stale;
+
+        Cached(T value, boolean stale) {
+            this.value = value;
+            this.stale = stale;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Whether the value should be shown but reloaded
+         */
+        public boolean isStale() {
+            return stale;
+        }
+    }
+
+    private static class Entry {
+        final Object value;
+        final long bytes;
+        final long loadedAt;
+        // Lower-case table names, null if the query could read any table
+        final Set<String> tables;
+
+        Entry(Object value, long bytes, Set<String> tables) {
+            this.value = value;
+            this.bytes = bytes;
+            this.loadedAt = System.currentTimeMillis();
+            this.tables = tables;
+        }
+    }
+
+    private final boolean documentQueries;
+    private final long maxBytes;
+    private final long ttlMs;
+    // Access order, the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    // Bumped by every invalidation, so a load started before it does not store what it read
+    private long generation = 0;
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * @param documentQueries Whether queries are MongoDB query documents instead of SQL
+     * @param maxBytes Estimated heap all cached results may use together
+     * @param ttlMs Age after which a cached result is reported stale
+     */
+    public QueryResultCache(boolean documentQueries, long maxBytes, long ttlMs) {
+        this.documentQueries = documentQueries;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlMs;
+    }
+
+    public static QueryResultCache forSql() {
+        return new QueryResultCache(false, DEFAULT_MAX_BYTES, DEFAULT_TTL_MS);
+    }
+
+    public static QueryResultCache forDocuments() {
+        return new QueryResultCache(true, DEFAULT_MAX_BYTES, DEFAULT_TTL_MS);
+    }
+
+    /**
+     * Key of a query, equal for queries that only differ in whitespace outside of quotes
+     * or in a trailing semicolon
+     */
+    public static String queryKey(String database, String query) {
+        return "query:" + database + "\u0000" + normalize(query);
+    }
+
+    /**
+     * Key of the first page of a table
+     */
+    public static String pageKey(String database, String table, int pageSize) {
+        return "page:" + database + "\u0000" + table + "\u0000" + pageSize;
+    }
+
+    static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (quote != 0) {
+                normalized.append(c);
+                if (c == '\\' && i + 1 < query.length()) {
+                    normalized.append(query.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                normalized.append(c);
+            }
+        }
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == ';') {
+            end--;
+        }
+        return normalized.substring(0, end).trim();
+    }
+
+    /**
+     * Whether a query only reads and running it again gives the same result until a write,
+     * so its result may be cached
+     */
+    public boolean isCacheable(String query) {
+        if (documentQueries) {
+            return !VOLATILE_DOCUMENT.matcher(query).find();
+        }
+        Matcher matcher = READ_STATEMENT.matcher(query);
+        if (!matcher.find() || VOLATILE_READ.matcher(query).find()) {
+            return false;
+        }
+        return !matcher.group(1).equalsIgnoreCase("SHOW") || SCHEMA_SHOW.matcher(query).find();
+    }
+
+    /**
+     * Tables or collections a query reads
+     * @return Lower-case names, null if they cannot be told from the query
+     */
+    public Set<String> referencedTables(String query) {
+        if (documentQueries) {
+            return referencedCollections(query);
+        }
+        if (COMMA_JOIN.matcher(query).find()) {
+            return null;
+        }
+        Set<String> tables = new HashSet<>();
+        Matcher matcher = READ_TABLE.matcher(query);
+        while (matcher.find()) {
+            tables.add(tableName(matcher));
+        }
+        // SHOW and DESCRIBE without FROM, or reads through subqueries only
+        return tables.isEmpty() ? null : tables;
+    }
+
+    private static Set<String> referencedCollections(String query) {
+        BasicDBObject queryDocument;
+        try {
+            queryDocument = BasicDBObject.parse(query);
+        } catch (Exception e) {
+            return null;
+        }
+        String collection = queryDocument.getString("collection");
+        Object pipeline = queryDocument.get("aggregate");
+        if (collection == null) {
+            return null;
+        }
+        if (pipeline instanceof List) {
+            for (Object stage : (List<?>) pipeline) {
+                if (stage instanceof DBObject) {
+                    for (String operator : ((DBObject) stage).keySet()) {
+                        if (FOREIGN_STAGES.contains(operator)) {
+                            return null;
+                        }
+                    }
+                }
+            }
+        }
+        return Collections.singleton(collection.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return The table a write statement changes in lower case, null if unknown or several
+     */
+    static String writtenTable(String statement) {
+        Matcher matcher = WRITE_TABLE.matcher(statement);
+        if (!matcher.find() || MULTI_TABLE.matcher(statement).find()) {
+            return null;
+        }
+        return tableName(matcher);
+    }
+
+    private static String tableName(Matcher matcher) {
+        // Qualified names are matched by table only, which at worst drops a few entries too many
+        String name = matcher.group(2) != null ? matcher.group(2) : matcher.group(1);
+        return name.replace("`", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The cached value, null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> Cached<T> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new Cached<>((T) entry.value, System.currentTimeMillis() - entry.loadedAt >= ttlMs);
+    }
+
+    /**
+     * Generation to pass to {@link #put}, read before the value is loaded
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache a value unless it was invalidated while loading, is spilled or larger than the whole cache
+     * @param key The query or page key
+     * @param value The result or the page holding rows
+     * @param rows The rows of the value, their size counts against the bound
+     * @param tables Tables the value was read from, null if unknown
+     * @param loadGeneration {@link #getGeneration()} from before the load
+     * @return Whether the value was cached
+     */
+    public synchronized boolean put(String key, Object value, QueryResult rows, Set<String> tables,
+                                    long loadGeneration) {
+        if (loadGeneration != generation || rows.isSpilled()) {
+            return false;
+        }
+        long bytes = rows.estimatedBytes();
+        if (bytes > maxBytes) {
+            return false;
+        }
+        Entry previous = entries.put(key, new Entry(value, bytes, tables));
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        totalBytes += bytes;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().bytes;
+            eldest.remove();
+        }
+        return true;
+    }
+
+    /**
+     * Drop the entries a SQL write statement may have changed
+     */
+    public void invalidateWrite(String statement) {
+        String table = writtenTable(statement);
+        if (table != null) {
+            invalidateTable(table);
+        } else {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Drop the entries that read a table or collection, and those whose tables are unknown
+     */
+    public synchronized void invalidateTable(String table) {
+        generation++;
+        String name = table.toLowerCase(Locale.ROOT);
+        Iterator<Entry> iterator = entries.values().iterator();
+        int dropped = 0;
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.tables == null || entry.tables.contains(name)) {
+                totalBytes -= entry.bytes;
+                iterator.remove();
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            Log.d(TAG, "Write to " + table + " dropped " + dropped + " cached results");
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryResultCache{entries=" + entries.size() + ", bytes=" + totalBytes
+                + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+}
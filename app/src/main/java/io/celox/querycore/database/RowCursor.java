@@ -0,0 +1,53 @@
+package io.celox.querycore.database;
+
+import java.util.List;
+
+import io.celox.querycore.models.QueryResult;
+import io.celox.querycore.models.ResultColumn;
+
+/**
+ * Pull-based, forward-only iterator over the rows of a query.
+ * Rows are fetched from the server in batches of {@link CursorOptions#getFetchSize()}, so memory
+ * stays constant regardless of the result size. A cursor keeps server resources open until it is
+ * closed; closing before the last row stops the transfer without draining the remaining rows.
+ */
+public interface RowCursor extends AutoCloseable {
+
+    /**
+     * Columns of the result. For MongoDB these are the fields seen so far and grow while reading.
+     */
+    List<ResultColumn> getColumns();
+
+    /**
+     * Advance to the next row
+     * @return false once all rows have been read
+     */
+    boolean next() throws Exception;
+
+    /**
+     * Get a value of the current row
+     * @param column The column index in {@link #getColumns()}
+     */
+    Object getValue(int column) throws Exception;
+
+    /**
+     * Read up to maxRows further rows directly into a result builder.
+     * The first call for a builder declares the columns on it, so pass a new builder each time
+     * a new result should be started.
+     * @return The number of rows appended, 0 once the cursor is exhausted
+     */
+    int fetchInto(QueryResult.Builder builder, int maxRows) throws Exception;
+
+    /**
+     * Number of rows read so far
+     */
+    int getRowsRead();
+
+    /**
+     * Whether the last row has been read
+     */
+    boolean isExhausted();
+
+    @Override
+    void close();
+}
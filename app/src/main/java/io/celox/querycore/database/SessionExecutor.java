@@ -0,0 +1,228 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the operations of one session one after another in the order they were submitted,
+ * for operations whose order matters, like writes that build on each other.
+ * Callers may submit several operations without waiting for each, they run back to back on the
+ * {@link DatabaseTaskScheduler} lane of each operation, never on more than one thread at a time.
+ */
+public class SessionExecutor {
+
+    private static final String TAG = "SessionExecutor";
+
+    // Submitted operations waiting at most, more are rejected like a full scheduler lane
+    public static final int DEFAULT_CAPACITY = 32;
+
+    // Delay before offering an operation to its lane again after the lane rejected it
+    static final long RETRY_DELAY_MS = 100;
+
+    // Re-offers operations their full lane rejected, for all sessions
+    private static final ScheduledExecutorService RETRY = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-executor-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Snapshot of the executor's counters
+     */
+    public static class Stats {
+        public final int queued;
+        public final int maxQueued;
+        public final long completed;
+        public final long totalWaitMs;
+        public final long maxWaitMs;
+
+        Stats(int queued, int maxQueued, long completed, long totalWaitMs, long maxWaitMs) {
+            this.queued = queued;
+            this.maxQueued = maxQueued;
+            this.completed = completed;
+            this.totalWaitMs = totalWaitMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        /**
+         * Average time from submitting to starting an operation
+         */
+        public long getAverageWaitMs() {
+            return completed > 0 ? totalWaitMs / completed : 0;
+        }
+
+        @Override
+        public String toString() {
+            return queued + " queued (max " + maxQueued + "), " + completed + " completed, wait "
+                    + getAverageWaitMs() + "ms avg / " + maxWaitMs + "ms max";
+        }
+    }
+
+    private static class Operation<T> {
+        final DatabaseTaskScheduler.Lane lane;
+        final Callable<T> call;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long submittedAt = System.nanoTime();
+
+        Operation(DatabaseTaskScheduler.Lane lane, Callable<T> call) {
+            this.lane = lane;
+            this.call = call;
+        }
+
+        void run() {
+            try {
+                future.complete(call.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final String name;
+    private final Object connection;
+    private final DatabaseTaskScheduler scheduler;
+    private final int capacity;
+    private final ArrayDeque<Operation<?>> mailbox = new ArrayDeque<>();
+    // Whether an operation is running or scheduled to run
+    private boolean active = false;
+    private boolean shutdown = false;
+
+    private int maxQueued = 0;
+    private long completed = 0;
+    private long totalWaitMs = 0;
+    private long maxWaitMs = 0;
+
+    /**
+     * @param name Name used in logs, usually the connection name
+     * @param connection Key of the connection in the scheduler, shared with its other work
+     * @param scheduler Runs the operations
+     * @param capacity Operations waiting at most
+     */
+    public SessionExecutor(String name, Object connection, DatabaseTaskScheduler scheduler, int capacity) {
+        this.name = name;
+        this.connection = connection;
+        this.scheduler = scheduler;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queue an operation behind those submitted before it
+     * @param lane Lane of the scheduler the operation runs on
+     * @param call The operation
+     * @return Completes with the operation's result or failure
+     * @throws RejectedExecutionException if too many operations are waiting or the session was closed
+     */
+    public <T> CompletableFuture<T> submit(DatabaseTaskScheduler.Lane lane, Callable<T> call) {
+        Operation<T> operation = new Operation<>(lane, call);
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("The connection was closed");
+            }
+            if (mailbox.size() >= capacity) {
+                Log.w(TAG, "Rejected operation of " + name + ", " + capacity + " operations are already waiting");
+                throw new RejectedExecutionException("Too many pending operations on this connection, "
+                        + "try again in a moment");
+            }
+            if (!active) {
+                // Scheduled under the lock, so nothing queues behind an operation that was rejected.
+                // The scheduler never calls back into this executor on the submitting thread.
+                scheduler.execute(lane, connection, this::runHead);
+                active = true;
+            }
+            mailbox.addLast(operation);
+            maxQueued = Math.max(maxQueued, mailbox.size());
+        }
+        return operation.future;
+    }
+
+    /**
+     * Queue an operation whose result is not needed. Its failure is only logged.
+     * @throws RejectedExecutionException if too many operations are waiting or the session was closed
+     */
+    public void execute(DatabaseTaskScheduler.Lane lane, Runnable work) {
+        submit(lane, () -> {
+            work.run();
+            return null;
+        }).whenComplete((result, failure) -> {
+            if (failure != null) {
+                Log.e(TAG, "Operation of " + name + " failed: " + failure.getMessage(), failure);
+            }
+        });
+    }
+
+    /**
+     * Offer the next operation to its lane, called from the thread that ran the previous one
+     */
+    private void scheduleNext(Operation<?> next) {
+        try {
+            scheduler.execute(next.lane, connection, this::runHead);
+        } catch (RejectedExecutionException e) {
+            // The lane is full, but this operation was accepted and everything behind it waits for it
+            Log.w(TAG, "Lane full, offering operation of " + name + " again in " + RETRY_DELAY_MS + "ms");
+            RETRY.schedule(() -> scheduleNext(next), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runHead() {
+        Operation<?> operation;
+        boolean closed;
+        synchronized (this) {
+            operation = mailbox.peekFirst();
+            closed = shutdown;
+            long waitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - operation.submittedAt);
+            totalWaitMs += waitMs;
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+        }
+        if (closed) {
+            // Handed to the lane before the session closed, but must not touch the closed service
+            operation.future.completeExceptionally(new RejectedExecutionException("The connection was closed"));
+        } else {
+            operation.run();
+        }
+
+        Operation<?> next;
+        synchronized (this) {
+            mailbox.pollFirst();
+            completed++;
+            next = mailbox.peekFirst();
+            active = next != null;
+        }
+        if (next != null) {
+            scheduleNext(next);
+        }
+    }
+
+    /**
+     * Fail all waiting operations and reject new ones. The running one finishes, one that was
+     * handed to its lane but has not started fails when it would start.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            // Keep the running head, runHead removes it
+            while (mailbox.size() > (active ? 1 : 0)) {
+                mailbox.pollLast().future.completeExceptionally(
+                        new RejectedExecutionException("The connection was closed"));
+            }
+        }
+    }
+
+    /**
+     * @return Queue depth and wait times of the session's operations
+     */
+    public synchronized Stats getStats() {
+        return new Stats(mailbox.size(), maxQueued, completed, totalWaitMs, maxWaitMs);
+    }
+
+    @Override
+    public String toString() {
+        return "SessionExecutor[" + name + "]: " + getStats();
+    }
+}
@@ -0,0 +1,81 @@
+package io.celox.querycore.database;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs identical calls only once while they overlap: a call made while another one with the same key
+ * is still running waits for that one and gets its result or failure instead of loading again.
+ * Calls after it finished load again, caching is up to the caller.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * @param key Identifies the call, e.g. operation and arguments
+     * @param call Runs on this thread unless an identical call is in flight
+     * @return The result of this call or of the one it joined
+     * @throws Exception The failure of this call or of the one it joined
+     */
+    public V run(K key, Callable<V> call) throws Exception {
+        calls.incrementAndGet();
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return join(existing);
+        }
+        try {
+            V value = call.call();
+            flight.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private V join(CompletableFuture<V> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            // Only this caller gives up, the call it joined keeps running for the others
+            Thread.currentThread().interrupt();
+            throw new Exception("Interrupted while waiting for an identical call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Number of calls made, including those that joined another one
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Number of calls that joined an identical call in flight instead of running themselves
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{calls=" + calls.get() + ", shared=" + shared.get()
+                + ", inFlight=" + inFlight.size() + "}";
+    }
+}
@@ -0,0 +1,190 @@
+package io.celox.querycore.database;
+
+import android.util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Prepared statements of one physical connection, kept open for reuse in least recently used order.
+ * With server-side prepared statements a cache hit skips sending and parsing the SQL again.
+ * Callers close statements as usual, closing only returns them to the cache.
+ * Not thread safe, a connection is used by one borrower at a time.
+ */
+class StatementCache {
+
+    private static final String TAG = "StatementCache";
+
+    /**
+     * Receives hits and misses, the pool sums them over all its connections
+     */
+    interface Counter {
+        void count(boolean hit);
+    }
+
+    private static class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Counter counter;
+    // Access order, the eldest entry is the least recently prepared one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param physical The connection statements are prepared on
+     * @param maxSize Statements kept open at most
+     * @param counter Receives hits and misses
+     */
+    StatementCache(Connection physical, int maxSize, Counter counter) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.counter = counter;
+    }
+
+    /**
+     * Return the cached statement for the SQL or prepare it.
+     * If the cached statement is still open by an earlier caller a separate, uncached statement is prepared.
+     * @param catalog Database the connection is switched to, statements resolve unqualified tables against it
+     * @param sql The statement
+     */
+    PreparedStatement prepare(String catalog, String sql) throws SQLException {
+        String key = catalog + "\u0000" + sql;
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            counter.count(true);
+            entry.inUse = true;
+            return wrap(entry);
+        }
+
+        counter.count(false);
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (entry != null) {
+            return statement;
+        }
+        entry = new Entry(statement);
+        entry.inUse = true;
+        entries.put(key, entry);
+        evictOverflow();
+        return wrap(entry);
+    }
+
+    /**
+     * Close all statements, when the connection is closed or discarded
+     */
+    void clear() {
+        for (Entry entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        List<Entry> evicted = new ArrayList<>();
+        while (entries.size() - evicted.size() > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            evicted.add(eldest);
+        }
+        for (Entry entry : evicted) {
+            if (entry.inUse) {
+                // Closed once its caller is done with it
+                entry.evicted = true;
+            } else {
+                closeQuietly(entry.statement);
+            }
+        }
+    }
+
+    private void giveBack(Entry entry) throws SQLException {
+        entry.inUse = false;
+        if (entry.evicted) {
+            entry.statement.close();
+            return;
+        }
+        try {
+            // Leave nothing of this use behind for the next caller
+            ResultSet resultSet = entry.statement.getResultSet();
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+        } catch (SQLException e) {
+            Log.d(TAG, "Dropping statement that could not be reset: " + e.getMessage());
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private PreparedStatement wrap(Entry entry) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Use(entry));
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Log.d(TAG, "Error closing statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One caller's use of a cached statement, close() gives it back instead of closing it
+     */
+    private class Use implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed = false;
+
+        Use(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        giveBack(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement was closed");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
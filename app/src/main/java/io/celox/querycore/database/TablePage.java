@@ -0,0 +1,77 @@
+package io.celox.querycore.database;
+
+import io.celox.querycore.models.QueryResult;
+
+/**
+ * The rows of one page and where the next page starts
+ */
+public class TablePage {
+
+    private final PageRequest request;
+    private final QueryResult rows;
+    private final String keyColumn;
+    private final Object lastKey;
+
+    /**
+     * @param request The request this page answers
+     * @param rows The rows of the page
+     * @param keyColumn The key column the service used, null for OFFSET paging
+     * @param lastKey Key of the last row, null if the page is empty or has no key
+     */
+    public TablePage(PageRequest request, QueryResult rows, String keyColumn, Object lastKey) {
+        this.request = request;
+        this.rows = rows;
+        this.keyColumn = keyColumn;
+        this.lastKey = lastKey;
+    }
+
+    public PageRequest getRequest() {
+        return request;
+    }
+
+    public QueryResult getRows() {
+        return rows;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * Number of the first row in the table, counting from 0
+     */
+    public long getFirstRow() {
+        return (long) request.getPageIndex() * request.getPageSize();
+    }
+
+    /**
+     * A short page is the last one, a full page may be followed by an empty one
+     */
+    public boolean hasMore() {
+        return rows.getRowCount() >= request.getPageSize();
+    }
+
+    /**
+     * @return The request for the page after this one, null if this was the last page
+     */
+    public PageRequest nextRequest() {
+        if (!hasMore()) {
+            return null;
+        }
+        PageRequest next = new PageRequest(request.getTable())
+                .setPageSize(request.getPageSize())
+                .setPageIndex(request.getPageIndex() + 1)
+                .setKeyColumn(keyColumn);
+        if (keyColumn != null && lastKey != null) {
+            next.setAfterKey(lastKey);
+        } else {
+            // A row without key cannot be continued after, count rows instead
+            next.setKeyColumn(null).setOffset(getFirstRow() + rows.getRowCount());
+        }
+        return next;
+    }
+}
@@ -0,0 +1,105 @@
+package io.celox.querycore.database;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+import javax.net.SocketFactory;
+
+/**
+ * Socket factory that measures how long the TCP connect of each socket takes, so the connect
+ * phase can be told apart from the handshake that follows it.
+ * Drivers that instantiate the factory from a class name use the no-argument constructor, which
+ * records the time for the connecting thread, read it back with {@link #takeThreadConnectMs()}.
+ */
+public class TimedSocketFactory extends SocketFactory {
+
+    /**
+     * Receives the duration of every socket connect
+     */
+    public interface ConnectListener {
+        void onSocketConnected(long durationMs);
+    }
+
+    private static final ThreadLocal<Long> THREAD_CONNECT_MS = new ThreadLocal<>();
+
+    private static final ConnectListener THREAD_RECORDER = THREAD_CONNECT_MS::set;
+
+    private final ConnectListener listener;
+
+    public TimedSocketFactory() {
+        this(THREAD_RECORDER);
+    }
+
+    public TimedSocketFactory(ConnectListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get and clear the connect time recorded on this thread by the no-argument factory
+     * @return The duration in milliseconds, or -1 if no socket connected on this thread
+     */
+    public static long takeThreadConnectMs() {
+        Long durationMs = THREAD_CONNECT_MS.get();
+        THREAD_CONNECT_MS.remove();
+        return durationMs != null ? durationMs : -1;
+    }
+
+    /**
+     * Create an unconnected socket that reports its connect time to the calling thread
+     */
+    static Socket createThreadTimedSocket() {
+        return new TimedSocket(THREAD_RECORDER);
+    }
+
+    @Override
+    public Socket createSocket() {
+        return new TimedSocket(listener);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return connected(new InetSocketAddress(host, port), null);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return connected(new InetSocketAddress(host, port), new InetSocketAddress(localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return connected(new InetSocketAddress(host, port), null);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return connected(new InetSocketAddress(address, port), new InetSocketAddress(localAddress, localPort));
+    }
+
+    private Socket connected(SocketAddress remote, SocketAddress local) throws IOException {
+        Socket socket = createSocket();
+        if (local != null) {
+            socket.bind(local);
+        }
+        socket.connect(remote);
+        return socket;
+    }
+
+    private static class TimedSocket extends Socket {
+        private final ConnectListener listener;
+
+        TimedSocket(ConnectListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            long start = System.currentTimeMillis();
+            super.connect(endpoint, timeout);
+            listener.onSocketConnected(System.currentTimeMillis() - start);
+        }
+    }
+}
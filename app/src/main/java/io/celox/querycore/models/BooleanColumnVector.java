@@ -0,0 +1,49 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+
+/**
+ * Column of boolean values (BOOLEAN, BIT(1))
+ */
+public class BooleanColumnVector extends ColumnVector {
+
+    private boolean[] values = new boolean[INITIAL_CAPACITY];
+
+    public boolean getBoolean(int row) {
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    public void appendBoolean(boolean value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length, size + 1));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public void appendNull() {
+        markNull(size);
+        appendBoolean(false);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return size + nullBitmapBytes();
+    }
+
+    @Override
+    public void appendObject(Object value) {
+        if (value == null) {
+            appendNull();
+        } else if (value instanceof Boolean) {
+            appendBoolean((Boolean) value);
+        } else {
+            throw unsupported(value, "BOOLEAN");
+        }
+    }
+}
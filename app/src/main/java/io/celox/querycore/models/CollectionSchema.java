@@ -0,0 +1,146 @@
+package io.celox.querycore.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fields of a schemaless collection as seen in a sample of its documents.
+ * Nested fields are listed by dotted path next to their parent.
+ */
+public class CollectionSchema {
+
+    /**
+     * One field path with how often it was present and with which types
+     */
+    public static class Field {
+        private final String path;
+        private final int depth;
+        private int count;
+        // Type name to occurrences, in order of first sight
+        private final Map<String, Integer> typeCounts = new LinkedHashMap<>();
+
+        Field(String path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * 0 for top-level fields, which are the result columns
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Number of sampled documents containing the field
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public Map<String, Integer> getTypeCounts() {
+            return Collections.unmodifiableMap(typeCounts);
+        }
+
+        /**
+         * Type names ordered by how often they occurred, most frequent first
+         */
+        public List<String> getTypes() {
+            List<String> types = new ArrayList<>(typeCounts.keySet());
+            types.sort((a, b) -> typeCounts.get(b) - typeCounts.get(a));
+            return types;
+        }
+
+        /**
+         * The single type name, or all types joined with | for fields of mixed type
+         */
+        public String getTypeSummary() {
+            return String.join("|", getTypes());
+        }
+    }
+
+    private final int sampleSize;
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+
+    /**
+     * @param sampleSize Number of documents the schema was inferred from
+     */
+    public CollectionSchema(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Count one occurrence of a field in a sampled document
+     * @param path Dotted field path
+     * @param depth Nesting depth of the path, 0 for top-level fields
+     * @param typeName Type of the value in this document
+     */
+    public void record(String path, int depth, String typeName) {
+        Field field = fields.get(path);
+        if (field == null) {
+            field = new Field(path, depth);
+            fields.put(path, field);
+        }
+        field.count++;
+        Integer typeCount = field.typeCounts.get(typeName);
+        field.typeCounts.put(typeName, typeCount != null ? typeCount + 1 : 1);
+    }
+
+    public Field getField(String path) {
+        return fields.get(path);
+    }
+
+    /**
+     * All field paths, top-level and nested
+     */
+    public List<Field> getFields() {
+        return new ArrayList<>(fields.values());
+    }
+
+    /**
+     * Share of sampled documents containing the field, 0 to 1
+     */
+    public double getPresence(String path) {
+        Field field = fields.get(path);
+        return field != null && sampleSize > 0 ? (double) field.count / sampleSize : 0;
+    }
+
+    /**
+     * Top-level fields to their types, in an order that does not depend on which documents were drawn:
+     * _id first, then the most common fields, ties by name
+     */
+    public Map<String, String> getStructure() {
+        List<Field> columns = new ArrayList<>();
+        for (Field field : fields.values()) {
+            if (field.depth == 0) {
+                columns.add(field);
+            }
+        }
+        columns.sort((a, b) -> {
+            if (a.path.equals("_id") || b.path.equals("_id")) {
+                return a.path.equals("_id") ? -1 : 1;
+            }
+            if (a.count != b.count) {
+                return b.count - a.count;
+            }
+            return a.path.compareTo(b.path);
+        });
+
+        Map<String, String> structure = new LinkedHashMap<>();
+        for (Field field : columns) {
+            structure.put(field.path, field.getTypeSummary());
+        }
+        return structure;
+    }
+}
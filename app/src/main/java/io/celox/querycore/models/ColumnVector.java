@@ -0,0 +1,93 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+
+/**
+ * Append-only storage for the values of one result column.
+ * Primitive subclasses keep their values unboxed and track SQL NULL in a bitmap,
+ * {@link ObjectColumnVector} is the fallback for every other type.
+ */
+public abstract class ColumnVector {
+
+    protected static final int INITIAL_CAPACITY = 64;
+
+    protected int size = 0;
+    private long[] nulls = new long[1];
+
+    /**
+     * Number of values appended so far
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        int word = row >>> 6;
+        // The bitmap only grows when a null is stored
+        return word < nulls.length && (nulls[word] & (1L << row)) != 0;
+    }
+
+    /**
+     * Get a value as object, boxing primitives. Only meant for cells that are actually displayed.
+     */
+    public abstract Object get(int row);
+
+    /**
+     * Get a value as display text
+     * @return The text, or null for a null value
+     */
+    public String getText(int row) {
+        return isNull(row) ? null : String.valueOf(get(row));
+    }
+
+    /**
+     * Append a value of any type, converting boxed numbers to the vector's primitive type
+     * @throws IllegalArgumentException if the value cannot be stored in this vector
+     */
+    public abstract void appendObject(Object value);
+
+    public abstract void appendNull();
+
+    /**
+     * Approximate heap size of the stored values, used to decide when a result spills to disk
+     */
+    public abstract long estimatedBytes();
+
+    /**
+     * Drop all values but keep the allocated capacity, so the vector can buffer the next rows
+     */
+    public void clear() {
+        Arrays.fill(nulls, 0L);
+        size = 0;
+    }
+
+    /**
+     * Append the given number of nulls, used to backfill a column that was discovered late
+     */
+    public void appendNulls(int count) {
+        for (int i = 0; i < count; i++) {
+            appendNull();
+        }
+    }
+
+    protected void markNull(int row) {
+        int word = row >>> 6;
+        if (word >= nulls.length) {
+            nulls = Arrays.copyOf(nulls, Math.max(word + 1, nulls.length * 2));
+        }
+        nulls[word] |= 1L << row;
+    }
+
+    protected long nullBitmapBytes() {
+        return (long) nulls.length * 8;
+    }
+
+    protected static int grow(int capacity, int required) {
+        return Math.max(required, capacity + (capacity >> 1));
+    }
+
+    protected static IllegalArgumentException unsupported(Object value, String vectorType) {
+        return new IllegalArgumentException("Cannot store " + value.getClass().getSimpleName()
+                + " in " + vectorType + " column");
+    }
+}
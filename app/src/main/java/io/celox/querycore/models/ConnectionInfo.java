@@ -1,6 +1,7 @@
 package io.celox.querycore.models;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 public class ConnectionInfo implements Serializable {
     public enum DatabaseType {
@@ -9,6 +10,8 @@ public class ConnectionInfo implements Serializable {
         MONGODB
     }
     
+    // Id of the saved connection, 0 for connections that are not saved
+    private int id;
     private String name;
     private DatabaseType type;
     private String host;
@@ -16,6 +19,8 @@ public class ConnectionInfo implements Serializable {
     private String database;
     private String username;
     private String password;
+    // Auth mechanism that worked last time, tried first on the next connect
+    private String authMechanism;
     
     public ConnectionInfo() {
     }
@@ -31,6 +36,14 @@ public class ConnectionInfo implements Serializable {
     }
     
     // Getters and setters
+    public int getId() {
+        return id;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
     public String getName() {
         return name;
     }
@@ -87,6 +100,29 @@ public class ConnectionInfo implements Serializable {
         this.password = password;
     }
     
+    public String getAuthMechanism() {
+        return authMechanism;
+    }
+    
+    public void setAuthMechanism(String authMechanism) {
+        this.authMechanism = authMechanism;
+    }
+    
+    /**
+     * Whether a connection opened with the other settings would reach the same server as the same user
+     * @param other The settings to compare with
+     * @return true if type, address, database and credentials are equal
+     */
+    public boolean hasSameSettings(ConnectionInfo other) {
+        return other != null
+                && type == other.type
+                && port == other.port
+                && Objects.equals(host, other.host)
+                && Objects.equals(database, other.database)
+                && Objects.equals(username, other.username)
+                && Objects.equals(password, other.password);
+    }
+    
     public String getDefaultPort() {
         switch (type) {
             case MYSQL:
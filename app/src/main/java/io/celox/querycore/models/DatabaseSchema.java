@@ -0,0 +1,172 @@
+package io.celox.querycore.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tables of one database with their columns, keys, indexes and estimated row counts
+ */
+public class DatabaseSchema {
+
+    /**
+     * Column of a table, in table order
+     */
+    public static class Column {
+        private final String name;
+        private final String type;
+        private final boolean nullable;
+        private final String key;
+
+        /**
+         * @param name Column name
+         * @param type Full type as in DESCRIBE, e.g. varchar(255) or the BSON type name
+         * @param nullable Whether the column accepts NULL
+         * @param key PRI, UNI, MUL or empty, like the Key column of DESCRIBE
+         */
+        public Column(String name, String type, boolean nullable, String key) {
+            this.name = name;
+            this.type = type;
+            this.nullable = nullable;
+            this.key = key != null ? key : "";
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isNullable() {
+            return nullable;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isPrimaryKey() {
+            return "PRI".equals(key);
+        }
+    }
+
+    /**
+     * Index of a table with its columns in index order
+     */
+    public static class Index {
+        private final String name;
+        private final boolean unique;
+        private final List<String> columns = new ArrayList<>();
+
+        public Index(String name, boolean unique) {
+            this.name = name;
+            this.unique = unique;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUnique() {
+            return unique;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        public void addColumn(String column) {
+            columns.add(column);
+        }
+    }
+
+    public static class Table {
+        private final String name;
+        private final long estimatedRows;
+        private final List<Column> columns = new ArrayList<>();
+        private final Map<String, Index> indexes = new LinkedHashMap<>();
+
+        /**
+         * @param name Table name
+         * @param estimatedRows Row count estimated by the server, -1 if unknown
+         */
+        public Table(String name, long estimatedRows) {
+            this.name = name;
+            this.estimatedRows = estimatedRows;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getEstimatedRows() {
+            return estimatedRows;
+        }
+
+        public List<Column> getColumns() {
+            return columns;
+        }
+
+        public void addColumn(Column column) {
+            columns.add(column);
+        }
+
+        public List<Index> getIndexes() {
+            return new ArrayList<>(indexes.values());
+        }
+
+        /**
+         * @return The index with this name, created if the table does not have it yet
+         */
+        public Index index(String indexName, boolean unique) {
+            Index index = indexes.get(indexName);
+            if (index == null) {
+                index = new Index(indexName, unique);
+                indexes.put(indexName, index);
+            }
+            return index;
+        }
+
+        /**
+         * Column name to type in table order, the format of DatabaseService.getTableStructure
+         */
+        public Map<String, String> getStructure() {
+            Map<String, String> structure = new LinkedHashMap<>();
+            for (Column column : columns) {
+                structure.put(column.getName(), column.getType());
+            }
+            return structure;
+        }
+    }
+
+    private final String database;
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+
+    public DatabaseSchema(String database) {
+        this.database = database;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public List<Table> getTables() {
+        return new ArrayList<>(tables.values());
+    }
+
+    public Table getTable(String name) {
+        return tables.get(name);
+    }
+
+    public List<String> getTableNames() {
+        return Collections.unmodifiableList(new ArrayList<>(tables.keySet()));
+    }
+
+    public void addTable(Table table) {
+        tables.put(table.getName(), table);
+    }
+}
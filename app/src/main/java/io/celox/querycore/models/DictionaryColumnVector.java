@@ -0,0 +1,109 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column of strings stored as int codes into a dictionary of distinct values.
+ * Meant for low-cardinality columns (status, country, ENUM, ...) where the same few values repeat
+ * across many rows: every row costs 4 bytes and all rows with the same value share one String.
+ */
+public class DictionaryColumnVector extends ColumnVector {
+
+    private int[] codes = new int[INITIAL_CAPACITY];
+    private String[] dictionary = new String[16];
+    private final Map<String, Integer> codeOf = new HashMap<>();
+    private long dictionaryBytes = 0;
+
+    /**
+     * Number of distinct values seen so far
+     */
+    public int getDictionarySize() {
+        return codeOf.size();
+    }
+
+    public String getString(int row) {
+        return isNull(row) ? null : dictionary[codes[row]];
+    }
+
+    @Override
+    public Object get(int row) {
+        return getString(row);
+    }
+
+    @Override
+    public String getText(int row) {
+        return getString(row);
+    }
+
+    public void appendString(String value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        Integer code = codeOf.get(value);
+        if (code == null) {
+            code = codeOf.size();
+            if (code == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, code * 2);
+            }
+            dictionary[code] = value;
+            codeOf.put(value, code);
+            // Entry in the map and the array plus the string itself
+            dictionaryBytes += 48 + ObjectColumnVector.estimateValue(value);
+        }
+        appendCode(code);
+    }
+
+    private void appendCode(int code) {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, grow(codes.length, size + 1));
+        }
+        codes[size++] = code;
+    }
+
+    @Override
+    public void appendNull() {
+        markNull(size);
+        appendCode(0);
+    }
+
+    @Override
+    public void appendObject(Object value) {
+        if (value == null) {
+            appendNull();
+        } else if (value instanceof String) {
+            appendString((String) value);
+        } else {
+            throw unsupported(value, "dictionary");
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (long) size * 4 + dictionaryBytes + nullBitmapBytes();
+    }
+
+    /**
+     * Also drops the dictionary, the rows that used it are gone and it would keep the estimate above the budget
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(dictionary, 0, codeOf.size(), null);
+        codeOf.clear();
+        dictionaryBytes = 0;
+        super.clear();
+    }
+
+    /**
+     * Copy the values into a plain object column, used when the column turns out to have too many distinct values
+     */
+    public ObjectColumnVector toObjectVector() {
+        ObjectColumnVector vector = new ObjectColumnVector();
+        for (int row = 0; row < size; row++) {
+            vector.appendObject(getString(row));
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,49 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+
+/**
+ * Column of double precision values (FLOAT, DOUBLE)
+ */
+public class DoubleColumnVector extends ColumnVector {
+
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    public void appendDouble(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length, size + 1));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public void appendNull() {
+        markNull(size);
+        appendDouble(0d);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (long) size * 8 + nullBitmapBytes();
+    }
+
+    @Override
+    public void appendObject(Object value) {
+        if (value == null) {
+            appendNull();
+        } else if (value instanceof Double || value instanceof Float) {
+            appendDouble(((Number) value).doubleValue());
+        } else {
+            throw unsupported(value, "DOUBLE");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+
+/**
+ * Column of single precision values (REAL, which MySQL Connector/J reports for FLOAT).
+ * Kept as floats so 0.1 is shown as 0.1 and not widened to 0.10000000149011612.
+ */
+public class FloatColumnVector extends ColumnVector {
+
+    private float[] values = new float[INITIAL_CAPACITY];
+
+    public float getFloat(int row) {
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    public void appendFloat(float value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length, size + 1));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public void appendNull() {
+        markNull(size);
+        appendFloat(0f);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (long) size * 4 + nullBitmapBytes();
+    }
+
+    @Override
+    public void appendObject(Object value) {
+        if (value == null) {
+            appendNull();
+        } else if (value instanceof Float) {
+            appendFloat((Float) value);
+        } else {
+            throw unsupported(value, "REAL");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+
+/**
+ * Column of 32-bit integers (TINYINT, SMALLINT, signed INT)
+ */
+public class IntColumnVector extends ColumnVector {
+
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    public int getInt(int row) {
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    public void appendInt(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length, size + 1));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public void appendNull() {
+        markNull(size);
+        appendInt(0);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (long) size * 4 + nullBitmapBytes();
+    }
+
+    @Override
+    public void appendObject(Object value) {
+        if (value == null) {
+            appendNull();
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            appendInt(((Number) value).intValue());
+        } else {
+            throw unsupported(value, "INT");
+        }
+    }
+}
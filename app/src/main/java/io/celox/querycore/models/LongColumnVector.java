@@ -0,0 +1,50 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+
+/**
+ * Column of 64-bit integers (signed BIGINT, unsigned INT)
+ */
+public class LongColumnVector extends ColumnVector {
+
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    public void appendLong(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length, size + 1));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public void appendNull() {
+        markNull(size);
+        appendLong(0L);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (long) size * 8 + nullBitmapBytes();
+    }
+
+    @Override
+    public void appendObject(Object value) {
+        if (value == null) {
+            appendNull();
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            appendLong(((Number) value).longValue());
+        } else {
+            throw unsupported(value, "BIGINT");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.celox.querycore.models;
+
+import java.util.Arrays;
+
+/**
+ * Fallback column holding values as objects (strings, decimals, dates, BSON values, ...)
+ */
+public class ObjectColumnVector extends ColumnVector {
+
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private long valueBytes = 0;
+
+    @Override
+    public boolean isNull(int row) {
+        return values[row] == null;
+    }
+
+    @Override
+    public Object get(int row) {
+        return values[row];
+    }
+
+    @Override
+    public void appendObject(Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length, size + 1));
+        }
+        values[size++] = value;
+        valueBytes += estimateValue(value);
+    }
+
+    @Override
+    public void appendNull() {
+        appendObject(null);
+    }
+
+    @Override
+    public void appendNulls(int count) {
+        if (size + count > values.length) {
+            values = Arrays.copyOf(values, grow(values.length, size + count));
+        }
+        // New slots are already null
+        size += count;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        // 4 bytes per reference with compressed pointers plus the objects themselves
+        return (long) size * 4 + valueBytes;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        valueBytes = 0;
+        super.clear();
+    }
+
+    /**
+     * Rough heap size of a value including its object header
+     */
+    static long estimateValue(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return 24;
+        } else if (value instanceof java.util.Map) {
+            long bytes = 64;
+            for (Object entry : ((java.util.Map<?, ?>) value).values()) {
+                bytes += 48 + estimateValue(entry);
+            }
+            return bytes;
+        } else if (value instanceof java.util.Collection) {
+            long bytes = 40;
+            for (Object element : (java.util.Collection<?>) value) {
+                bytes += 8 + estimateValue(element);
+            }
+            return bytes;
+        }
+        return 48;
+    }
+}
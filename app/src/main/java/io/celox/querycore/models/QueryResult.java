@@ -0,0 +1,487 @@
+package io.celox.querycore.models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Types;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Columnar result of a query.
+ * All rows share one column header and every column keeps its values in its own {@link ColumnVector},
+ * so a result never repeats the column names per row like a list of maps would
+ * and numeric columns are stored without boxing.
+ * Results larger than the {@link SpillSettings} heap budget keep their leading rows in a {@link SpillFile};
+ * {@link #getValue(int, int)} reads both parts the same way.
+ */
+public class QueryResult {
+
+    private final List<ResultColumn> columns;
+    private final Map<String, Integer> columnIndex;
+    private final int[] mapColumns;
+    private final ColumnVector[] vectors;
+    private final SpillFile spill;
+    private final int spilledRows;
+    private final int rowCount;
+    private long executionTimeMs;
+
+    private QueryResult(List<ResultColumn> columns, ColumnVector[] vectors, SpillFile spill, int rowCount) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.vectors = vectors;
+        this.spill = spill;
+        this.spilledRows = spill != null ? spill.getRowCount() : 0;
+        this.rowCount = rowCount;
+        this.columnIndex = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (!columnIndex.containsKey(columns.get(i).getName())) {
+                columnIndex.put(columns.get(i).getName(), i);
+            }
+        }
+        // Columns visible through the map view, duplicate labels only once
+        this.mapColumns = new int[columnIndex.size()];
+        int next = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (columnIndex.get(columns.get(i).getName()) == i) {
+                mapColumns[next++] = i;
+            }
+        }
+    }
+
+    /**
+     * Create a result without columns and rows
+     */
+    public static QueryResult empty() {
+        return new QueryResult(new ArrayList<>(), new ColumnVector[0], null, 0);
+    }
+
+    public List<ResultColumn> getColumns() {
+        return columns;
+    }
+
+    public ResultColumn getColumn(int column) {
+        return columns.get(column);
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    /**
+     * Get the index of a column by name
+     * @param name The column name
+     * @return The column index, or -1 if the result has no such column
+     */
+    public int findColumn(String name) {
+        Integer index = columnIndex.get(name);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Get a single cell value
+     * @param row The row index
+     * @param column The column index
+     * @return The value, or null for SQL NULL or a field missing in this document
+     */
+    public Object getValue(int row, int column) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range (0.." + rowCount + ")");
+        }
+        if (row < spilledRows) {
+            return spill.getValue(row, column);
+        }
+        return vectors[column].get(row - spilledRows);
+    }
+
+    /**
+     * Get a cell as display text. Dictionary-encoded columns return their shared value without allocating.
+     * @return The text, or null for SQL NULL or a missing field
+     */
+    public String getText(int row, int column) {
+        if (row < spilledRows) {
+            Object value = getValue(row, column);
+            return value != null ? value.toString() : null;
+        }
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range (0.." + rowCount + ")");
+        }
+        return vectors[column].getText(row - spilledRows);
+    }
+
+    public Object getValue(int row, String column) {
+        int index = findColumn(column);
+        return index >= 0 ? getValue(row, index) : null;
+    }
+
+    /**
+     * Direct access to a column's storage for typed reads (e.g. {@link LongColumnVector#getLong})
+     * @throws IllegalStateException if part of the rows were spilled to disk
+     */
+    public ColumnVector getVector(int column) {
+        if (spill != null) {
+            throw new IllegalStateException("Result is spilled to disk, read values with getValue");
+        }
+        return vectors[column];
+    }
+
+    /**
+     * Whether some rows of this result are stored in a spill file instead of the heap
+     */
+    public boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * Approximate heap used by the rows kept in memory, spilled rows are not counted
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (ColumnVector vector : vectors) {
+            bytes += vector.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Delete the spill file of this result. Must only be called once nothing reads the result anymore.
+     */
+    public void release() {
+        if (spill != null) {
+            spill.release();
+        }
+    }
+
+    public long getExecutionTimeMs() {
+        return executionTimeMs;
+    }
+
+    public void setExecutionTimeMs(long executionTimeMs) {
+        this.executionTimeMs = executionTimeMs;
+    }
+
+    /**
+     * Compatibility view for code written against the old List&lt;Map&gt; API.
+     * The maps are created lazily per access and read through to the column vectors.
+     * @return A read-only list with one map per row, keyed by column name in header order
+     */
+    public List<Map<String, Object>> asMaps() {
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                return new RowMap(index);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    /**
+     * Read-only map view over one row of the result
+     */
+    private class RowMap extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowMap(int row) {
+            if (row < 0 || row >= rowCount) {
+                throw new IndexOutOfBoundsException("Row " + row + " out of range (0.." + rowCount + ")");
+            }
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer index = columnIndex.get(key);
+            return index != null ? getValue(row, index) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return columnIndex.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return mapColumns.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < mapColumns.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int column = mapColumns[next++];
+                            return new SimpleImmutableEntry<>(columns.get(column).getName(), getValue(row, column));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return mapColumns.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * Builder that appends rows column by column.
+     * Columns can be declared up front (JDBC) or discovered while rows are added (MongoDB);
+     * a column added late reads as null for all earlier rows.
+     * Every column must receive exactly one value per row before {@link #commitRow()} is called.
+     * <p>
+     * When the buffered rows exceed the heap budget they are moved to a spill file and the vectors
+     * are cleared to buffer the next rows, so decoders can keep appending to the same vectors.
+     */
+    public static class Builder {
+        // Rows between two checks of the heap estimate
+        private static final int SPILL_CHECK_INTERVAL = 256;
+        // Once spilling, rows go to disk in chunks of this size
+        private static final long SPILL_CHUNK_BYTES = 4L << 20;
+
+        private final List<ResultColumn> columns = new ArrayList<>();
+        private final Map<String, Integer> columnIndex = new HashMap<>();
+        private final List<ColumnVector> vectors = new ArrayList<>();
+        private final File spillDirectory;
+        private final long heapBudgetBytes;
+        private SpillFile spill;
+        private Object[] scratch = new Object[0];
+        private int rowCount = 0;
+        private int bufferedRows = 0;
+
+        /**
+         * Create a builder that spills according to the global {@link SpillSettings}
+         */
+        public Builder() {
+            this(SpillSettings.getInstance().getDirectory(), SpillSettings.getInstance().getHeapBudgetBytes());
+        }
+
+        /**
+         * Create a builder with its own spill settings
+         * @param spillDirectory Directory for the spill file, null to always keep rows in memory
+         * @param heapBudgetBytes Approximate heap the buffered rows may use before they spill
+         */
+        public Builder(File spillDirectory, long heapBudgetBytes) {
+            this.spillDirectory = spillDirectory;
+            this.heapBudgetBytes = heapBudgetBytes;
+        }
+
+        /**
+         * Declare a column stored as objects
+         * @return The index of the new column
+         */
+        public int addColumn(String name, int type, String typeName) {
+            return addColumn(name, type, typeName, new ObjectColumnVector());
+        }
+
+        /**
+         * Declare a column with a specific storage vector
+         * @return The index of the new column
+         */
+        public int addColumn(String name, int type, String typeName, ColumnVector vector) {
+            columns.add(new ResultColumn(name, type, typeName));
+            vector.appendNulls(bufferedRows - vector.size());
+            vectors.add(vector);
+            // Duplicate labels (e.g. a join selecting id twice) are kept, lookups by name find the first one
+            if (!columnIndex.containsKey(name)) {
+                columnIndex.put(name, columns.size() - 1);
+            }
+            return columns.size() - 1;
+        }
+
+        public int getColumnCount() {
+            return columns.size();
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Storage of a column, for decoders that append typed values directly
+         */
+        public ColumnVector getVector(int column) {
+            return vectors.get(column);
+        }
+
+        /**
+         * Swap the storage of a column, e.g. when a dictionary column turns out to have too many distinct values
+         * @param vector New storage that already holds the buffered values of the column
+         */
+        public void replaceVector(int column, ColumnVector vector) {
+            if (vector.size() != vectors.get(column).size()) {
+                throw new IllegalArgumentException("Replacement holds " + vector.size() + " values, expected "
+                        + vectors.get(column).size());
+            }
+            vectors.set(column, vector);
+        }
+
+        /**
+         * Finish a row after every column vector received its value
+         */
+        public void commitRow() {
+            rowCount++;
+            bufferedRows++;
+            if (spillDirectory != null && bufferedRows % SPILL_CHECK_INTERVAL == 0
+                    && bufferedBytes() > (spill == null ? heapBudgetBytes : Math.min(heapBudgetBytes, SPILL_CHUNK_BYTES))) {
+                spillBufferedRows();
+            }
+        }
+
+        /**
+         * Whether rows have been moved to a spill file
+         */
+        public boolean isSpilled() {
+            return spill != null;
+        }
+
+        private long bufferedBytes() {
+            long bytes = 0;
+            for (ColumnVector vector : vectors) {
+                bytes += vector.estimatedBytes();
+            }
+            return bytes;
+        }
+
+        private void spillBufferedRows() {
+            ColumnVector[] buffered = vectors.toArray(new ColumnVector[0]);
+            try {
+                if (spill == null) {
+                    spill = SpillFile.create(spillDirectory);
+                }
+                spill.appendRows(buffered, bufferedRows);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write result rows to disk: " + e.getMessage(), e);
+            }
+            for (ColumnVector vector : buffered) {
+                vector.clear();
+            }
+            bufferedRows = 0;
+        }
+
+        /**
+         * Append a row given in header order
+         * @param row One value per declared column
+         */
+        public Builder addRow(Object[] row) {
+            for (int i = 0; i < vectors.size(); i++) {
+                vectors.get(i).appendObject(i < row.length ? row[i] : null);
+            }
+            commitRow();
+            return this;
+        }
+
+        /**
+         * Append a row keyed by column name, adding columns that were not seen before
+         * @param row The row values
+         * @param typeNames Resolves the type name of a newly discovered column from its first value
+         */
+        public Builder addRow(Map<String, Object> row, TypeNamer typeNames) {
+            if (scratch.length < vectors.size() + row.size()) {
+                scratch = new Object[Math.max(vectors.size() + row.size(), scratch.length * 2)];
+            }
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                Integer index = columnIndex.get(entry.getKey());
+                if (index == null) {
+                    index = addColumn(entry.getKey(), Types.OTHER, typeNames.typeNameOf(entry.getValue()));
+                }
+                scratch[index] = entry.getValue();
+            }
+            for (int i = 0; i < vectors.size(); i++) {
+                vectors.get(i).appendObject(scratch[i]);
+                scratch[i] = null;
+            }
+            commitRow();
+            return this;
+        }
+
+        /**
+         * Copy the rows added so far into a separate in-memory result, e.g. to show them while more
+         * rows are read. The copy does not change when further rows are added.
+         * @throws IllegalStateException if rows were already spilled to disk
+         */
+        public QueryResult snapshot() {
+            if (spill != null) {
+                throw new IllegalStateException("Rows were spilled to disk, no snapshot can be taken");
+            }
+            Builder copy = new Builder(null, 0);
+            for (ResultColumn column : columns) {
+                copy.addColumn(column.getName(), column.getType(), column.getTypeName());
+            }
+            Object[] row = new Object[vectors.size()];
+            for (int i = 0; i < bufferedRows; i++) {
+                for (int column = 0; column < row.length; column++) {
+                    row[column] = vectors.get(column).get(i);
+                }
+                copy.addRow(row);
+            }
+            return copy.build();
+        }
+
+        public QueryResult build() {
+            if (spill != null) {
+                try {
+                    spill.seal();
+                } catch (IOException e) {
+                    spill.release();
+                    throw new UncheckedIOException("Could not map spilled result rows: " + e.getMessage(), e);
+                }
+            }
+            return new QueryResult(new ArrayList<>(columns), vectors.toArray(new ColumnVector[0]), spill, rowCount);
+        }
+
+        /**
+         * Drop the rows added so far and delete the spill file, for a read that failed or was cancelled.
+         * The builder must not be used afterwards.
+         */
+        public void discard() {
+            if (spill != null) {
+                spill.release();
+                spill = null;
+            }
+            for (ColumnVector vector : vectors) {
+                vector.clear();
+            }
+            bufferedRows = 0;
+        }
+    }
+
+    /**
+     * Names the type of a column that was discovered from a value
+     */
+    public interface TypeNamer {
+        String typeNameOf(Object value);
+    }
+}
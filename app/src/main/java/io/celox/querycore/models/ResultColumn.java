@@ -0,0 +1,38 @@
+package io.celox.querycore.models;
+
+import java.sql.Types;
+
+/**
+ * Header entry of a {@link QueryResult} column.
+ * For JDBC results the type is the {@link java.sql.Types} constant reported by the driver,
+ * MongoDB results use {@link Types#OTHER} together with the BSON type name.
+ */
+public class ResultColumn {
+
+    private final String name;
+    private final int type;
+    private final String typeName;
+
+    public ResultColumn(String name, int type, String typeName) {
+        this.name = name;
+        this.type = type;
+        this.typeName = typeName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + typeName + ")";
+    }
+}
@@ -0,0 +1,323 @@
+package io.celox.querycore.models;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only file holding result rows that did not fit into the heap budget.
+ * Rows are written once while the result is built and read back through memory-mapped regions,
+ * so the page cache instead of the Java heap holds them. A region never splits a row and stays
+ * below {@link #REGION_SIZE}, which keeps every mapping within the 2 GB limit of a ByteBuffer.
+ * <p>
+ * Row layout: column count (int), then per column a tag byte followed by the value.
+ * Rows written before a MongoDB column was discovered are shorter and read the missing columns as null.
+ */
+class SpillFile {
+
+    static final String PREFIX = "result-spill-";
+
+    private static final int REGION_SIZE = 64 << 20;
+    private static final int WRITE_BUFFER_SIZE = 256 << 10;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_INT = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_TRUE = 4;
+    private static final byte TAG_FALSE = 5;
+    private static final byte TAG_STRING = 6;
+    private static final byte TAG_BYTES = 7;
+    private static final byte TAG_DECIMAL = 8;
+    private static final byte TAG_TIMESTAMP = 9;
+    private static final byte TAG_SQL_DATE = 10;
+    private static final byte TAG_SQL_TIME = 11;
+    private static final byte TAG_DATE = 12;
+    private static final byte TAG_SERIALIZED = 13;
+    private static final byte TAG_FLOAT = 14;
+
+    private final File file;
+    private BufferedOutputStream output;
+    private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream row = new DataOutputStream(rowBytes);
+
+    private long[] rowOffsets = new long[1024];
+    private int rowCount = 0;
+    private long length = 0;
+    private long[] regionStarts = new long[4];
+    private int regionCount = 1;
+
+    private RandomAccessFile reader;
+    private MappedByteBuffer[] regions;
+    private int cachedRow = -1;
+    private Object[] cachedValues;
+
+    private SpillFile(File file) throws IOException {
+        this.file = file;
+        this.output = new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE);
+    }
+
+    static SpillFile create(File directory) throws IOException {
+        File file = File.createTempFile(PREFIX, ".bin", directory);
+        try {
+            return new SpillFile(file);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Append the first rows of the given vectors
+     */
+    void appendRows(ColumnVector[] vectors, int rows) throws IOException {
+        if (output == null) {
+            throw new IllegalStateException("Spill file is sealed");
+        }
+        for (int r = 0; r < rows; r++) {
+            rowBytes.reset();
+            row.writeInt(vectors.length);
+            for (ColumnVector vector : vectors) {
+                writeValue(vector, r);
+            }
+
+            // Start a new region instead of letting the row cross the region boundary
+            long regionStart = regionStarts[regionCount - 1];
+            if (length > regionStart && length - regionStart + rowBytes.size() > REGION_SIZE) {
+                if (regionCount == regionStarts.length) {
+                    regionStarts = Arrays.copyOf(regionStarts, regionCount * 2);
+                }
+                regionStarts[regionCount++] = length;
+            }
+            if (rowCount == rowOffsets.length) {
+                rowOffsets = Arrays.copyOf(rowOffsets, rowCount * 2);
+            }
+            rowOffsets[rowCount++] = length;
+            rowBytes.writeTo(output);
+            length += rowBytes.size();
+        }
+    }
+
+    /**
+     * Finish writing and map the file for reading
+     */
+    void seal() throws IOException {
+        if (output == null) {
+            return;
+        }
+        output.close();
+        output = null;
+        reader = new RandomAccessFile(file, "r");
+        regions = new MappedByteBuffer[regionCount];
+    }
+
+    synchronized Object getValue(int rowIndex, int column) {
+        if (rowIndex != cachedRow) {
+            cachedValues = readRow(rowIndex);
+            cachedRow = rowIndex;
+        }
+        return column < cachedValues.length ? cachedValues[column] : null;
+    }
+
+    /**
+     * Close and delete the file. Values read afterwards fail with an {@link IllegalStateException}.
+     */
+    synchronized void release() {
+        try {
+            if (output != null) {
+                output.close();
+                output = null;
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // Nothing left to flush, the file is deleted anyway
+        }
+        regions = null;
+        cachedValues = null;
+        cachedRow = -1;
+        file.delete();
+    }
+
+    private Object[] readRow(int rowIndex) {
+        if (regions == null) {
+            throw new IllegalStateException("Spill file is not readable (not sealed or already released)");
+        }
+        long offset = rowOffsets[rowIndex];
+        int region = Arrays.binarySearch(regionStarts, 0, regionCount, offset);
+        if (region < 0) {
+            region = -region - 2;
+        }
+        ByteBuffer buffer = mapRegion(region).duplicate();
+        buffer.position((int) (offset - regionStarts[region]));
+
+        Object[] values = new Object[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readValue(buffer);
+        }
+        return values;
+    }
+
+    private MappedByteBuffer mapRegion(int region) {
+        if (regions[region] == null) {
+            long start = regionStarts[region];
+            long end = region + 1 < regionCount ? regionStarts[region + 1] : length;
+            try {
+                regions[region] = reader.getChannel().map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map spilled rows: " + e.getMessage(), e);
+            }
+        }
+        return regions[region];
+    }
+
+    private void writeValue(ColumnVector vector, int index) throws IOException {
+        if (vector.isNull(index)) {
+            row.writeByte(TAG_NULL);
+        } else if (vector instanceof IntColumnVector) {
+            row.writeByte(TAG_INT);
+            row.writeInt(((IntColumnVector) vector).getInt(index));
+        } else if (vector instanceof LongColumnVector) {
+            row.writeByte(TAG_LONG);
+            row.writeLong(((LongColumnVector) vector).getLong(index));
+        } else if (vector instanceof DoubleColumnVector) {
+            row.writeByte(TAG_DOUBLE);
+            row.writeDouble(((DoubleColumnVector) vector).getDouble(index));
+        } else if (vector instanceof FloatColumnVector) {
+            row.writeByte(TAG_FLOAT);
+            row.writeFloat(((FloatColumnVector) vector).getFloat(index));
+        } else if (vector instanceof BooleanColumnVector) {
+            row.writeByte(((BooleanColumnVector) vector).getBoolean(index) ? TAG_TRUE : TAG_FALSE);
+        } else {
+            writeObject(vector.get(index));
+        }
+    }
+
+    private void writeObject(Object value) throws IOException {
+        if (value == null) {
+            row.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            writeBytes(TAG_STRING, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            row.writeByte(TAG_INT);
+            row.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            row.writeByte(TAG_LONG);
+            row.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            row.writeByte(TAG_FLOAT);
+            row.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            row.writeByte(TAG_DOUBLE);
+            row.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            row.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof byte[]) {
+            writeBytes(TAG_BYTES, (byte[]) value);
+        } else if (value instanceof BigDecimal) {
+            writeBytes(TAG_DECIMAL, value.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof java.sql.Timestamp) {
+            row.writeByte(TAG_TIMESTAMP);
+            row.writeLong(((java.sql.Timestamp) value).getTime());
+            row.writeInt(((java.sql.Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            row.writeByte(TAG_SQL_DATE);
+            row.writeLong(((java.sql.Date) value).getTime());
+        } else if (value instanceof java.sql.Time) {
+            row.writeByte(TAG_SQL_TIME);
+            row.writeLong(((java.sql.Time) value).getTime());
+        } else if (value.getClass() == java.util.Date.class) {
+            row.writeByte(TAG_DATE);
+            row.writeLong(((java.util.Date) value).getTime());
+        } else if (value instanceof Serializable) {
+            // BSON values, nested documents and arrays, BigInteger, ...
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+                writeBytes(TAG_SERIALIZED, bytes.toByteArray());
+            } catch (NotSerializableException e) {
+                // A nested value is not serializable, keep what the grid would display
+                writeBytes(TAG_STRING, value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            writeBytes(TAG_STRING, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeBytes(byte tag, byte[] bytes) throws IOException {
+        row.writeByte(tag);
+        row.writeInt(bytes.length);
+        row.write(bytes);
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_INT:
+                return buffer.getInt();
+            case TAG_LONG:
+                return buffer.getLong();
+            case TAG_DOUBLE:
+                return buffer.getDouble();
+            case TAG_FLOAT:
+                return buffer.getFloat();
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_STRING:
+                return new String(readBytes(buffer), StandardCharsets.UTF_8);
+            case TAG_BYTES:
+                return readBytes(buffer);
+            case TAG_DECIMAL:
+                return new BigDecimal(new String(readBytes(buffer), StandardCharsets.UTF_8));
+            case TAG_TIMESTAMP: {
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                return timestamp;
+            }
+            case TAG_SQL_DATE:
+                return new java.sql.Date(buffer.getLong());
+            case TAG_SQL_TIME:
+                return new java.sql.Time(buffer.getLong());
+            case TAG_DATE:
+                return new java.util.Date(buffer.getLong());
+            case TAG_SERIALIZED:
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBytes(buffer)))) {
+                    return objects.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException("Corrupt spilled value: " + e.getMessage(), e);
+                }
+            default:
+                throw new IllegalStateException("Unknown tag " + tag + " in spill file");
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
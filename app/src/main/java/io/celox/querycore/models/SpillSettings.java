@@ -0,0 +1,61 @@
+package io.celox.querycore.models;
+
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * Where and when large query results are moved out of the heap.
+ * Once the rows of a result exceed the heap budget they are appended to a memory-mapped
+ * file in the spill directory, see {@link SpillFile}.
+ */
+public class SpillSettings {
+
+    private static final String TAG = "SpillSettings";
+
+    private static SpillSettings instance;
+
+    private File directory;
+    private long heapBudgetBytes = Runtime.getRuntime().maxMemory() / 8;
+
+    private SpillSettings() {
+    }
+
+    public static synchronized SpillSettings getInstance() {
+        if (instance == null) {
+            instance = new SpillSettings();
+        }
+        return instance;
+    }
+
+    /**
+     * Enable spilling and remove files left over by a previous process
+     * @param directory Directory for spill files, usually the app cache dir
+     * @param heapBudgetBytes Approximate heap a single result may use before it spills
+     */
+    public synchronized void configure(File directory, long heapBudgetBytes) {
+        this.directory = directory;
+        this.heapBudgetBytes = heapBudgetBytes;
+
+        File[] leftovers = directory.listFiles((dir, name) -> name.startsWith(SpillFile.PREFIX));
+        if (leftovers != null) {
+            for (File file : leftovers) {
+                if (!file.delete()) {
+                    Log.w(TAG, "Could not delete stale spill file " + file.getName());
+                }
+            }
+        }
+        Log.i(TAG, "Results above " + (heapBudgetBytes >> 20) + " MB spill to " + directory);
+    }
+
+    /**
+     * Spill directory, or null if spilling is disabled
+     */
+    public synchronized File getDirectory() {
+        return directory;
+    }
+
+    public synchronized long getHeapBudgetBytes() {
+        return heapBudgetBytes;
+    }
+}
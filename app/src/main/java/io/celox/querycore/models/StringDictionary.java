@@ -0,0 +1,57 @@
+package io.celox.querycore.models;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates repeated string values per field while documents are materialized, so all rows
+ * with the same value share one String. Each field samples its values and stops deduplicating
+ * once most of them turn out to be distinct (ids, free text), which keeps the lookup cost off
+ * high-cardinality fields.
+ */
+public class StringDictionary {
+
+    private static final int SAMPLE_VALUES = 1024;
+    // Deduplicating pays off while at most one in this many values is distinct
+    private static final int MIN_REPEAT = 4;
+    private static final int MAX_SIZE = 1 << 16;
+
+    private final Map<String, Field> fields = new HashMap<>();
+
+    /**
+     * Get the shared instance of a value
+     * @param field The field path the value belongs to
+     * @param value The decoded value
+     * @return An equal string, shared with earlier rows where possible
+     */
+    public String intern(String field, String value) {
+        Field dictionary = fields.get(field);
+        if (dictionary == null) {
+            dictionary = new Field();
+            fields.put(field, dictionary);
+        }
+        return dictionary.intern(value);
+    }
+
+    private static class Field {
+        private Map<String, String> values = new HashMap<>();
+        private int seen = 0;
+
+        String intern(String value) {
+            if (values == null) {
+                return value;
+            }
+            seen++;
+            String shared = values.get(value);
+            if (shared != null) {
+                return shared;
+            }
+            values.put(value, value);
+            if ((seen >= SAMPLE_VALUES && values.size() * MIN_REPEAT > seen) || values.size() > MAX_SIZE) {
+                // Too many distinct values, stop deduplicating this field
+                values = null;
+            }
+            return value;
+        }
+    }
+}
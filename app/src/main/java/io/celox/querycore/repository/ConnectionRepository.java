@@ -33,6 +33,10 @@ public class ConnectionRepository {
         executorService.execute(() -> connectionDao.updateConnection(connection));
     }
     
+    public void updateAuthMechanism(int id, String authMechanism) {
+        executorService.execute(() -> connectionDao.updateAuthMechanism(id, authMechanism));
+    }
+    
     public void delete(ConnectionEntity connection) {
         executorService.execute(() -> connectionDao.deleteConnection(connection));
     }
@@ -134,8 +134,10 @@ public class DatabaseBrowserFragment extends Fragment implements SimpleStringAda
                     this.connection = connection;
                     requireActivity().setTitle(connection.getName());
                     
-                    // Connect to the database if not already connected
-                    if (databaseViewModel.getIsConnected().getValue() != Boolean.TRUE) {
+                    // Connect to the database if not already connected to this connection
+                    ConnectionInfo current = databaseViewModel.getCurrentConnection().getValue();
+                    if (databaseViewModel.getIsConnected().getValue() != Boolean.TRUE
+                            || current == null || current.getId() != connectionId) {
                         ConnectionInfo connectionInfo = connection.toConnectionInfo();
                         databaseViewModel.connect(connectionInfo);
                     }
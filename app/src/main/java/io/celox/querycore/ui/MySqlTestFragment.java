@@ -14,7 +14,10 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
+import java.util.concurrent.RejectedExecutionException;
+
 import io.celox.querycore.R;
+import io.celox.querycore.database.DatabaseTaskScheduler;
 import io.celox.querycore.models.ConnectionInfo;
 import io.celox.querycore.utils.DatabaseTestUtils;
 import io.celox.querycore.viewmodel.DatabaseViewModel;
@@ -160,28 +163,32 @@ public class MySqlTestFragment extends Fragment {
 
         final int _port = port;
 
-        // Use a background thread to avoid blocking the UI
-        new Thread(() -> {
-            try {
-                final String result = DatabaseTestUtils.createMySqlTestTable(
-                        host, _port, database, username, password);
-                
-                // Update UI on the main thread
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        resultTextView.append("\n" + result);
-                    });
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error creating test table: " + e.getMessage(), e);
-                
-                // Update UI on the main thread
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        resultTextView.append("\nError creating test table: " + e.getMessage());
-                    });
+        // Runs on the shared database threads to avoid blocking the UI
+        try {
+            DatabaseTaskScheduler.getInstance().execute(DatabaseTaskScheduler.Lane.QUERY, () -> {
+                try {
+                    final String result = DatabaseTestUtils.createMySqlTestTable(
+                            host, _port, database, username, password);
+                    
+                    // Update UI on the main thread
+                    if (getActivity() != null) {
+                        getActivity().runOnUiThread(() -> {
+                            resultTextView.append("\n" + result);
+                        });
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error creating test table: " + e.getMessage(), e);
+                    
+                    // Update UI on the main thread
+                    if (getActivity() != null) {
+                        getActivity().runOnUiThread(() -> {
+                            resultTextView.append("\nError creating test table: " + e.getMessage());
+                        });
+                    }
                 }
-            }
-        }).start();
+            });
+        } catch (RejectedExecutionException e) {
+            resultTextView.append("\nError creating test table: " + e.getMessage());
+        }
     }
 }
\ No newline at end of file
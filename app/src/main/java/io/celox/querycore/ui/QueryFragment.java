@@ -29,9 +29,12 @@ public class QueryFragment extends Fragment {
     private TextInputEditText editTextQuery;
     private Button buttonExecute;
     private Button buttonClear;
+    private Button buttonCancel;
     private ProgressBar progressBar;
     
     private String databaseName;
+    // The running query streams into the results screen, which then owns it
+    private boolean resultsShown = false;
     
     @Nullable
     @Override
@@ -43,11 +46,13 @@ public class QueryFragment extends Fragment {
         editTextQuery = view.findViewById(R.id.edit_text_query);
         buttonExecute = view.findViewById(R.id.button_execute);
         buttonClear = view.findViewById(R.id.button_clear);
+        buttonCancel = view.findViewById(R.id.button_cancel);
         progressBar = view.findViewById(R.id.progress_bar);
         
         // Set up button click listeners
         buttonExecute.setOnClickListener(v -> executeQuery());
         buttonClear.setOnClickListener(v -> editTextQuery.setText(""));
+        buttonCancel.setOnClickListener(v -> databaseViewModel.cancelQuery());
         
         return view;
     }
@@ -92,17 +97,45 @@ public class QueryFragment extends Fragment {
         // Observe query results
         databaseViewModel.getQueryResults().observe(getViewLifecycleOwner(), results -> {
             if (results != null) {
+                showResults();
+            }
+        });
+        
+        // The first rows of a running query are shown before it completes
+        databaseViewModel.getQueryPreview().observe(getViewLifecycleOwner(), preview -> {
+            if (preview != null && !resultsShown) {
+                resultsShown = true;
+                showResults();
+            }
+        });
+        
+        // Observe the running query, a cancelled one delivers neither results nor an error
+        databaseViewModel.getQueryRunning().observe(getViewLifecycleOwner(), running -> {
+            if (running != null && !running) {
                 hideLoading();
-                // Navigate to results fragment
-                Bundle args = new Bundle();
-                args.putString("query", editTextQuery.getText().toString());
-                Navigation.findNavController(requireView()).navigate(
-                        R.id.action_queryFragment_to_queryResultsFragment, args
-                );
             }
         });
     }
     
+    @Override
+    public void onDestroyView() {
+        // Nobody is left to show the result, unless it is already streaming into the results screen
+        if (!resultsShown) {
+            databaseViewModel.cancelQuery();
+        }
+        super.onDestroyView();
+    }
+    
+    private void showResults() {
+        hideLoading();
+        // Navigate to results fragment
+        Bundle args = new Bundle();
+        args.putString("query", editTextQuery.getText().toString());
+        Navigation.findNavController(requireView()).navigate(
+                R.id.action_queryFragment_to_queryResultsFragment, args
+        );
+    }
+    
     private void executeQuery() {
         String query = editTextQuery.getText().toString().trim();
         
@@ -112,18 +145,21 @@ public class QueryFragment extends Fragment {
         }
         
         showLoading();
+        resultsShown = false;
         databaseViewModel.executeQuery(query);
     }
     
     private void showLoading() {
         progressBar.setVisibility(View.VISIBLE);
         buttonExecute.setEnabled(false);
-        buttonClear.setEnabled(false);
+        buttonClear.setVisibility(View.GONE);
+        buttonCancel.setVisibility(View.VISIBLE);
     }
     
     private void hideLoading() {
         progressBar.setVisibility(View.GONE);
         buttonExecute.setEnabled(true);
-        buttonClear.setEnabled(true);
+        buttonClear.setVisibility(View.VISIBLE);
+        buttonCancel.setVisibility(View.GONE);
     }
 }
\ No newline at end of file
@@ -21,17 +21,19 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import io.celox.querycore.R;
 import io.celox.querycore.adapters.TableDataAdapter;
+import io.celox.querycore.models.QueryResult;
 import io.celox.querycore.viewmodel.DatabaseViewModel;
 
 public class QueryResultsFragment extends Fragment {
@@ -47,7 +49,8 @@ public class QueryResultsFragment extends Fragment {
     
     private TableDataAdapter adapter;
     private String query;
-    private List<Map<String, Object>> queryResults;
+    private QueryResult queryResults;
+    private boolean showingPreview = false;
     
     @Nullable
     @Override
@@ -90,15 +93,50 @@ public class QueryResultsFragment extends Fragment {
         
         // Observe query results
         databaseViewModel.getQueryResults().observe(getViewLifecycleOwner(), results -> {
+            if (databaseViewModel.getQueryPreview().getValue() != null) {
+                // Still the result of the previous query, the running one is previewed
+                return;
+            }
+            buttonExport.setEnabled(true);
             if (results != null && !results.isEmpty()) {
                 queryResults = results;
                 adapter.setData(results);
-                textViewResultInfo.setText(String.format("%d rows returned", results.size()));
+                textViewResultInfo.setText(String.format(Locale.getDefault(), "%d rows returned in %dms",
+                        results.getRowCount(), results.getExecutionTimeMs()));
                 hideLoading();
             } else {
                 showEmpty();
             }
         });
+        
+        // Rows of the running query read so far, replaced by the complete result
+        databaseViewModel.getQueryPreview().observe(getViewLifecycleOwner(), preview -> {
+            if (preview == null) {
+                // Right before the complete result, or the query failed or was cancelled
+                if (showingPreview) {
+                    showingPreview = false;
+                    textViewResultInfo.setText(String.format(Locale.getDefault(),
+                            "Query stopped, showing the first %d rows", adapter.getItemCount()));
+                }
+            } else {
+                showingPreview = true;
+                adapter.setData(preview);
+                textViewResultInfo.setText(String.format(Locale.getDefault(), "%d rows so far, still loading...",
+                        preview.getRowCount()));
+                // Export waits for all rows
+                buttonExport.setEnabled(false);
+                hideLoading();
+            }
+        });
+    }
+    
+    @Override
+    public void onDestroyView() {
+        // Stop a query still streaming into this screen
+        if (databaseViewModel.getQueryPreview().getValue() != null) {
+            databaseViewModel.cancelQuery();
+        }
+        super.onDestroyView();
     }
     
     private void exportResults() {
@@ -108,40 +146,6 @@ public class QueryResultsFragment extends Fragment {
         }
         
         try {
-            // Generate a CSV file
-            StringBuilder csvData = new StringBuilder();
-            
-            // Add header row
-            if (!queryResults.isEmpty()) {
-                Map<String, Object> firstRow = queryResults.get(0);
-                boolean isFirst = true;
-                for (String column : firstRow.keySet()) {
-                    if (!isFirst) {
-                        csvData.append(",");
-                    }
-                    csvData.append("\"").append(column).append("\"");
-                    isFirst = false;
-                }
-                csvData.append("\n");
-            }
-            
-            // Add data rows
-            for (Map<String, Object> row : queryResults) {
-                boolean isFirst = true;
-                for (Object value : row.values()) {
-                    if (!isFirst) {
-                        csvData.append(",");
-                    }
-                    if (value != null) {
-                        csvData.append("\"").append(value.toString().replace("\"", "\"\"")).append("\"");
-                    } else {
-                        csvData.append("\"\"");
-                    }
-                    isFirst = false;
-                }
-                csvData.append("\n");
-            }
-            
             // Save the file
             SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
             String fileName = "query_results_" + sdf.format(new Date()) + ".csv";
@@ -153,10 +157,11 @@ public class QueryResultsFragment extends Fragment {
             
             Uri uri = requireContext().getContentResolver().insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, values);
             if (uri != null) {
-                try (OutputStream os = requireContext().getContentResolver().openOutputStream(uri)) {
-                    os.write(csvData.toString().getBytes(StandardCharsets.UTF_8));
-                    Toast.makeText(requireContext(), "Results exported to " + fileName, Toast.LENGTH_LONG).show();
+                try (OutputStream os = requireContext().getContentResolver().openOutputStream(uri);
+                     Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8))) {
+                    writeCsv(queryResults, writer);
                 }
+                Toast.makeText(requireContext(), "Results exported to " + fileName, Toast.LENGTH_LONG).show();
             } else {
                 throw new IOException("Failed to create file");
             }
@@ -166,6 +171,40 @@ public class QueryResultsFragment extends Fragment {
         }
     }
     
+    /**
+     * Write the result as CSV straight from the columns, without building the file in memory
+     */
+    private void writeCsv(QueryResult results, Writer writer) throws IOException {
+        int columnCount = results.getColumnCount();
+        
+        // Add header row
+        for (int column = 0; column < columnCount; column++) {
+            if (column > 0) {
+                writer.write(",");
+            }
+            writer.write("\"");
+            writer.write(results.getColumn(column).getName());
+            writer.write("\"");
+        }
+        writer.write("\n");
+        
+        // Add data rows
+        for (int row = 0; row < results.getRowCount(); row++) {
+            for (int column = 0; column < columnCount; column++) {
+                if (column > 0) {
+                    writer.write(",");
+                }
+                Object value = results.getValue(row, column);
+                writer.write("\"");
+                if (value != null) {
+                    writer.write(value.toString().replace("\"", "\"\""));
+                }
+                writer.write("\"");
+            }
+            writer.write("\n");
+        }
+    }
+    
     private void hideLoading() {
         progressBar.setVisibility(View.GONE);
         recyclerView.setVisibility(View.VISIBLE);
@@ -21,10 +21,14 @@ import java.util.Map;
 
 import io.celox.querycore.R;
 import io.celox.querycore.adapters.TableDataAdapter;
+import io.celox.querycore.database.PageRequest;
 import io.celox.querycore.viewmodel.DatabaseViewModel;
 
 public class TableViewFragment extends Fragment {
     
+    // Start loading the next page this many rows before the end of the loaded rows
+    private static final int PREFETCH_ROWS = 40;
+    
     private DatabaseViewModel databaseViewModel;
     
     private TextView textViewTableName;
@@ -33,6 +37,11 @@ public class TableViewFragment extends Fragment {
     private TextView emptyView;
     
     private TableDataAdapter adapter;
+    private LinearLayoutManager layoutManager;
+    // The page being loaded, one at a time
+    private PageRequest pendingRequest;
+    // Answered twice when a stale cached first page is shown and then refreshed
+    private PageRequest firstRequest;
     private String databaseName;
     private String tableName;
     
@@ -48,9 +57,16 @@ public class TableViewFragment extends Fragment {
         emptyView = view.findViewById(R.id.text_view_empty);
         
         // Set up RecyclerView
-        recyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
+        layoutManager = new LinearLayoutManager(requireContext());
+        recyclerView.setLayoutManager(layoutManager);
         adapter = new TableDataAdapter();
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadAroundScrollPosition();
+            }
+        });
         
         return view;
     }
@@ -72,21 +88,10 @@ public class TableViewFragment extends Fragment {
         textViewTableName.setText(tableName);
         requireActivity().setTitle(String.format("%s - %s", databaseName, tableName));
         
-        // Load table data
+        // Load the first page, the rest follows while scrolling
         showLoading();
-        try {
-            String query = "";
-            if (databaseViewModel.getCurrentConnection().getValue().getType() == io.celox.querycore.models.ConnectionInfo.DatabaseType.MONGODB) {
-                // MongoDB query
-                query = String.format("{ \"collection\": \"%s\", \"find\": {} }", tableName);
-            } else {
-                // SQL query
-                query = String.format("SELECT * FROM %s LIMIT 100", tableName);
-            }
-            databaseViewModel.executeQuery(query);
-        } catch (Exception e) {
-            showEmpty("Error loading table data: " + e.getMessage());
-        }
+        firstRequest = PageRequest.first(tableName);
+        loadPage(firstRequest);
         
         // Observe table structure
         databaseViewModel.getTableStructure().observe(getViewLifecycleOwner(), structure -> {
@@ -95,20 +100,51 @@ public class TableViewFragment extends Fragment {
             }
         });
         
-        // Observe query results
-        databaseViewModel.getQueryResults().observe(getViewLifecycleOwner(), results -> {
-            if (results != null && !results.isEmpty()) {
-                adapter.setData(results);
-                hideLoading();
-            } else {
+        // Observe loaded pages, ignoring pages of an earlier table view
+        databaseViewModel.getTablePage().observe(getViewLifecycleOwner(), page -> {
+            if (page == null) {
+                return;
+            }
+            if (page.getRequest() != pendingRequest) {
+                // A cached first page was shown and its refresh arrived
+                if (page.getRequest() == firstRequest && adapter.replaceFirstPage(page)) {
+                    recyclerView.post(this::loadAroundScrollPosition);
+                }
+                return;
+            }
+            pendingRequest = null;
+            if (page.getRequest().getPageIndex() == 0 && page.getRows().isEmpty()) {
                 showEmpty("No data available");
+                return;
+            }
+            if (page.getRequest() == adapter.getPreviousRequest()) {
+                adapter.prependPage(page);
+            } else {
+                adapter.appendPage(page);
             }
+            hideLoading();
+            // Keep loading while the visible rows are still close to an edge
+            recyclerView.post(this::loadAroundScrollPosition);
         });
         
         // Observe errors
         databaseViewModel.getErrorMessage().observe(getViewLifecycleOwner(), errorMessage -> {
             if (errorMessage != null && !errorMessage.isEmpty()) {
                 Toast.makeText(requireContext(), errorMessage, Toast.LENGTH_LONG).show();
+                // A page still in flight reports its own failure below
+                if (pendingRequest == null && adapter.getItemCount() == 0) {
+                    showEmpty("Error loading data");
+                }
+            }
+        });
+        
+        // Stop waiting only if the page that failed is the one still pending
+        databaseViewModel.getFailedTablePage().observe(getViewLifecycleOwner(), request -> {
+            if (request == null || request != pendingRequest) {
+                return;
+            }
+            pendingRequest = null;
+            if (adapter.getItemCount() == 0) {
                 showEmpty("Error loading data");
             }
         });
@@ -117,6 +153,39 @@ public class TableViewFragment extends Fragment {
         databaseViewModel.loadTableStructure(tableName);
     }
     
+    @Override
+    public void onDestroyView() {
+        // Stop loading rows nobody will see
+        databaseViewModel.cancelQuery();
+        adapter.releasePages();
+        super.onDestroyView();
+    }
+    
+    /**
+     * Load the page above or below the retained rows when the visible rows come close to it
+     */
+    private void loadAroundScrollPosition() {
+        if (pendingRequest != null || adapter.getItemCount() == 0) {
+            return;
+        }
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+        
+        if (lastVisible >= adapter.getItemCount() - PREFETCH_ROWS && adapter.getNextRequest() != null) {
+            loadPage(adapter.getNextRequest());
+        } else if (firstVisible <= PREFETCH_ROWS && adapter.getPreviousRequest() != null) {
+            loadPage(adapter.getPreviousRequest());
+        }
+    }
+    
+    private void loadPage(PageRequest request) {
+        pendingRequest = request;
+        databaseViewModel.loadTablePage(request);
+    }
+    
     private void showLoading() {
         progressBar.setVisibility(View.VISIBLE);
         recyclerView.setVisibility(View.GONE);
@@ -1,69 +1,103 @@
 package io.celox.querycore.viewmodel;
 
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import io.celox.querycore.database.BatchResult;
+import io.celox.querycore.database.ConnectionHealthMonitor;
+import io.celox.querycore.database.CursorOptions;
 import io.celox.querycore.database.DatabaseService;
-import io.celox.querycore.database.MongoDbDatabaseService;
-import io.celox.querycore.database.MySqlDatabaseService;
-import io.celox.querycore.database.MySqlNativeDatabaseService;
+import io.celox.querycore.database.DatabaseSessionManager;
+import io.celox.querycore.database.DatabaseTaskScheduler;
+import io.celox.querycore.database.MetadataCache;
+import io.celox.querycore.database.PageRequest;
+import io.celox.querycore.database.QueryHandle;
+import io.celox.querycore.database.QueryResultCache;
+import io.celox.querycore.database.RowCursor;
+import io.celox.querycore.database.TablePage;
 import io.celox.querycore.models.ConnectionInfo;
+import io.celox.querycore.models.QueryResult;
+import io.celox.querycore.repository.ConnectionRepository;
 import io.celox.querycore.utils.DatabaseTestUtils;
 
-public class DatabaseViewModel extends ViewModel {
+public class DatabaseViewModel extends AndroidViewModel {
     
-    private DatabaseService databaseService;
-    private ExecutorService executorService;
+    // The first rows of a query are shown after this many rows
+    private static final int FIRST_CHUNK_ROWS = 50;
+    // Then the shown rows grow by this many rows, or after this interval if rows arrive slowly
+    private static final int CHUNK_ROWS = 500;
+    private static final long CHUNK_INTERVAL_MS = 500;
+    // Each preview is a copy, further rows are only shown with the complete result
+    private static final int PREVIEW_MAX_ROWS = 5000;
+    
+    private final ConnectionRepository connectionRepository;
+    private final DatabaseSessionManager sessionManager;
+    // The session on screen, other sessions stay connected in the manager
+    private volatile DatabaseSessionManager.Session activeSession;
+    private volatile DatabaseService databaseService;
+    private final DatabaseTaskScheduler scheduler = DatabaseTaskScheduler.getInstance();
+    // Cancelling blocks for the grace period, so it never waits behind the queries it cancels
+    private final ExecutorService cancelExecutor = Executors.newSingleThreadExecutor();
+    private volatile QueryHandle runningQuery;
+    // Database whose tables are on screen, refreshed table lists of other databases are not shown
+    private volatile String shownTablesDatabase;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     
     private MutableLiveData<ConnectionInfo> currentConnection = new MutableLiveData<>();
     private MutableLiveData<Boolean> isConnected = new MutableLiveData<>(false);
     private MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private MutableLiveData<List<String>> databases = new MutableLiveData<>();
     private MutableLiveData<List<String>> tables = new MutableLiveData<>();
-    private MutableLiveData<List<Map<String, Object>>> queryResults = new MutableLiveData<>();
+    private MutableLiveData<QueryResult> queryResults = new MutableLiveData<>();
+    private MutableLiveData<QueryResult> queryPreview = new MutableLiveData<>();
+    // Query whose rows the preview shows, main thread only
+    private QueryHandle previewQuery;
+    private MutableLiveData<Boolean> queryRunning = new MutableLiveData<>(false);
+    private MutableLiveData<TablePage> tablePage = new MutableLiveData<>();
+    // Page request that failed, so the table screen can stop waiting for exactly that page
+    private MutableLiveData<PageRequest> failedTablePage = new MutableLiveData<>();
     private MutableLiveData<Map<String, String>> tableStructure = new MutableLiveData<>();
     private MutableLiveData<String> diagnosticInfo = new MutableLiveData<>();
     
-    public DatabaseViewModel() {
-        // Ensure we have enough threads for database operations
-        executorService = Executors.newFixedThreadPool(4);
+    public DatabaseViewModel(@NonNull Application application) {
+        super(application);
+        connectionRepository = new ConnectionRepository(application);
+        // Only the health of the session on screen is shown
+        sessionManager = new DatabaseSessionManager((session, state) -> {
+            if (session == activeSession) {
+                isConnected.postValue(state == ConnectionHealthMonitor.State.HEALTHY);
+            }
+        });
     }
     
     public void connect(ConnectionInfo connectionInfo) {
-        executorService.execute(() -> {
+        // Not counted against the previous session, the new one does not exist yet
+        schedule(DatabaseTaskScheduler.Lane.QUERY, null, () -> {
             try {
-                // Disconnect from previous connection if any
-                if (databaseService != null && databaseService.isConnected()) {
-                    databaseService.disconnect();
-                }
-                
-                // Create appropriate database service
-                switch (connectionInfo.getType()) {
-                    case MYSQL:
-                        databaseService = new MySqlNativeDatabaseService();
-                        Log.d("DatabaseViewModel", "Using MySQL native driver");
-                        break;
-                    case MARIADB:
-                        databaseService = new MySqlDatabaseService(); // Using MariaDB driver
-                        Log.d("DatabaseViewModel", "Using MariaDB driver");
-                        break;
-                    case MONGODB:
-                        databaseService = new MongoDbDatabaseService();
-                        Log.d("DatabaseViewModel", "Using MongoDB driver");
-                        break;
-                }
-                
-                // Connect to database
-                databaseService.connect(connectionInfo);
+                // Switch to the connection, the previous one stays open in the session manager
+                // so switching back to it does not connect again
+                DatabaseSessionManager.Session session = sessionManager.open(connectionInfo);
+                setActiveSession(session);
+                rememberAuthMechanism(connectionInfo, session.getService());
                 
                 // Update LiveData
                 currentConnection.postValue(connectionInfo);
@@ -74,6 +108,7 @@ public class DatabaseViewModel extends ViewModel {
                 loadDatabases();
                 
             } catch (Exception e) {
+                setActiveSession(null);
                 isConnected.postValue(false);
                 
                 // Provide more detailed error information
@@ -100,10 +135,12 @@ public class DatabaseViewModel extends ViewModel {
     }
     
     public void disconnect() {
-        executorService.execute(() -> {
+        schedule(DatabaseTaskScheduler.Lane.QUERY, () -> {
             try {
-                if (databaseService != null && databaseService.isConnected()) {
-                    databaseService.disconnect();
+                DatabaseSessionManager.Session session = activeSession;
+                setActiveSession(null);
+                if (session != null) {
+                    sessionManager.close(session.getConnectionInfo());
                 }
                 isConnected.postValue(false);
                 currentConnection.postValue(null);
@@ -115,13 +152,16 @@ public class DatabaseViewModel extends ViewModel {
     }
     
     public void loadDatabases() {
-        executorService.execute(() -> {
+        DatabaseSessionManager.Session session = activeSession;
+        postCached(databases, MetadataCache.KEY_DATABASES);
+        schedule(DatabaseTaskScheduler.Lane.METADATA, () -> {
             try {
-                if (databaseService != null && databaseService.isConnected()) {
+                if (isServiceReady(session)) {
                     Log.d("DatabaseViewModel", "Loading databases from " + 
                           (currentConnection.getValue() != null ? currentConnection.getValue().getHost() : "unknown host"));
                     
-                    List<String> dbs = databaseService.getDatabases();
+                    List<String> dbs = session.getService().getDatabases();
+                    reportSuccess(session);
                     
                     if (dbs != null && !dbs.isEmpty()) {
                         Log.d("DatabaseViewModel", "Successfully loaded " + dbs.size() + " databases");
@@ -134,9 +174,9 @@ public class DatabaseViewModel extends ViewModel {
                     }
                 } else {
                     Log.w("DatabaseViewModel", "Cannot load databases: Not connected");
-                    errorMessage.postValue("Cannot load databases: Not connected");
                 }
             } catch (Exception e) {
+                reportFailure(session, e);
                 String errorMsg = "Failed to load databases: " + e.getMessage();
                 Log.e("DatabaseViewModel", errorMsg, e);
                 
@@ -168,58 +208,490 @@ public class DatabaseViewModel extends ViewModel {
     }
     
     public void loadTables(String database) {
-        executorService.execute(() -> {
+        shownTablesDatabase = database;
+        postCached(tables, MetadataCache.tablesKey(database));
+        DatabaseSessionManager.Session session = activeSession;
+        DatabaseService service = session != null ? session.getService() : null;
+        String previousDatabase = service != null ? service.getCurrentDatabase() : null;
+        if (service != null) {
+            // Work submitted from now on runs in this database, even if it starts before the tables load
+            service.selectDatabase(database);
+        }
+        schedule(DatabaseTaskScheduler.Lane.METADATA, () -> {
             try {
-                if (databaseService != null && databaseService.isConnected()) {
-                    List<String> tableList = databaseService.getTables(database);
+                if (isServiceReady(session)) {
+                    List<String> tableList = service.getTables(database);
+                    reportSuccess(session);
                     tables.postValue(tableList);
                     errorMessage.postValue(null);
                 }
             } catch (Exception e) {
+                // Go back to the previous database unless another one was selected meanwhile
+                if (service != null && previousDatabase != null && database.equals(service.getCurrentDatabase())) {
+                    service.selectDatabase(previousDatabase);
+                }
+                reportFailure(session, e);
                 errorMessage.postValue("Failed to load tables: " + e.getMessage());
             }
         });
     }
     
+    /**
+     * Run a query from the query screen. The rows read so far are delivered through
+     * {@link #getQueryPreview()} while the query runs, the complete result through {@link #getQueryResults()}.
+     */
     public void executeQuery(String query) {
-        executorService.execute(() -> {
+        previewQuery = null;
+        queryPreview.setValue(null);
+        Consumer<QueryResult> onResult = results -> {
+            publishQueryResults(results);
+            errorMessage.postValue(null);
+        };
+        DatabaseService service = databaseService;
+        if (service != null && service.getResultCache().isCacheable(query)) {
+            QueryResultCache cache = service.getResultCache();
+            runCached(cache, QueryResultCache.queryKey(service.getCurrentDatabase(), query),
+                    cache.referencedTables(query), (handle, refresh) -> streamQuery(service, query, handle, !refresh),
+                    results -> results, onResult, QueryResult::release, "Query execution failed: ", null);
+            return;
+        }
+        runCancellable(handle -> streamQuery(service, query, handle, true),
+                onResult, QueryResult::release, "Query execution failed: ");
+    }
+    
+    /**
+     * Read a query through a cursor and post growing copies of the rows read so far:
+     * the first after {@link #FIRST_CHUNK_ROWS} rows, then every {@link #CHUNK_ROWS} rows or
+     * {@link #CHUNK_INTERVAL_MS}, until {@link #PREVIEW_MAX_ROWS} or the rows spill to disk
+     * @param preview false to only deliver the complete result, e.g. when it refreshes a cached one on screen
+     * @return The complete result
+     */
+    private QueryResult streamQuery(DatabaseService service, String query, QueryHandle handle,
+                                    boolean preview) throws Exception {
+        long startTime = System.currentTimeMillis();
+        QueryResult.Builder builder = new QueryResult.Builder();
+        try (RowCursor cursor = service.openCursor(query, CursorOptions.defaults(), handle)) {
+            int shownRows = 0;
+            long shownAt = startTime;
+            while (cursor.fetchInto(builder, FIRST_CHUNK_ROWS) > 0) {
+                if (handle.isCancelled()) {
+                    throw new Exception("Query cancelled");
+                }
+                int rows = builder.getRowCount();
+                long now = System.currentTimeMillis();
+                if (preview && rows <= PREVIEW_MAX_ROWS && !builder.isSpilled()
+                        && (shownRows == 0 || rows - shownRows >= CHUNK_ROWS || now - shownAt >= CHUNK_INTERVAL_MS)) {
+                    QueryResult snapshot = builder.snapshot();
+                    snapshot.setExecutionTimeMs(now - startTime);
+                    // A replaced query must not show its rows
+                    mainHandler.post(() -> {
+                        if (runningQuery == handle) {
+                            previewQuery = handle;
+                            queryPreview.setValue(snapshot);
+                        }
+                    });
+                    shownRows = rows;
+                    shownAt = now;
+                }
+            }
+        } catch (Exception e) {
+            builder.discard();
+            // Failed or cancelled, the rows shown so far stay but are no longer loading
+            mainHandler.post(() -> {
+                if (previewQuery == handle) {
+                    previewQuery = null;
+                    queryPreview.setValue(null);
+                }
+            });
+            throw e;
+        }
+        QueryResult result = builder.build();
+        result.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        Log.d("DatabaseViewModel", "Query streamed " + result.getRowCount() + " rows in " + result.getExecutionTimeMs() + "ms");
+        return result;
+    }
+    
+    /**
+     * Load one page of a table, delivered through {@link #getTablePage()}.
+     * The first page comes from the result cache if it holds the table.
+     * @param request The first page or the next/previous request of an already loaded page
+     */
+    public void loadTablePage(PageRequest request) {
+        // A cached page answered an earlier request, it is delivered as the answer to this one
+        Consumer<TablePage> onResult = page -> tablePage.postValue(page.getRequest() == request ? page
+                : new TablePage(request, page.getRows(), page.getKeyColumn(), page.getLastKey()));
+        DatabaseService service = databaseService;
+        if (service != null && request.getPageIndex() == 0 && request.getAfterKey() == null
+                && request.getOffset() == 0) {
+            runCached(service.getResultCache(),
+                    QueryResultCache.pageKey(service.getCurrentDatabase(), request.getTable(), request.getPageSize()),
+                    Collections.singleton(request.getTable().toLowerCase(Locale.ROOT)),
+                    (handle, refresh) -> service.executePage(request, handle), TablePage::getRows,
+                    onResult, page -> page.getRows().release(), "Failed to load table data: ",
+                    () -> failedTablePage.postValue(request));
+            return;
+        }
+        runCancellable(handle -> service.executePage(request, handle),
+                onResult, page -> page.getRows().release(), "Failed to load table data: ",
+                () -> failedTablePage.postValue(request));
+    }
+    
+    /**
+     * Deliver a cached result at once and run the query in the background anyway,
+     * the fresh result is delivered a second time and replaces the cached one
+     * @param cache The result cache of the connection
+     * @param key The query or page key
+     * @param tables Tables the query reads, null if unknown
+     * @param call The query
+     * @param rows The rows of a result, which count against the cache size
+     * @param onResult Receives the cached and the fresh result
+     * @param discard Frees the result of a query cancelled after it returned
+     * @param failurePrefix Start of the error message shown on failure
+     * @param onFailure Runs if the query failed or could not run, may be null
+     */
+    private <T> void runCached(QueryResultCache cache, String key, Set<String> tables, CachedCall<T> call,
+                               Function<T, QueryResult> rows, Consumer<T> onResult, Consumer<T> discard,
+                               String failurePrefix, Runnable onFailure) {
+        QueryResultCache.Cached<T> cached = cache.get(key);
+        if (cached != null) {
+            onResult.accept(cached.getValue());
+        }
+        runCancellable(handle -> {
+            long generation = cache.getGeneration();
+            T result = call.run(handle, cached != null);
+            cache.put(key, result, rows.apply(result), tables, generation);
+            return result;
+        }, onResult, discard, failurePrefix, onFailure);
+    }
+    
+    /**
+     * A query that can be stopped through {@link #cancelQuery()}
+     */
+    private interface CancellableCall<T> {
+        T run(QueryHandle handle) throws Exception;
+    }
+    
+    /**
+     * A query behind the result cache
+     */
+    private interface CachedCall<T> {
+        /**
+         * @param refresh Whether a stale cached result is already shown
+         */
+        T run(QueryHandle handle, boolean refresh) throws Exception;
+    }
+    
+    /**
+     * Run a query on the executor as the running query, a new one replaces the one still running
+     * @param call The query
+     * @param onResult Receives the result unless the query was cancelled meanwhile
+     * @param discard Frees the result of a query cancelled after it returned
+     * @param failurePrefix Start of the error message shown on failure
+     */
+    private <T> void runCancellable(CancellableCall<T> call, Consumer<T> onResult, Consumer<T> discard,
+                                    String failurePrefix) {
+        runCancellable(call, onResult, discard, failurePrefix, null);
+    }
+    
+    /**
+     * @param onFailure Runs if the query failed or could not run, not if it was cancelled. May be null.
+     */
+    private <T> void runCancellable(CancellableCall<T> call, Consumer<T> onResult, Consumer<T> discard,
+                                    String failurePrefix, Runnable onFailure) {
+        QueryHandle handle = new QueryHandle();
+        QueryHandle previous = runningQuery;
+        runningQuery = handle;
+        if (previous != null) {
+            cancelExecutor.execute(previous::cancel);
+        }
+        queryRunning.setValue(true);
+        
+        DatabaseSessionManager.Session session = activeSession;
+        boolean scheduled = schedule(DatabaseTaskScheduler.Lane.QUERY, inSubmittedDatabase(() -> {
             try {
-                if (databaseService != null && databaseService.isConnected()) {
-                    List<Map<String, Object>> results = databaseService.executeQuery(query);
-                    queryResults.postValue(results);
-                    errorMessage.postValue(null);
+                if (handle.isCancelled()) {
+                    return;
+                }
+                if (!isServiceReady(session)) {
+                    if (onFailure != null) {
+                        onFailure.run();
+                    }
+                    return;
+                }
+                T result = call.run(handle);
+                reportSuccess(session);
+                if (handle.isCancelled()) {
+                    discard.accept(result);
+                } else {
+                    onResult.accept(result);
                 }
             } catch (Exception e) {
-                errorMessage.postValue("Query execution failed: " + e.getMessage());
+                if (handle.isCancelled()) {
+                    Log.d("DatabaseViewModel", "Query cancelled: " + e.getMessage());
+                    reportSuccess(session);
+                } else {
+                    reportFailure(session, e);
+                    errorMessage.postValue(failurePrefix + e.getMessage());
+                    if (onFailure != null) {
+                        onFailure.run();
+                    }
+                }
+            } finally {
+                handle.finish();
+                if (runningQuery == handle) {
+                    runningQuery = null;
+                    queryRunning.postValue(false);
+                }
+            }
+        }));
+        if (!scheduled) {
+            handle.finish();
+            if (runningQuery == handle) {
+                runningQuery = null;
+                queryRunning.setValue(false);
+            }
+            if (onFailure != null) {
+                onFailure.run();
+            }
+        }
+    }
+    
+    /**
+     * Stop the running query, if any. Safe to call from the main thread and when nothing runs.
+     */
+    public void cancelQuery() {
+        QueryHandle handle = runningQuery;
+        if (handle == null) {
+            return;
+        }
+        runningQuery = null;
+        queryRunning.setValue(false);
+        cancelExecutor.execute(handle::cancel);
+    }
+    
+    /**
+     * Show a new result and release the spill file of the one it replaces.
+     * Runs on the main thread so observers have switched to the new result before the old one is released.
+     */
+    private void publishQueryResults(QueryResult results) {
+        mainHandler.post(() -> {
+            QueryResult previous = queryResults.getValue();
+            previewQuery = null;
+            queryPreview.setValue(null);
+            queryResults.setValue(results);
+            if (previous != null && previous != results) {
+                previous.release();
             }
         });
     }
     
     public void executeUpdate(String query) {
-        executorService.execute(() -> {
+        DatabaseSessionManager.Session session = activeSession;
+        runInSession(DatabaseTaskScheduler.Lane.QUERY, inSubmittedDatabase(() -> {
             try {
-                if (databaseService != null && databaseService.isConnected()) {
-                    int rowsAffected = databaseService.executeUpdate(query);
+                if (isServiceReady(session)) {
+                    int rowsAffected = session.getService().executeUpdate(query);
+                    reportSuccess(session);
                     errorMessage.postValue("Update successful. Rows affected: " + rowsAffected);
                 }
             } catch (Exception e) {
+                reportFailure(session, e);
                 errorMessage.postValue("Update failed: " + e.getMessage());
             }
-        });
+        }));
+    }
+    
+    /**
+     * Apply several write statements in one round trip, the summary is posted as message
+     */
+    public void executeBatch(List<String> statements) {
+        DatabaseSessionManager.Session session = activeSession;
+        runInSession(DatabaseTaskScheduler.Lane.QUERY, inSubmittedDatabase(() -> {
+            try {
+                if (isServiceReady(session)) {
+                    BatchResult result = session.getService().executeBatch(statements);
+                    reportSuccess(session);
+                    StringBuilder message = new StringBuilder("Batch finished: ").append(result);
+                    for (int i = 0; i < result.size(); i++) {
+                        if (result.isFailed(i)) {
+                            // The first failure is usually the one to fix
+                            message.append("\nStatement ").append(i + 1).append(" failed: ").append(result.getError(i));
+                            break;
+                        }
+                    }
+                    errorMessage.postValue(message.toString());
+                }
+            } catch (Exception e) {
+                reportFailure(session, e);
+                errorMessage.postValue("Batch failed: " + e.getMessage());
+            }
+        }));
     }
     
     public void loadTableStructure(String table) {
-        executorService.execute(() -> {
+        DatabaseSessionManager.Session session = activeSession;
+        schedule(DatabaseTaskScheduler.Lane.METADATA, inSubmittedDatabase(() -> {
             try {
-                if (databaseService != null && databaseService.isConnected()) {
-                    Map<String, String> structure = databaseService.getTableStructure(table);
+                if (isServiceReady(session)) {
+                    Map<String, String> structure = session.getService().getTableStructure(table);
+                    reportSuccess(session);
                     tableStructure.postValue(structure);
                     errorMessage.postValue(null);
                 }
             } catch (Exception e) {
+                reportFailure(session, e);
                 errorMessage.postValue("Failed to load table structure: " + e.getMessage());
             }
-        });
+        }));
+    }
+    
+    /**
+     * Run work of the active session on the shared database threads
+     * @return false if the lane was full, the user was told to try again
+     */
+    private boolean schedule(DatabaseTaskScheduler.Lane lane, Runnable work) {
+        return schedule(lane, activeSession, work);
+    }
+    
+    /**
+     * @param connection Key the work counts against for the per-connection limit, null for none
+     */
+    private boolean schedule(DatabaseTaskScheduler.Lane lane, Object connection, Runnable work) {
+        try {
+            scheduler.execute(lane, connection, work);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.w("DatabaseViewModel", e.getMessage() + "\n" + scheduler);
+            errorMessage.postValue(e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Run a write after all writes of the session submitted before it, so they apply in the order
+     * the user sent them. Reads stay on their lanes and run side by side.
+     * @return false if the session's queue was full, the user was told to try again
+     */
+    private boolean runInSession(DatabaseTaskScheduler.Lane lane, Runnable work) {
+        DatabaseSessionManager.Session session = activeSession;
+        if (session == null) {
+            // Not connected, the work finds no session and tells the user
+            return schedule(lane, null, work);
+        }
+        try {
+            session.getExecutor().execute(lane, work);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.w("DatabaseViewModel", e.getMessage() + "\n" + session.getExecutor());
+            errorMessage.postValue(e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Bind work to the database that is current now, so it runs there even if another database
+     * is selected before it starts
+     */
+    private Runnable inSubmittedDatabase(Runnable work) {
+        DatabaseService service = databaseService;
+        if (service == null) {
+            return work;
+        }
+        String database = service.getCurrentDatabase();
+        return () -> {
+            try {
+                service.runInDatabase(database, () -> {
+                    work.run();
+                    return null;
+                });
+            } catch (Exception e) {
+                // The work reports its own failures, only the wrapper itself can end up here
+                Log.e("DatabaseViewModel", "Running in database " + database + " failed: " + e.getMessage(), e);
+            }
+        };
+    }
+    
+    /**
+     * Whether operations can be sent to a session's connection, otherwise the user is told why not.
+     * Reads the cached health state, so no ping is sent before each operation.
+     * @param session The session that was active when the work was submitted
+     */
+    private boolean isServiceReady(DatabaseSessionManager.Session session) {
+        // A stopped monitor belongs to a session closed after the work was submitted
+        if (session == null || session.getHealthMonitor().getState() == ConnectionHealthMonitor.State.STOPPED) {
+            errorMessage.postValue("Not connected");
+            return false;
+        }
+        if (!session.getHealthMonitor().isHealthy()) {
+            // The heartbeat probes the server and marks the session healthy once it answers again
+            errorMessage.postValue("Connection lost, reconnecting...");
+            return false;
+        }
+        session.touch();
+        return true;
+    }
+    
+    /**
+     * Record the outcome on the health of the session the work ran on, which may no longer be on screen
+     */
+    private void reportSuccess(DatabaseSessionManager.Session session) {
+        if (session != null) {
+            session.getHealthMonitor().reportSuccess();
+        }
+    }
+    
+    private void reportFailure(DatabaseSessionManager.Session session, Exception e) {
+        if (session != null) {
+            session.getHealthMonitor().reportFailure(e);
+        }
+    }
+    
+    /**
+     * Store how a saved connection authenticated, so the next connect tries that first
+     */
+    private void rememberAuthMechanism(ConnectionInfo connectionInfo, DatabaseService service) {
+        String mechanism = service.getAuthMechanism();
+        if (connectionInfo.getId() > 0 && mechanism != null
+                && !mechanism.equals(connectionInfo.getAuthMechanism())) {
+            Log.d("DatabaseViewModel", "Remembering auth mechanism " + mechanism + " for " + connectionInfo.getName());
+            connectionInfo.setAuthMechanism(mechanism);
+            connectionRepository.updateAuthMechanism(connectionInfo.getId(), mechanism);
+        }
+    }
+    
+    private void setActiveSession(DatabaseSessionManager.Session session) {
+        activeSession = session;
+        databaseService = session != null ? session.getService() : null;
+        if (session != null) {
+            session.getService().getMetadataCache().setListener(
+                    (key, value) -> onMetadataRefreshed(session, key, value));
+        }
+    }
+    
+    /**
+     * Show databases or tables that a background refresh of the metadata cache found to have changed
+     */
+    @SuppressWarnings("unchecked")
+    private void onMetadataRefreshed(DatabaseSessionManager.Session session, String key, Object value) {
+        if (session != activeSession) {
+            return;
+        }
+        if (MetadataCache.KEY_DATABASES.equals(key)) {
+            databases.postValue((List<String>) value);
+        } else if (shownTablesDatabase != null && MetadataCache.tablesKey(shownTablesDatabase).equals(key)) {
+            tables.postValue((List<String>) value);
+        }
+    }
+    
+    /**
+     * Post a cached value right away, the load that follows only adds a network round trip if nothing is cached
+     */
+    private <T> void postCached(MutableLiveData<T> target, String key) {
+        DatabaseService service = databaseService;
+        T cached = service != null ? service.getMetadataCache().peek(key) : null;
+        if (cached != null) {
+            target.postValue(cached);
+        }
     }
     
     /**
@@ -227,7 +699,7 @@ public class DatabaseViewModel extends ViewModel {
      * This can help determine if there are permission issues or if the database is empty
      */
     public void runMongoDbDiagnostics() {
-        executorService.execute(() -> {
+        schedule(DatabaseTaskScheduler.Lane.BACKGROUND, () -> {
             try {
                 ConnectionInfo info = currentConnection.getValue();
                 if (info == null) {
@@ -261,7 +733,7 @@ public class DatabaseViewModel extends ViewModel {
      * This is useful for verifying if the user has write permissions
      */
     public void createMongoDbTestCollection() {
-        executorService.execute(() -> {
+        schedule(DatabaseTaskScheduler.Lane.BACKGROUND, () -> {
             try {
                 ConnectionInfo info = currentConnection.getValue();
                 if (info == null) {
@@ -315,10 +787,33 @@ public class DatabaseViewModel extends ViewModel {
         return tables;
     }
     
-    public LiveData<List<Map<String, Object>>> getQueryResults() {
+    public LiveData<QueryResult> getQueryResults() {
         return queryResults;
     }
     
+    /**
+     * Rows of the running query read so far, null once the complete result is published
+     */
+    public LiveData<QueryResult> getQueryPreview() {
+        return queryPreview;
+    }
+    
+    public LiveData<Boolean> getQueryRunning() {
+        return queryRunning;
+    }
+    
+    public LiveData<TablePage> getTablePage() {
+        return tablePage;
+    }
+    
+    /**
+     * Page requests of {@link #loadTablePage} that failed or could not run. The error itself is
+     * reported through {@link #getErrorMessage()}.
+     */
+    public LiveData<PageRequest> getFailedTablePage() {
+        return failedTablePage;
+    }
+    
     public LiveData<Map<String, String>> getTableStructure() {
         return tableStructure;
     }
@@ -340,14 +835,17 @@ public class DatabaseViewModel extends ViewModel {
 
     @Override
     protected void onCleared() {
-        executorService.shutdown();
-        try {
-            if (databaseService != null && databaseService.isConnected()) {
-                databaseService.disconnect();
-            }
-        } catch (Exception e) {
-            errorMessage.postValue("Error disconnecting: " + e.getMessage());
+        QueryHandle handle = runningQuery;
+        if (handle != null) {
+            cancelExecutor.execute(handle::cancel);
+        }
+        cancelExecutor.shutdown();
+        connectionRepository.shutdown();
+        if (queryResults.getValue() != null) {
+            queryResults.getValue().release();
         }
+        setActiveSession(null);
+        sessionManager.closeAll();
         super.onCleared();
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package io.celox.querycore.database;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.SocketException;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ConnectionHealthMonitor}.
+ */
+public class ConnectionHealthMonitorTest {
+
+    private final List<ConnectionHealthMonitor> monitors = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private DatabaseService service(BooleanSupplier isConnected) {
+        return (DatabaseService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DatabaseService.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("isConnected")) {
+                        return isConnected.getAsBoolean();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private ConnectionHealthMonitor monitor(BooleanSupplier isConnected, long probeTimeoutMs) {
+        ConnectionHealthMonitor monitor = new ConnectionHealthMonitor(service(isConnected), 100, probeTimeoutMs, null);
+        monitors.add(monitor);
+        return monitor;
+    }
+
+    // Never answers until the test ends, like an unreachable server
+    private boolean hang() {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static void awaitState(ConnectionHealthMonitor monitor, ConnectionHealthMonitor.State state)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (monitor.getState() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, monitor.getState());
+    }
+
+    @After
+    public void stopMonitors() {
+        release.countDown();
+        for (ConnectionHealthMonitor monitor : monitors) {
+            monitor.stop();
+        }
+    }
+
+    @Test
+    public void heartbeat_marksUnansweredProbeUnhealthy() throws Exception {
+        ConnectionHealthMonitor monitor = monitor(this::hang, 200);
+
+        awaitState(monitor, ConnectionHealthMonitor.State.UNHEALTHY);
+
+        assertFalse(monitor.isHealthy());
+        assertEquals(1, monitor.getConsecutiveFailures());
+    }
+
+    @Test
+    public void heartbeat_ofOtherSessionsKeepsRunningWhileOneHangs() throws Exception {
+        monitor(this::hang, 5000);
+        AtomicInteger pings = new AtomicInteger();
+        ConnectionHealthMonitor healthy = monitor(() -> pings.incrementAndGet() > 0, 5000);
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (pings.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertTrue(pings.get() >= 3);
+        assertTrue(healthy.isHealthy());
+    }
+
+    @Test
+    public void heartbeat_recoversAfterServerAnswersAgain() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ConnectionHealthMonitor monitor = monitor(() -> calls.incrementAndGet() > 1, 5000);
+
+        awaitState(monitor, ConnectionHealthMonitor.State.UNHEALTHY);
+        // Down, probed again after the short unhealthy interval
+        awaitState(monitor, ConnectionHealthMonitor.State.HEALTHY);
+        assertEquals(0, monitor.getConsecutiveFailures());
+    }
+
+    @Test
+    public void isConnectionFailure_ignoresBusyPoolAndStatementErrors() {
+        assertTrue(ConnectionHealthMonitor.isConnectionFailure(new SQLException("Link failure", "08S01")));
+        assertTrue(ConnectionHealthMonitor.isConnectionFailure(new Exception("Query failed", new SocketException())));
+        assertFalse(ConnectionHealthMonitor.isConnectionFailure(
+                new SQLTransientConnectionException("Timed out waiting for a free connection", "HYT00")));
+        assertFalse(ConnectionHealthMonitor.isConnectionFailure(new SQLException("Syntax error", "42000")));
+    }
+}
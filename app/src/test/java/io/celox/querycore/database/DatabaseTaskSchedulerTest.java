@@ -0,0 +1,101 @@
+package io.celox.querycore.database;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lanes and per-connection limit of {@link DatabaseTaskScheduler}.
+ */
+public class DatabaseTaskSchedulerTest {
+
+    // Released by every test, so no lane thread stays blocked
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void releaseTasks() {
+        release.countDown();
+    }
+
+    private Runnable blockingTask(CountDownLatch started, AtomicInteger running, AtomicInteger maxRunning,
+                                  CountDownLatch done) {
+        return () -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            done.countDown();
+        };
+    }
+
+    @Test
+    public void execute_limitsRunningTasksPerConnection() throws Exception {
+        DatabaseTaskScheduler scheduler = new DatabaseTaskScheduler(2);
+        Object connection = new Object();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        // The metadata and query lanes have threads for four tasks together
+        for (int i = 0; i < 4; i++) {
+            DatabaseTaskScheduler.Lane lane = i % 2 == 0
+                    ? DatabaseTaskScheduler.Lane.QUERY : DatabaseTaskScheduler.Lane.METADATA;
+            scheduler.execute(lane, connection, blockingTask(started, running, maxRunning, done));
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(2, running.get());
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void execute_doesNotHoldBackOtherConnections() throws Exception {
+        DatabaseTaskScheduler scheduler = new DatabaseTaskScheduler(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.execute(DatabaseTaskScheduler.Lane.QUERY, "busy",
+                blockingTask(started, new AtomicInteger(), new AtomicInteger(), done));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch otherRan = new CountDownLatch(1);
+        scheduler.execute(DatabaseTaskScheduler.Lane.QUERY, "idle", otherRan::countDown);
+
+        assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void execute_rejectsTasksBeyondTheLaneQueue() throws Exception {
+        DatabaseTaskScheduler scheduler = new DatabaseTaskScheduler(DatabaseTaskScheduler.DEFAULT_CONNECTION_LIMIT);
+        DatabaseTaskScheduler.Lane lane = DatabaseTaskScheduler.Lane.BACKGROUND;
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        // Occupies the lane's only thread
+        scheduler.execute(lane, blockingTask(started, new AtomicInteger(), new AtomicInteger(), done));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < lane.queueCapacity; i++) {
+            scheduler.execute(lane, () -> { });
+        }
+
+        assertThrows(RejectedExecutionException.class, () -> scheduler.execute(lane, () -> { }));
+
+        DatabaseTaskScheduler.Stats stats = scheduler.getStats(lane);
+        assertEquals(lane.queueCapacity, stats.waiting);
+        assertEquals(1, stats.running);
+        assertEquals(1, stats.rejected);
+    }
+}
@@ -0,0 +1,91 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link JdbcBatch} and the {@link BatchResult} it produces.
+ */
+public class JdbcBatchTest {
+
+    private interface BatchCall {
+        int[] executeBatch() throws SQLException;
+    }
+
+    private Statement statement(BatchCall call) {
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("executeBatch")) {
+                        return call.executeBatch();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Test
+    public void execute_copiesUpdateCounts() throws Exception {
+        BatchResult result = JdbcBatch.execute(statement(() -> new int[]{1, 3, Statement.SUCCESS_NO_INFO}),
+                3, System.currentTimeMillis());
+
+        assertEquals(3, result.size());
+        assertEquals(0, result.getFailedCount());
+        assertEquals(1, result.getCount(0));
+        assertEquals(BatchResult.SUCCESS_NO_INFO, result.getCount(2));
+        assertEquals(4, result.getRowsAffected());
+    }
+
+    @Test
+    public void execute_reportsStatementsAfterStoppedFailureAsNotExecuted() throws Exception {
+        // The driver stopped at the second statement and reported only the first count
+        BatchResult result = JdbcBatch.execute(statement(() -> {
+            throw new BatchUpdateException("Duplicate entry", "23000", 1062, new int[]{1});
+        }), 4, System.currentTimeMillis());
+
+        assertFalse(result.isFailed(0));
+        assertTrue(result.isFailed(1));
+        assertEquals("Duplicate entry", result.getError(1));
+        assertTrue(result.isFailed(2));
+        assertEquals("Not executed after an earlier failure", result.getError(3));
+        assertEquals(3, result.getFailedCount());
+        assertEquals(1, result.getRowsAffected());
+    }
+
+    @Test
+    public void execute_keepsCountsAroundFailureWhenDriverContinued() throws Exception {
+        BatchResult result = JdbcBatch.execute(statement(() -> {
+            throw new BatchUpdateException("Duplicate entry", "23000", 1062,
+                    new int[]{1, Statement.EXECUTE_FAILED, 2});
+        }), 3, System.currentTimeMillis());
+
+        assertEquals(1, result.getFailedCount());
+        assertTrue(result.isFailed(1));
+        assertEquals(2, result.getCount(2));
+        assertTrue(result.toString().startsWith("2 of 3 statements succeeded, 3 rows affected"));
+    }
+
+    @Test(expected = BatchUpdateException.class)
+    public void execute_throwsConnectionFailure() throws Exception {
+        JdbcBatch.execute(statement(() -> {
+            throw new BatchUpdateException("Communications link failure", "08S01", 0, new int[0]);
+        }), 2, System.currentTimeMillis());
+    }
+
+    @Test
+    public void batchResult_countsBulkTotalsInRowsAffected() {
+        BatchResult result = new BatchResult(3);
+        result.setCount(0, 1);
+        result.setFailed(2, "Write concern error: waiting for replication timed out");
+        // Two updates of one bulk write only reported together
+        result.addBulkRowsAffected(5);
+
+        assertEquals(BatchResult.SUCCESS_NO_INFO, result.getCount(1));
+        assertEquals(6, result.getRowsAffected());
+        assertTrue(result.toString().startsWith("2 of 3 statements succeeded, 6 rows affected"));
+    }
+}
@@ -0,0 +1,321 @@
+package io.celox.querycore.database;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link JdbcConnectionPool}.
+ */
+public class JdbcConnectionPoolTest {
+
+    private final List<Connection> closed = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> catalogs = Collections.synchronizedList(new ArrayList<>());
+    // Database each physical connection is switched to, as the driver tracks it
+    private final Map<Connection, String> current = new ConcurrentHashMap<>();
+    // SQLState thrown by createStatement(), null to succeed
+    private volatile String failState;
+    private JdbcConnectionPool pool;
+
+    private JdbcConnectionPool newPool(int maxSize) throws Exception {
+        pool = new JdbcConnectionPool("test", this::newConnection, new JdbcConnectionPool.Config()
+                .setMinSize(1)
+                .setMaxSize(maxSize)
+                .setBorrowTimeoutMs(200));
+        return pool;
+    }
+
+    private Connection newConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            closed.add((Connection) proxy);
+                            return null;
+                        case "isClosed":
+                            return closed.contains(proxy);
+                        case "getAutoCommit":
+                        case "isValid":
+                            return true;
+                        case "setCatalog":
+                            catalogs.add((String) args[0]);
+                            current.put((Connection) proxy, (String) args[0]);
+                            return null;
+                        case "getCatalog":
+                            return current.get(proxy);
+                        case "createStatement":
+                            if (failState != null) {
+                                throw new SQLException("Failed", failState);
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    @After
+    public void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void borrow_reusesReturnedConnection() throws Exception {
+        newPool(2);
+        Connection first = pool.borrow();
+        first.close();
+        Connection second = pool.borrow();
+
+        assertEquals(first.toString(), second.toString());
+        assertEquals(1, pool.getStats().total);
+        assertEquals(1, pool.getStats().inUse);
+        second.close();
+        assertEquals(2, pool.getStats().borrows);
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    public void borrow_timesOutWhenAllConnectionsAreInUse() throws Exception {
+        newPool(2);
+        pool.borrow();
+        pool.borrow();
+
+        try {
+            pool.borrow();
+            fail("Borrow should time out");
+        } catch (SQLTransientConnectionException e) {
+            // A busy pool must not look like a lost connection
+            assertEquals("HYT00", e.getSQLState());
+            assertFalse(ConnectionHealthMonitor.isConnectionFailure(e));
+        }
+        assertEquals(1, pool.getStats().timeouts);
+        assertEquals(2, pool.getStats().total);
+    }
+
+    @Test
+    public void borrow_withoutWaitFailsAtOnceWhenAllConnectionsAreInUse() throws Exception {
+        pool = new JdbcConnectionPool("test", this::newConnection, new JdbcConnectionPool.Config()
+                .setMinSize(1)
+                .setMaxSize(1)
+                .setBorrowTimeoutMs(5000));
+        pool.borrow();
+
+        long start = System.currentTimeMillis();
+        assertThrows(SQLTransientConnectionException.class, () -> pool.borrow(null, 0));
+
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(0, pool.getStats().timeouts);
+    }
+
+    @Test
+    public void close_ofBrokenConnectionDiscardsIt() throws Exception {
+        newPool(2);
+        Connection leased = pool.borrow();
+        failState = "08S01";
+        try {
+            leased.createStatement();
+            fail("createStatement should fail");
+        } catch (SQLException e) {
+            assertEquals("08S01", e.getSQLState());
+        }
+
+        leased.close();
+
+        assertEquals(1, closed.size());
+        assertEquals(0, pool.getStats().total);
+        assertEquals(1, pool.getStats().invalidated);
+    }
+
+    @Test
+    public void close_afterStatementErrorKeepsConnection() throws Exception {
+        newPool(2);
+        Connection leased = pool.borrow();
+        failState = "42S02";
+        try {
+            leased.createStatement();
+            fail("createStatement should fail");
+        } catch (SQLException e) {
+            assertEquals("42S02", e.getSQLState());
+        }
+
+        leased.close();
+
+        assertTrue(closed.isEmpty());
+        assertEquals(1, pool.getStats().idle);
+    }
+
+    @Test
+    public void borrow_switchesCatalogOnlyWhenItChanges() throws Exception {
+        newPool(1);
+        pool.setCatalog("shop");
+        pool.borrow().close();
+        pool.borrow().close();
+        pool.borrow("crm").close();
+
+        assertEquals("[shop, crm]", catalogs.toString());
+    }
+
+    @Test
+    public void setCatalog_onBorrowedConnectionIsTracked() throws Exception {
+        newPool(1);
+        pool.setCatalog("shop");
+        Connection leased = pool.borrow();
+        leased.setCatalog("crm");
+        leased.close();
+
+        // Already in crm, no switch needed; the pool's database needs one
+        pool.borrow("crm").close();
+        pool.borrow().close();
+
+        assertEquals("[shop, crm, shop]", catalogs.toString());
+    }
+
+    @Test
+    public void close_resyncsCatalogSwitchedByStatement() throws Exception {
+        newPool(1);
+        pool.setCatalog("shop");
+        Connection leased = pool.borrow();
+        // A USE crm executed as a plain statement, only the driver sees it
+        for (Connection physical : current.keySet()) {
+            current.put(physical, "crm");
+        }
+        leased.close();
+
+        pool.borrow().close();
+
+        assertEquals("[shop, shop]", catalogs.toString());
+    }
+
+    @Test
+    public void usedDatabase_parsesUseStatements() {
+        assertEquals("shop", JdbcConnectionPool.usedDatabase("USE shop"));
+        assertEquals("shop", JdbcConnectionPool.usedDatabase("  use shop;\n"));
+        assertEquals("odd`name", JdbcConnectionPool.usedDatabase("/* switch */ USE `odd``name`"));
+        assertNull(JdbcConnectionPool.usedDatabase("SELECT * FROM users"));
+        assertNull(JdbcConnectionPool.usedDatabase("USE shop; DROP TABLE users"));
+        assertNull(JdbcConnectionPool.usedDatabase(null));
+    }
+
+    @Test
+    public void returnedConnection_refusesFurtherUse() throws Exception {
+        newPool(1);
+        Connection leased = pool.borrow();
+        leased.close();
+
+        assertTrue(leased.isClosed());
+        try {
+            leased.createStatement();
+            fail("A returned connection should not be usable");
+        } catch (SQLException e) {
+            assertEquals("08003", e.getSQLState());
+        }
+    }
+
+    @Test
+    public void close_refusesBorrowsAndClosesIdleConnections() throws Exception {
+        newPool(2);
+        Connection leased = pool.borrow();
+        pool.close();
+
+        assertTrue(pool.isClosed());
+        assertThrows(SQLException.class, () -> pool.borrow());
+        leased.close();
+        assertEquals(1, closed.size());
+        assertEquals(0, pool.getStats().total);
+    }
+
+    @Test
+    public void evictIdle_closesConnectionsAboveMinimum() throws Exception {
+        pool = new JdbcConnectionPool("test", this::newConnection, new JdbcConnectionPool.Config()
+                .setMinSize(1)
+                .setMaxSize(2)
+                .setIdleTimeoutMs(100));
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        first.close();
+        second.close();
+
+        // The evictor runs once a second at the earliest
+        long deadline = System.currentTimeMillis() + 5000;
+        while (closed.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(1, pool.getStats().evicted);
+        assertEquals(1, pool.getStats().total);
+        assertEquals(1, closed.size());
+    }
+
+    @Test
+    public void runWhileBorrowed_skipsReturnedConnection() throws Exception {
+        newPool(2);
+        Connection leased = pool.borrow();
+        leased.close();
+        AtomicBoolean ran = new AtomicBoolean();
+
+        assertFalse(pool.runWhileBorrowed(leased, () -> ran.set(true)));
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void runWhileBorrowed_holdsReturnUntilActionEnds() throws Exception {
+        newPool(2);
+        Connection leased = pool.borrow();
+        CountDownLatch acting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread killer = new Thread(() -> {
+            try {
+                pool.runWhileBorrowed(leased, () -> {
+                    acting.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        killer.start();
+        assertTrue(acting.await(5, TimeUnit.SECONDS));
+
+        Thread closer = new Thread(() -> {
+            try {
+                leased.close();
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        closer.start();
+        closer.join(200);
+
+        // The session is not back in the pool while the action runs
+        assertTrue(closer.isAlive());
+        assertEquals(0, pool.getStats().idle);
+        release.countDown();
+        closer.join(5000);
+        killer.join(5000);
+        assertEquals(1, pool.getStats().idle);
+    }
+}
@@ -0,0 +1,127 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+
+import io.celox.querycore.models.DictionaryColumnVector;
+import io.celox.querycore.models.DoubleColumnVector;
+import io.celox.querycore.models.FloatColumnVector;
+import io.celox.querycore.models.LongColumnVector;
+import io.celox.querycore.models.ObjectColumnVector;
+import io.celox.querycore.models.QueryResult;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link JdbcResultDecoder}.
+ */
+public class JdbcResultDecoderTest {
+
+    // Columns: id BIGINT, status VARCHAR (3 values), name VARCHAR (all distinct)
+    private int row = -1;
+
+    private ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return 3;
+                        case "getColumnType":
+                            return (Integer) args[0] == 1 ? Types.BIGINT : Types.VARCHAR;
+                        case "getColumnName":
+                            return new String[]{"id", "status", "name"}[(Integer) args[0] - 1];
+                        case "getColumnTypeName":
+                            return (Integer) args[0] == 1 ? "BIGINT" : "VARCHAR";
+                        case "isSigned":
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private ResultSet resultSet() {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLong":
+                            return (long) row;
+                        case "wasNull":
+                            return false;
+                        case "getString":
+                        case "getObject":
+                            return (Integer) args[0] == 2 ? "status" + row % 3 : "name" + row;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void readRow_keepsDictionaryOnlyForLowCardinalityColumns() throws Exception {
+        QueryResult.Builder builder = new QueryResult.Builder(null, 0);
+        JdbcResultDecoder decoder = new JdbcResultDecoder(metaData(), builder);
+        ResultSet resultSet = resultSet();
+
+        for (row = 0; row < 3000; row++) {
+            decoder.readRow(resultSet);
+        }
+        QueryResult result = builder.build();
+
+        assertTrue(result.getVector(0) instanceof LongColumnVector);
+        assertTrue(result.getVector(1) instanceof DictionaryColumnVector);
+        assertEquals(3, ((DictionaryColumnVector) result.getVector(1)).getDictionarySize());
+        assertTrue(result.getVector(2) instanceof ObjectColumnVector);
+        assertEquals(3000, result.getRowCount());
+        assertEquals("name2999", result.getValue(2999, "name"));
+        assertEquals("status1", result.getValue(1000, "status"));
+        assertEquals(1500L, result.getValue(1500, "id"));
+    }
+
+    @Test
+    public void readRow_keepsRealColumnsSinglePrecision() throws Exception {
+        // Connector/J reports MySQL FLOAT as REAL and DOUBLE as DOUBLE
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return 2;
+                        case "getColumnType":
+                            return (Integer) args[0] == 1 ? Types.REAL : Types.DOUBLE;
+                        case "getColumnName":
+                            return (Integer) args[0] == 1 ? "ratio" : "amount";
+                        case "getColumnTypeName":
+                            return (Integer) args[0] == 1 ? "FLOAT" : "DOUBLE";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        ResultSet resultSet = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getFloat":
+                            return 0.1f;
+                        case "getDouble":
+                            return 0.1d;
+                        case "wasNull":
+                            return false;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        QueryResult.Builder builder = new QueryResult.Builder(null, 0);
+        JdbcResultDecoder decoder = new JdbcResultDecoder(metaData, builder);
+
+        decoder.readRow(resultSet);
+        QueryResult result = builder.build();
+
+        assertTrue(result.getVector(0) instanceof FloatColumnVector);
+        assertTrue(result.getVector(1) instanceof DoubleColumnVector);
+        assertEquals("0.1", String.valueOf(result.getValue(0, "ratio")));
+        assertEquals("0.1", String.valueOf(result.getValue(0, "amount")));
+    }
+}
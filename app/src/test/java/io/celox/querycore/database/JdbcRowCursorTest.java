@@ -0,0 +1,172 @@
+package io.celox.querycore.database;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.celox.querycore.models.QueryResult;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streaming {@link JdbcRowCursor} and {@link CursorOptions}.
+ */
+public class JdbcRowCursorTest {
+
+    private static final int ROWS = 120;
+
+    // Calls on the fake statement, e.g. "setFetchSize 500"
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    private JdbcConnectionPool pool;
+
+    private JdbcConnectionPool newPool() throws Exception {
+        pool = new JdbcConnectionPool("test", () -> (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return statement();
+                        case "getAutoCommit":
+                        case "isValid":
+                            return true;
+                        case "isClosed":
+                            return false;
+                        default:
+                            return null;
+                    }
+                }), new JdbcConnectionPool.Config().setMinSize(1).setMaxSize(1));
+        return pool;
+    }
+
+    private PreparedStatement statement() {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    calls.add(method.getName() + (args != null && args.length == 1 ? " " + args[0] : ""));
+                    return method.getName().equals("executeQuery") ? resultSet() : null;
+                });
+    }
+
+    private ResultSet resultSet() {
+        int[] row = {0};
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return 1;
+                        case "getColumnType":
+                            return Types.INTEGER;
+                        case "getColumnName":
+                            return "id";
+                        case "getColumnTypeName":
+                            return "INT";
+                        case "isSigned":
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMetaData":
+                            return metaData;
+                        case "next":
+                            return ++row[0] <= ROWS;
+                        case "getInt":
+                            return row[0];
+                        case "getObject":
+                            return (Object) row[0];
+                        case "wasNull":
+                            return false;
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @After
+    public void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void fetchInto_readsInChunksUntilExhausted() throws Exception {
+        newPool();
+        CursorOptions options = CursorOptions.defaults().setFetchSize(50).setMaxRows(1000);
+        QueryResult.Builder builder = new QueryResult.Builder(null, 0);
+
+        try (RowCursor cursor = JdbcRowCursor.open(pool, pool.borrow(), "SELECT id FROM t", options, true,
+                new QueryHandle())) {
+            assertEquals("id", cursor.getColumns().get(0).getName());
+            assertEquals(50, cursor.fetchInto(builder, 50));
+            assertEquals(50, cursor.fetchInto(builder, 50));
+            assertEquals(20, cursor.fetchInto(builder, 50));
+            assertEquals(0, cursor.fetchInto(builder, 50));
+            assertTrue(cursor.isExhausted());
+            assertEquals(ROWS, cursor.getRowsRead());
+        }
+
+        QueryResult result = builder.build();
+        assertEquals(ROWS, result.getRowCount());
+        assertEquals(ROWS, result.getValue(ROWS - 1, 0));
+        assertTrue(calls.contains("setFetchSize 50"));
+        assertTrue(calls.contains("setMaxRows 1000"));
+        // Read to the end, nothing to cancel
+        assertFalse(calls.contains("cancel"));
+        assertEquals(1, pool.getStats().idle);
+    }
+
+    @Test
+    public void close_beforeEndCancelsAndReturnsConnection() throws Exception {
+        newPool();
+        RowCursor cursor = JdbcRowCursor.open(pool, pool.borrow(), "SELECT id FROM t", CursorOptions.defaults(),
+                true, new QueryHandle());
+        assertTrue(cursor.next());
+        assertEquals(1, cursor.getValue(0));
+        assertEquals(0, pool.getStats().idle);
+
+        cursor.close();
+
+        assertTrue(calls.contains("cancel"));
+        assertTrue(calls.contains("close"));
+        assertFalse(cursor.next());
+        assertEquals(1, pool.getStats().idle);
+        assertFalse(calls.contains("setMaxRows 0"));
+    }
+
+    @Test
+    public void close_beforeEndWithoutCancelOnlyCloses() throws Exception {
+        newPool();
+        RowCursor cursor = JdbcRowCursor.open(pool, pool.borrow(), "SELECT id FROM t", CursorOptions.defaults(),
+                false, new QueryHandle());
+        cursor.next();
+
+        cursor.close();
+
+        assertFalse(calls.contains("cancel"));
+        assertEquals(1, pool.getStats().idle);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cursorOptions_rejectNonPositiveFetchSize() {
+        CursorOptions.defaults().setFetchSize(0);
+    }
+
+    @Test
+    public void cursorOptions_treatNegativeMaxRowsAsNoLimit() {
+        assertEquals(0, CursorOptions.defaults().setMaxRows(-5).getMaxRows());
+        assertEquals(CursorOptions.DEFAULT_FETCH_SIZE, CursorOptions.defaults().getFetchSize());
+    }
+}
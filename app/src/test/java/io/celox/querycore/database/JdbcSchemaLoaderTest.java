@@ -0,0 +1,126 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.celox.querycore.models.DatabaseSchema;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the INFORMATION_SCHEMA bulk load of {@link JdbcSchemaLoader}.
+ */
+public class JdbcSchemaLoaderTest {
+
+    private final List<String> queries = new ArrayList<>();
+    private final List<Object> boundDatabases = new ArrayList<>();
+
+    private Connection connection(Object[][] columns, Object[][] indexes) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        String sql = (String) args[0];
+                        queries.add(sql);
+                        return statement(sql.contains("STATISTICS") ? indexes : columns);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private PreparedStatement statement(Object[][] rows) {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setString":
+                            boundDatabases.add(args[1]);
+                            return null;
+                        case "executeQuery":
+                            return resultSet(rows);
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private ResultSet resultSet(Object[][] rows) {
+        int[] position = {-1};
+        Object[] last = {null};
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++position[0] < rows.length;
+                        case "getString":
+                        case "getLong":
+                        case "getInt":
+                            last[0] = rows[position[0]][(Integer) args[0] - 1];
+                            if (last[0] == null && !method.getName().equals("getString")) {
+                                return method.getName().equals("getLong") ? (Object) 0L : (Object) 0;
+                            }
+                            return last[0];
+                        case "wasNull":
+                            return last[0] == null;
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void load_groupsColumnsAndIndexesByTable() throws Exception {
+        Object[][] columns = {
+                {"customers", 12L, "id", "int(11)", "NO", "PRI"},
+                {"customers", 12L, "email", "varchar(255)", "YES", "UNI"},
+                {"orders", null, "id", "bigint(20)", "NO", "PRI"},
+                {"orders", null, "customer_id", "int(11)", "NO", "MUL"},
+        };
+        Object[][] indexes = {
+                {"customers", "PRIMARY", 0, "id"},
+                {"customers", "email", 0, "email"},
+                {"orders", "by_customer", 1, "customer_id"},
+                {"orders", "by_customer", 1, "id"},
+                // A view, not part of the base tables
+                {"order_totals", "ignored", 1, "total"},
+        };
+
+        DatabaseSchema schema = JdbcSchemaLoader.load(connection(columns, indexes), "shop");
+
+        assertEquals(2, queries.size());
+        assertEquals(2, boundDatabases.size());
+        assertEquals("shop", boundDatabases.get(0));
+        assertEquals("[customers, orders]", schema.getTableNames().toString());
+
+        DatabaseSchema.Table customers = schema.getTable("customers");
+        assertEquals(12, customers.getEstimatedRows());
+        assertEquals(2, customers.getColumns().size());
+        assertTrue(customers.getColumns().get(0).isPrimaryKey());
+        assertTrue(customers.getColumns().get(1).isNullable());
+        assertEquals("varchar(255)", customers.getStructure().get("email"));
+
+        DatabaseSchema.Table orders = schema.getTable("orders");
+        assertEquals(-1, orders.getEstimatedRows());
+        assertEquals(1, orders.getIndexes().size());
+        DatabaseSchema.Index byCustomer = orders.getIndexes().get(0);
+        assertFalse(byCustomer.isUnique());
+        assertEquals("[customer_id, id]", byCustomer.getColumns().toString());
+        assertNull(schema.getTable("order_totals"));
+    }
+
+    @Test
+    public void load_returnsEmptySchemaForEmptyDatabase() throws Exception {
+        DatabaseSchema schema = JdbcSchemaLoader.load(connection(new Object[0][], new Object[0][]), "empty");
+
+        assertEquals("empty", schema.getDatabase());
+        assertTrue(schema.getTables().isEmpty());
+    }
+}
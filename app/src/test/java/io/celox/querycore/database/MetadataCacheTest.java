@@ -0,0 +1,103 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the stale-while-revalidate {@link MetadataCache}.
+ */
+public class MetadataCacheTest {
+
+    @Test
+    public void get_loadsOnceWhileFresh() throws Exception {
+        MetadataCache cache = new MetadataCache(60 * 1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get("key", () -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get("key", () -> "v" + loads.incrementAndGet()));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getLoads());
+    }
+
+    @Test
+    public void get_servesStaleValueAndRefreshesInBackground() throws Exception {
+        // Every entry is stale right away
+        MetadataCache cache = new MetadataCache(0);
+        CountDownLatch refreshed = new CountDownLatch(1);
+        AtomicReference<Object> refreshedValue = new AtomicReference<>();
+        cache.setListener((key, value) -> {
+            refreshedValue.set(value);
+            refreshed.countDown();
+        });
+        cache.get("key", () -> "old");
+
+        Object served = cache.get("key", () -> "new");
+
+        assertEquals("old", served);
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+        assertEquals("new", refreshedValue.get());
+        assertEquals("new", cache.peek("key"));
+    }
+
+    @Test
+    public void refresh_withUnchangedValue_doesNotNotify() throws Exception {
+        MetadataCache cache = new MetadataCache(0);
+        AtomicInteger notifications = new AtomicInteger();
+        cache.setListener((key, value) -> notifications.incrementAndGet());
+        CountDownLatch loaded = new CountDownLatch(1);
+        cache.get("key", () -> "same");
+
+        cache.get("key", () -> {
+            loaded.countDown();
+            return "same";
+        });
+
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        // The listener would be told right after the load, give it the chance
+        Thread.sleep(100);
+        assertEquals(0, notifications.get());
+    }
+
+    @Test
+    public void load_invalidatedWhileRunning_isNotStored() throws Exception {
+        MetadataCache cache = new MetadataCache(60 * 1000);
+
+        Object value = cache.get("key", () -> {
+            // DDL runs while the value is loading
+            cache.invalidateAll();
+            return "before DDL";
+        });
+
+        assertEquals("before DDL", value);
+        assertNull(cache.peek("key"));
+    }
+
+    @Test
+    public void put_withGenerationFromBeforeInvalidation_isDropped() {
+        MetadataCache cache = new MetadataCache(60 * 1000);
+        long loadGeneration = cache.getGeneration();
+
+        cache.invalidate("other");
+        cache.put("key", "before DDL", loadGeneration);
+        cache.put("fresh", "after DDL", cache.getGeneration());
+
+        assertNull(cache.peek("key"));
+        assertEquals("after DDL", cache.peek("fresh"));
+    }
+
+    @Test
+    public void isSchemaChange_detectsDdlOnly() {
+        assertTrue(MetadataCache.isSchemaChange("  /* add */ ALTER TABLE t ADD c INT"));
+        assertTrue(MetadataCache.isSchemaChange("drop table t"));
+        assertFalse(MetadataCache.isSchemaChange("UPDATE t SET created = 1"));
+        assertFalse(MetadataCache.isSchemaChange(null));
+    }
+}
@@ -0,0 +1,129 @@
+package io.celox.querycore.database;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoCredential;
+import com.mongodb.ServerAddress;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MongoConnectRace}. Clients are created but never connect,
+ * the ping of each candidate is replaced by a fixed delay and outcome.
+ */
+public class MongoConnectRaceTest {
+
+    private static final ServerAddress SERVER = new ServerAddress("localhost", 27017);
+    private static final MongoClientOptions OPTIONS = MongoClientOptions.builder().serverSelectionTimeout(100).build();
+
+    private final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Candidate whose ping succeeds or fails after a delay
+     */
+    private class FakeCandidate extends MongoConnectRace.Candidate {
+        private final long delayMs;
+        private final String failure;
+
+        FakeCandidate(String mechanism, boolean authenticated, long delayMs, String failure) {
+            super(mechanism, authenticated ? MongoCredential.createCredential("user", "admin", "secret".toCharArray()) : null);
+            this.delayMs = delayMs;
+            this.failure = failure;
+        }
+
+        @Override
+        MongoClient open(ServerAddress serverAddress, MongoClientOptions options) {
+            String mechanism = getMechanism();
+            return new MongoClient(serverAddress, options) {
+                @Override
+                public void close() {
+                    closed.add(mechanism);
+                    super.close();
+                }
+            };
+        }
+
+        @Override
+        void ping(MongoClient client, String database) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Interrupted");
+            }
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+        }
+    }
+
+    private MongoConnectRace.Winner race(long deadlineMs, MongoConnectRace.Candidate... candidates) throws Exception {
+        return new MongoConnectRace(SERVER, OPTIONS, "admin", Arrays.asList(candidates)).run(deadlineMs);
+    }
+
+    @Test
+    public void run_prefersAuthenticatedOverFasterAnonymous() throws Exception {
+        MongoConnectRace.Winner winner = race(5000,
+                new FakeCandidate("SCRAM-SHA-256", true, 200, null),
+                new FakeCandidate("anonymous", false, 0, null));
+
+        assertEquals("SCRAM-SHA-256", winner.candidate.getMechanism());
+        assertEquals(Collections.singletonList("anonymous"), closed);
+        winner.client.close();
+    }
+
+    @Test
+    public void run_takesFirstAuthenticatedToConnect() throws Exception {
+        MongoConnectRace.Winner winner = race(5000,
+                new FakeCandidate("SCRAM-SHA-256", true, 1000, null),
+                new FakeCandidate("MONGODB-CR", true, 0, null));
+
+        assertEquals("MONGODB-CR", winner.candidate.getMechanism());
+        winner.client.close();
+    }
+
+    @Test
+    public void run_fallsBackToAnonymousWhenAuthenticationFails() throws Exception {
+        MongoConnectRace.Winner winner = race(5000,
+                new FakeCandidate("SCRAM-SHA-256", true, 100, "Authentication failed"),
+                new FakeCandidate("anonymous", false, 0, null));
+
+        assertEquals("anonymous", winner.candidate.getMechanism());
+        assertTrue(closed.contains("SCRAM-SHA-256"));
+        winner.client.close();
+    }
+
+    @Test
+    public void run_throwsFailureOfMostPreferredCandidate() {
+        try {
+            race(5000,
+                    new FakeCandidate("SCRAM-SHA-256", true, 50, "Authentication failed"),
+                    new FakeCandidate("anonymous", false, 0, "Unauthorized"));
+            fail("Race should fail");
+        } catch (Exception e) {
+            assertEquals("Authentication failed", e.getMessage());
+        }
+        assertTrue(closed.containsAll(Arrays.asList("SCRAM-SHA-256", "anonymous")));
+    }
+
+    @Test
+    public void run_timesOutWhileAuthenticationIsPending() {
+        try {
+            race(200,
+                    new FakeCandidate("SCRAM-SHA-256", true, 5000, null),
+                    new FakeCandidate("anonymous", false, 0, null));
+            fail("Race should time out");
+        } catch (Exception e) {
+            assertTrue(e instanceof TimeoutException);
+        }
+        // The anonymous client is not used while the server may still require authentication
+        assertTrue(closed.contains("anonymous"));
+    }
+}
@@ -0,0 +1,132 @@
+package io.celox.querycore.database;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for how {@link MongoDbDatabaseService} turns query documents into cursors.
+ * The client is never used for I/O: cursors are only configured, not iterated.
+ */
+public class MongoDbDatabaseServiceTest {
+
+    private MongoClient client;
+    private DBCollection collection;
+
+    @Before
+    public void createCollection() {
+        client = new MongoClient(new ServerAddress("localhost", 27017),
+                MongoClientOptions.builder().serverSelectionTimeout(100).build());
+        collection = client.getDB("shop").getCollection("orders");
+    }
+
+    @After
+    public void closeClient() {
+        client.close();
+    }
+
+    @Test
+    public void openFindCursor_appliesProjectionLimitAndBatchSize() {
+        BasicDBObject query = BasicDBObject.parse("{collection: 'orders', find: {status: 'open'},"
+                + " projection: {total: 1}, sort: {total: -1}, skip: 20, limit: 10, batchSize: 5, hint: 'status_1'}");
+
+        DBCursor cursor = MongoDbDatabaseService.openFindCursor(query, collection, 100);
+
+        assertEquals(new BasicDBObject("status", "open"), cursor.getQuery());
+        assertEquals(new BasicDBObject("total", 1), cursor.getKeysWanted());
+        assertEquals(10, cursor.getLimit());
+        assertEquals(5, cursor.getBatchSize());
+    }
+
+    @Test
+    public void openFindCursor_capsDirectQueryWithoutLimit() {
+        DBCursor direct = MongoDbDatabaseService.openFindCursor(
+                BasicDBObject.parse("{collection: 'orders'}"), collection, 100);
+        DBCursor find = MongoDbDatabaseService.openFindCursor(
+                BasicDBObject.parse("{collection: 'orders', find: {}}"), collection, 100);
+        DBCursor explicit = MongoDbDatabaseService.openFindCursor(
+                BasicDBObject.parse("{collection: 'orders', limit: 500}"), collection, 100);
+
+        assertEquals(100, direct.getLimit());
+        assertEquals(0, find.getLimit());
+        assertEquals(500, explicit.getLimit());
+    }
+
+    @Test
+    public void openFindCursor_rejectsMalformedOptions() {
+        String[] invalid = {
+                "{collection: 'orders', find: 'status'}",
+                "{collection: 'orders', projection: ['total']}",
+                "{collection: 'orders', limit: -1}",
+                "{collection: 'orders', skip: 'ten'}",
+                "{collection: 'orders', maxTimeMS: 1e12}",
+                "{collection: 'orders', hint: 1}",
+        };
+        for (String query : invalid) {
+            try {
+                MongoDbDatabaseService.openFindCursor(BasicDBObject.parse(query), collection, 100);
+                fail("Should reject " + query);
+            } catch (IllegalArgumentException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void parsePipeline_keepsStagesInOrder() {
+        List<DBObject> pipeline = MongoDbDatabaseService.parsePipeline(BasicDBObject.parse(
+                "{collection: 'orders', aggregate: [{$match: {status: 'open'}},"
+                        + " {$group: {_id: '$customer', total: {$sum: '$total'}}}]}"));
+
+        assertEquals(2, pipeline.size());
+        assertTrue(pipeline.get(0).containsField("$match"));
+        assertTrue(pipeline.get(1).containsField("$group"));
+    }
+
+    @Test
+    public void parsePipeline_rejectsNonDocumentStages() {
+        assertThrows(IllegalArgumentException.class, () -> MongoDbDatabaseService.parsePipeline(
+                BasicDBObject.parse("{collection: 'orders', aggregate: {$match: {}}}")));
+        assertThrows(IllegalArgumentException.class, () -> MongoDbDatabaseService.parsePipeline(
+                BasicDBObject.parse("{collection: 'orders', aggregate: ['$match']}")));
+    }
+
+    @Test
+    public void aggregationOptions_defaultToDiskUseAndGivenBatchSize() {
+        AggregationOptions options = MongoDbDatabaseService.aggregationOptions(
+                BasicDBObject.parse("{collection: 'orders', aggregate: []}"), 500);
+
+        assertEquals(Boolean.TRUE, options.getAllowDiskUse());
+        assertEquals(Integer.valueOf(500), options.getBatchSize());
+        assertEquals(30000, options.getMaxTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void aggregationOptions_useQuerySettings() {
+        AggregationOptions options = MongoDbDatabaseService.aggregationOptions(BasicDBObject.parse(
+                "{collection: 'orders', aggregate: [], allowDiskUse: false, batchSize: 50, maxTimeMS: 5000}"), 500);
+
+        assertEquals(Boolean.FALSE, options.getAllowDiskUse());
+        assertEquals(Integer.valueOf(50), options.getBatchSize());
+        assertEquals(5000, options.getMaxTime(TimeUnit.MILLISECONDS));
+        // No batch size at all leaves it to the server
+        assertNull(MongoDbDatabaseService.aggregationOptions(
+                BasicDBObject.parse("{collection: 'orders', aggregate: []}"), 0).getBatchSize());
+        assertThrows(IllegalArgumentException.class, () -> MongoDbDatabaseService.aggregationOptions(
+                BasicDBObject.parse("{collection: 'orders', aggregate: [], allowDiskUse: 'yes'}"), 0));
+    }
+}
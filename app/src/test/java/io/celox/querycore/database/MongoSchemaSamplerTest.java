@@ -0,0 +1,64 @@
+package io.celox.querycore.database;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.celox.querycore.models.CollectionSchema;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for how {@link MongoSchemaSampler} merges sampled documents.
+ */
+public class MongoSchemaSamplerTest {
+
+    @Test
+    public void infer_mergesFieldsMissingFromSomeDocuments() {
+        BasicDBList tags = new BasicDBList();
+        tags.add("new");
+        List<DBObject> documents = Arrays.asList(
+                new BasicDBObject("_id", 1).append("name", "Ada").append("tags", tags),
+                new BasicDBObject("_id", 2).append("name", "Bob").append("age", 36),
+                new BasicDBObject("_id", 3).append("age", "unknown"));
+
+        CollectionSchema schema = MongoSchemaSampler.infer(documents);
+
+        assertEquals(3, schema.getSampleSize());
+        assertEquals("[_id, age, name, tags]", new ArrayList<>(schema.getStructure().keySet()).toString());
+        assertEquals("int|string", schema.getStructure().get("age"));
+        assertEquals("array", schema.getStructure().get("tags"));
+        assertEquals(2.0 / 3, schema.getPresence("name"), 0.0001);
+        // Arrays are not walked into
+        assertEquals(4, schema.getFields().size());
+    }
+
+    @Test
+    public void infer_recordsNestedPathsUpToDepthLimit() {
+        BasicDBObject deep = new BasicDBObject("a", new BasicDBObject("b", new BasicDBObject("c",
+                new BasicDBObject("d", 1))));
+        BasicDBObject address = new BasicDBObject("address", new BasicDBObject("city", "Berlin"));
+
+        CollectionSchema schema = MongoSchemaSampler.infer(Arrays.asList(deep, address));
+
+        assertEquals(1, schema.getField("address.city").getDepth());
+        assertEquals("string", schema.getField("address.city").getTypeSummary());
+        assertEquals("object", schema.getField("a.b.c").getTypeSummary());
+        assertNull(schema.getField("a.b.c.d"));
+        assertEquals("[a, address]", new ArrayList<>(schema.getStructure().keySet()).toString());
+    }
+
+    @Test
+    public void infer_ofEmptySampleHasNoFields() {
+        CollectionSchema schema = MongoSchemaSampler.infer(new ArrayList<DBObject>());
+
+        assertEquals(0, schema.getSampleSize());
+        assertTrue(schema.getStructure().isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.sql.Types;
+
+import io.celox.querycore.models.QueryResult;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for keyset pagination: {@link PageRequest}, {@link TablePage} and the SQL of {@link JdbcPageQuery}.
+ */
+public class PageRequestTest {
+
+    private static QueryResult rows(int count) {
+        QueryResult.Builder builder = new QueryResult.Builder(null, 0);
+        builder.addColumn("id", Types.INTEGER, "INT");
+        for (int i = 0; i < count; i++) {
+            builder.addRow(new Object[]{i});
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void nextRequest_continuesAfterLastKey() {
+        PageRequest first = PageRequest.first("orders").setPageSize(3);
+        TablePage page = new TablePage(first, rows(3), "id", 42);
+
+        PageRequest next = page.nextRequest();
+
+        assertNotNull(next);
+        assertEquals("orders", next.getTable());
+        assertEquals(1, next.getPageIndex());
+        assertEquals(3, next.getPageSize());
+        assertTrue(next.isKeyResolved());
+        assertTrue(next.isKeyset());
+        assertEquals(42, next.getAfterKey());
+        assertEquals(0, next.getOffset());
+    }
+
+    @Test
+    public void nextRequest_fallsBackToOffsetWithoutKey() {
+        PageRequest second = PageRequest.first("log").setPageSize(2).setPageIndex(1).setKeyColumn(null).setOffset(2);
+        TablePage page = new TablePage(second, rows(2), null, null);
+
+        PageRequest next = page.nextRequest();
+
+        assertFalse(next.isKeyset());
+        assertTrue(next.isKeyResolved());
+        assertEquals(4, next.getOffset());
+        assertEquals(2, page.getFirstRow());
+    }
+
+    @Test
+    public void nextRequest_isNullAfterShortPage() {
+        TablePage page = new TablePage(PageRequest.first("orders").setPageSize(10), rows(4), "id", 3);
+
+        assertFalse(page.hasMore());
+        assertNull(page.nextRequest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setPageSize_rejectsZero() {
+        PageRequest.first("orders").setPageSize(0);
+    }
+
+    @Test
+    public void buildQuery_seeksByKey() {
+        assertEquals("SELECT * FROM `orders` ORDER BY `id` LIMIT ?",
+                JdbcPageQuery.buildQuery("orders", "id", false));
+        assertEquals("SELECT * FROM `orders` WHERE `id` > ? ORDER BY `id` LIMIT ?",
+                JdbcPageQuery.buildQuery("orders", "id", true));
+    }
+
+    @Test
+    public void buildQuery_usesOffsetWithoutKey() {
+        assertEquals("SELECT * FROM `log` LIMIT ? OFFSET ?", JdbcPageQuery.buildQuery("log", null, false));
+    }
+
+    @Test
+    public void quote_escapesBackticks() {
+        assertEquals("`odd``name`", JdbcPageQuery.quote("odd`name"));
+    }
+}
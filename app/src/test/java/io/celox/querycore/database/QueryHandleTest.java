@@ -0,0 +1,83 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link QueryHandle}.
+ */
+public class QueryHandleTest {
+
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void cancel_runsActionsAndLastResortIfQueryKeepsRunning() {
+        QueryHandle handle = new QueryHandle(50);
+        handle.onCancel(() -> ran.add("cancel"));
+        handle.onCancelTimeout(() -> ran.add("kill"));
+
+        handle.cancel();
+
+        assertTrue(handle.isCancelled());
+        assertEquals("[cancel, kill]", ran.toString());
+    }
+
+    @Test
+    public void cancel_skipsLastResortIfQueryStopsInTime() {
+        QueryHandle handle = new QueryHandle(5000);
+        // The query reacts to the regular cancel and returns
+        handle.onCancel(() -> {
+            ran.add("cancel");
+            handle.finish();
+        });
+        handle.onCancelTimeout(() -> ran.add("kill"));
+
+        long start = System.currentTimeMillis();
+        handle.cancel();
+
+        assertEquals("[cancel]", ran.toString());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void cancel_afterFinishRunsNothing() {
+        QueryHandle handle = new QueryHandle(50);
+        handle.onCancel(() -> ran.add("cancel"));
+        handle.onCancelTimeout(() -> ran.add("kill"));
+        handle.finish();
+
+        handle.cancel();
+
+        assertTrue(handle.isFinished());
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    public void onCancel_runsAtOnceWhenAlreadyCancelled() {
+        QueryHandle handle = new QueryHandle(50);
+        handle.cancel();
+
+        handle.onCancel(() -> ran.add("late"));
+
+        assertEquals("[late]", ran.toString());
+    }
+
+    @Test
+    public void cancel_continuesAfterFailingAction() {
+        QueryHandle handle = new QueryHandle(50);
+        handle.onCancel(() -> {
+            throw new IllegalStateException("Statement already closed");
+        });
+        handle.onCancel(() -> ran.add("second"));
+
+        handle.cancel();
+        handle.cancel();
+
+        assertEquals("[second]", ran.toString());
+    }
+}
@@ -0,0 +1,169 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Set;
+
+import io.celox.querycore.models.QueryResult;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the per-connection {@link QueryResultCache}.
+ */
+public class QueryResultCacheTest {
+
+    private static QueryResult result(int rows) {
+        QueryResult.Builder builder = new QueryResult.Builder();
+        builder.addColumn("id", Types.INTEGER, "INT");
+        for (int i = 0; i < rows; i++) {
+            builder.addRow(new Object[]{i});
+        }
+        return builder.build();
+    }
+
+    private static void putQuery(QueryResultCache cache, String query) {
+        QueryResult result = result(10);
+        cache.put(QueryResultCache.queryKey("db", query), result, result,
+                cache.referencedTables(query), cache.getGeneration());
+    }
+
+    private static boolean isCached(QueryResultCache cache, String query) {
+        return cache.get(QueryResultCache.queryKey("db", query)) != null;
+    }
+
+    @Test
+    public void invalidateWrite_dropsOnlyResultsReadingTheTable() {
+        QueryResultCache cache = QueryResultCache.forSql();
+        putQuery(cache, "SELECT * FROM users");
+        putQuery(cache, "SELECT * FROM orders o JOIN items i ON i.order_id = o.id");
+
+        cache.invalidateWrite("UPDATE `Users` SET name = 'x' WHERE id = 1");
+
+        assertFalse(isCached(cache, "SELECT * FROM users"));
+        assertTrue(isCached(cache, "SELECT * FROM orders o JOIN items i ON i.order_id = o.id"));
+
+        cache.invalidateWrite("DELETE FROM items WHERE id = 2");
+
+        assertFalse(isCached(cache, "SELECT * FROM orders o JOIN items i ON i.order_id = o.id"));
+    }
+
+    @Test
+    public void invalidateWrite_withUnknownTable_dropsEverything() {
+        QueryResultCache cache = QueryResultCache.forSql();
+        putQuery(cache, "SELECT * FROM users");
+        putQuery(cache, "SELECT * FROM orders");
+
+        cache.invalidateWrite("UPDATE users u JOIN orders o ON o.user_id = u.id SET o.total = 0");
+
+        assertFalse(isCached(cache, "SELECT * FROM users"));
+        assertFalse(isCached(cache, "SELECT * FROM orders"));
+    }
+
+    @Test
+    public void resultsOfUnknownTables_areDroppedByAnyWrite() {
+        QueryResultCache cache = QueryResultCache.forSql();
+        // A comma join lists more tables than can be told reliably
+        putQuery(cache, "SELECT * FROM a, b");
+        putQuery(cache, "SELECT * FROM c");
+
+        cache.invalidateWrite("INSERT INTO d VALUES (1)");
+
+        assertFalse(isCached(cache, "SELECT * FROM a, b"));
+        assertTrue(isCached(cache, "SELECT * FROM c"));
+    }
+
+    @Test
+    public void put_afterInvalidationDuringLoad_isSkipped() {
+        QueryResultCache cache = QueryResultCache.forSql();
+        long loadGeneration = cache.getGeneration();
+        QueryResult result = result(10);
+
+        cache.invalidateTable("users");
+
+        assertFalse(cache.put(QueryResultCache.queryKey("db", "SELECT * FROM users"), result, result,
+                Collections.singleton("users"), loadGeneration));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedOverTheBound() {
+        long bytes = result(100).estimatedBytes();
+        QueryResultCache cache = new QueryResultCache(false, bytes * 2 + bytes / 2, 60 * 1000);
+        Set<String> tables = Collections.singleton("t");
+        for (String key : new String[]{"a", "b"}) {
+            QueryResult result = result(100);
+            cache.put(key, result, result, tables, cache.getGeneration());
+        }
+        // a is used again, so b is the least recently used entry
+        cache.get("a");
+
+        QueryResult result = result(100);
+        cache.put("c", result, result, tables, cache.getGeneration());
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void isCacheable_acceptsRepeatableReads() {
+        QueryResultCache cache = QueryResultCache.forSql();
+
+        assertTrue(cache.isCacheable("SELECT * FROM users WHERE name = 'now'"));
+        assertTrue(cache.isCacheable("/* list */ SHOW FULL TABLES"));
+        assertTrue(cache.isCacheable("SHOW CREATE TABLE orders"));
+        assertTrue(cache.isCacheable("DESCRIBE orders"));
+        assertTrue(cache.isCacheable("SELECT * FROM user"));
+        assertFalse(cache.isCacheable("UPDATE users SET name = 'x'"));
+    }
+
+    @Test
+    public void isCacheable_rejectsVolatileAndLockingReads() {
+        QueryResultCache cache = QueryResultCache.forSql();
+
+        assertFalse(cache.isCacheable("SELECT NOW()"));
+        assertFalse(cache.isCacheable("SELECT * FROM log WHERE created > CURRENT_TIMESTAMP - INTERVAL 1 HOUR"));
+        assertFalse(cache.isCacheable("SELECT * FROM users ORDER BY RAND() LIMIT 1"));
+        assertFalse(cache.isCacheable("SELECT @@version"));
+        assertFalse(cache.isCacheable("SELECT * FROM accounts WHERE id = 1 FOR UPDATE"));
+        assertFalse(cache.isCacheable("SELECT * FROM accounts LOCK IN SHARE MODE"));
+        assertFalse(cache.isCacheable("SELECT COUNT(*) INTO @total FROM users"));
+        assertFalse(cache.isCacheable("EXPLAIN ANALYZE SELECT * FROM users"));
+        assertFalse(cache.isCacheable("SHOW PROCESSLIST"));
+        assertFalse(cache.isCacheable("SHOW GLOBAL STATUS"));
+        assertFalse(cache.isCacheable("SHOW TABLE STATUS"));
+    }
+
+    @Test
+    public void isCacheable_rejectsRandomPipelines() {
+        QueryResultCache cache = QueryResultCache.forDocuments();
+
+        assertTrue(cache.isCacheable("{collection: 'orders', find: {status: 'open'}}"));
+        assertFalse(cache.isCacheable("{collection: 'orders', aggregate: [{$sample: {size: 5}}]}"));
+        assertFalse(cache.isCacheable("{collection: 'orders', aggregate: [{$match: {$expr: {$lt: ['$due', '$$NOW']}}}]}"));
+    }
+
+    @Test
+    public void queryKey_ignoresWhitespaceOutsideQuotesAndTrailingSemicolon() {
+        assertEquals(QueryResultCache.queryKey("db", "SELECT  *\n FROM t;"),
+                QueryResultCache.queryKey("db", "SELECT * FROM t"));
+        assertNotEquals(QueryResultCache.queryKey("db", "SELECT 'a  b'"),
+                QueryResultCache.queryKey("db", "SELECT 'a b'"));
+        assertNotEquals(QueryResultCache.queryKey("db1", "SELECT 1"),
+                QueryResultCache.queryKey("db2", "SELECT 1"));
+    }
+
+    @Test
+    public void get_marksEntriesOlderThanTtlStale() {
+        QueryResultCache cache = new QueryResultCache(false, QueryResultCache.DEFAULT_MAX_BYTES, 0);
+        QueryResult result = result(1);
+        cache.put("key", result, result, null, cache.getGeneration());
+
+        QueryResultCache.Cached<QueryResult> cached = cache.get("key");
+
+        assertSame(result, cached.getValue());
+        assertTrue(cached.isStale());
+    }
+}
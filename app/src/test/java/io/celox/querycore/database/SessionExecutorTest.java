@@ -0,0 +1,127 @@
+package io.celox.querycore.database;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the ordered {@link SessionExecutor}.
+ */
+public class SessionExecutorTest {
+
+    private final DatabaseTaskScheduler scheduler = new DatabaseTaskScheduler(DatabaseTaskScheduler.DEFAULT_CONNECTION_LIMIT);
+    // Released by every test, so no lane thread stays blocked
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void releaseOperations() {
+        release.countDown();
+    }
+
+    private CompletableFuture<String> submitBlocking(SessionExecutor executor, CountDownLatch started) {
+        return executor.submit(DatabaseTaskScheduler.Lane.QUERY, () -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "first";
+        });
+    }
+
+    @Test
+    public void submit_runsOperationsOneAtATimeInSubmissionOrder() throws Exception {
+        SessionExecutor executor = new SessionExecutor("test", new Object(), scheduler, 32);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        DatabaseTaskScheduler.Lane[] lanes = DatabaseTaskScheduler.Lane.values();
+
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < 20; i++) {
+            int index = i;
+            // Alternating lanes would run side by side without the executor
+            last = executor.submit(lanes[i % lanes.length], () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                order.add(index);
+                running.decrementAndGet();
+                return index;
+            });
+        }
+
+        assertEquals(Integer.valueOf(19), last.get(5, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, order);
+        assertEquals(1, maxRunning.get());
+        // The operation is counted right after its future completed
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getStats().completed < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(20, executor.getStats().completed);
+    }
+
+    @Test
+    public void submit_rejectsWhenMailboxIsFull() throws Exception {
+        SessionExecutor executor = new SessionExecutor("test", new Object(), scheduler, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> first = submitBlocking(executor, started);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = executor.submit(DatabaseTaskScheduler.Lane.QUERY, () -> "second");
+
+        assertThrows(RejectedExecutionException.class,
+                () -> executor.submit(DatabaseTaskScheduler.Lane.QUERY, () -> "third"));
+
+        assertEquals(2, executor.getStats().queued);
+        release.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void submit_deliversFailureThroughTheFuture() throws Exception {
+        SessionExecutor executor = new SessionExecutor("test", new Object(), scheduler, 4);
+
+        CompletableFuture<Object> failed = executor.submit(DatabaseTaskScheduler.Lane.QUERY, () -> {
+            throw new IllegalStateException("Duplicate entry");
+        });
+        CompletableFuture<String> next = executor.submit(DatabaseTaskScheduler.Lane.QUERY, () -> "next");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals("Duplicate entry", failure.getCause().getMessage());
+        assertEquals("next", next.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdown_failsWaitingOperationsAndRejectsNewOnes() throws Exception {
+        SessionExecutor executor = new SessionExecutor("test", new Object(), scheduler, 4);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> running = submitBlocking(executor, started);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        AtomicInteger ran = new AtomicInteger();
+        CompletableFuture<Integer> waiting = executor.submit(DatabaseTaskScheduler.Lane.QUERY,
+                ran::incrementAndGet);
+
+        executor.shutdown();
+        release.countDown();
+
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof RejectedExecutionException);
+        assertEquals(0, ran.get());
+        assertThrows(RejectedExecutionException.class,
+                () -> executor.submit(DatabaseTaskScheduler.Lane.QUERY, () -> "late"));
+    }
+}
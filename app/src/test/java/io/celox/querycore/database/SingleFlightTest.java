@@ -0,0 +1,129 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SingleFlight} and the load counters of {@link MetadataCache} built on it.
+ */
+public class SingleFlightTest {
+
+    /**
+     * Wait until a number of calls joined the one in flight
+     */
+    private static void awaitShared(SingleFlight<?, ?> flight, long shared) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (flight.getShared() < shared && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(shared, flight.getShared());
+    }
+
+    @Test
+    public void run_collapsesOverlappingCallsIntoOne() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> flight.run("databases", () -> {
+                    loads.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return "loaded";
+                })));
+            }
+            awaitShared(flight, 3);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(4, flight.getCalls());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void run_sharesTheFailureWithJoinedCalls() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> flight.run("tables", () -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    throw new IllegalStateException("Access denied");
+                })));
+            }
+            awaitShared(flight, 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                ExecutionException failure = assertThrows(ExecutionException.class,
+                        () -> result.get(5, TimeUnit.SECONDS));
+                assertEquals("Access denied", failure.getCause().getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void run_afterTheFlightEnded_loadsAgain() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        flight.run("key", loads::incrementAndGet);
+        flight.run("key", loads::incrementAndGet);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, flight.getShared());
+    }
+
+    @Test
+    public void metadataCache_countsJoinedLoads() throws Exception {
+        MetadataCache cache = new MetadataCache(60 * 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> cache.get(MetadataCache.KEY_DATABASES, () -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return "db1";
+                })));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.getJoinedLoads() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<Object> result : results) {
+                assertEquals("db1", result.get(5, TimeUnit.SECONDS));
+            }
+
+            assertEquals(1, cache.getLoads());
+            assertEquals(2, cache.getJoinedLoads());
+            cache.get(MetadataCache.KEY_DATABASES, () -> "db2");
+            assertEquals(1, cache.getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
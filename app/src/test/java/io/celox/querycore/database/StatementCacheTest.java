@@ -0,0 +1,119 @@
+package io.celox.querycore.database;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the per-connection {@link StatementCache}.
+ */
+public class StatementCacheTest {
+
+    private final List<PreparedStatement> prepared = new ArrayList<>();
+    private final Set<Object> closed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int hits = 0;
+    private int misses = 0;
+
+    private StatementCache newCache(int maxSize) {
+        Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        PreparedStatement statement = newStatement();
+                        prepared.add(statement);
+                        return statement;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return new StatementCache(connection, maxSize, hit -> {
+            if (hit) {
+                hits++;
+            } else {
+                misses++;
+            }
+        });
+    }
+
+    private PreparedStatement newStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            closed.add(proxy);
+                            return null;
+                        case "isClosed":
+                            return closed.contains(proxy);
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            // getResultSet, clearParameters and clearBatch when given back
+                            return null;
+                    }
+                });
+    }
+
+    @Test
+    public void prepare_reusesStatementGivenBack() throws Exception {
+        StatementCache cache = newCache(2);
+
+        cache.prepare("db", "SELECT 1").close();
+        cache.prepare("db", "SELECT 1").close();
+
+        assertEquals(1, prepared.size());
+        assertEquals(1, hits);
+        assertEquals(1, misses);
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    public void prepare_evictsLeastRecentlyUsedStatement() throws Exception {
+        StatementCache cache = newCache(2);
+        cache.prepare("db", "A").close();
+        cache.prepare("db", "B").close();
+        // A is used again, so B is the least recently used one
+        cache.prepare("db", "A").close();
+
+        cache.prepare("db", "C").close();
+
+        assertEquals(3, prepared.size());
+        assertTrue(closed.contains(prepared.get(1)));
+        assertFalse(closed.contains(prepared.get(0)));
+        cache.prepare("db", "A").close();
+        assertEquals(3, prepared.size());
+        cache.prepare("db", "B").close();
+        assertEquals(4, prepared.size());
+    }
+
+    @Test
+    public void evictedStatementInUse_isClosedWhenGivenBack() throws Exception {
+        StatementCache cache = newCache(1);
+        PreparedStatement inUse = cache.prepare("db", "A");
+
+        cache.prepare("db", "B").close();
+
+        assertFalse(closed.contains(prepared.get(0)));
+        inUse.close();
+        assertTrue(closed.contains(prepared.get(0)));
+    }
+
+    @Test
+    public void prepare_keysStatementsByCatalog() throws Exception {
+        StatementCache cache = newCache(4);
+
+        cache.prepare("db1", "SELECT * FROM t").close();
+        cache.prepare("db2", "SELECT * FROM t").close();
+
+        assertEquals(2, prepared.size());
+        assertEquals(0, hits);
+    }
+}
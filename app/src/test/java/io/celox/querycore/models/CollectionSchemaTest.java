@@ -0,0 +1,61 @@
+package io.celox.querycore.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CollectionSchema}.
+ */
+public class CollectionSchemaTest {
+
+    @Test
+    public void getStructure_ordersIdFirstThenByPresenceThenName() {
+        CollectionSchema schema = new CollectionSchema(3);
+        schema.record("name", 0, "string");
+        schema.record("_id", 0, "objectId");
+        schema.record("tags", 0, "array");
+        schema.record("name", 0, "string");
+        schema.record("age", 0, "int");
+        schema.record("age", 0, "int");
+        schema.record("_id", 0, "objectId");
+        schema.record("_id", 0, "objectId");
+        schema.record("address.city", 1, "string");
+
+        Map<String, String> structure = schema.getStructure();
+
+        assertEquals("[_id, age, name, tags]", new ArrayList<>(structure.keySet()).toString());
+        assertEquals("objectId", structure.get("_id"));
+        assertNull(structure.get("address.city"));
+        assertEquals(5, schema.getFields().size());
+    }
+
+    @Test
+    public void getTypeSummary_listsMixedTypesByFrequency() {
+        CollectionSchema schema = new CollectionSchema(4);
+        schema.record("price", 0, "int");
+        schema.record("price", 0, "double");
+        schema.record("price", 0, "double");
+        schema.record("price", 0, "string");
+
+        CollectionSchema.Field price = schema.getField("price");
+
+        assertEquals(4, price.getCount());
+        assertEquals("double|int|string", price.getTypeSummary());
+        assertEquals(Integer.valueOf(2), price.getTypeCounts().get("double"));
+        assertEquals("double|int|string", schema.getStructure().get("price"));
+    }
+
+    @Test
+    public void getPresence_isShareOfSampledDocuments() {
+        CollectionSchema schema = new CollectionSchema(4);
+        schema.record("email", 0, "string");
+
+        assertEquals(0.25, schema.getPresence("email"), 0.0001);
+        assertEquals(0, schema.getPresence("phone"), 0.0001);
+        assertEquals(0, new CollectionSchema(0).getPresence("email"), 0.0001);
+    }
+}
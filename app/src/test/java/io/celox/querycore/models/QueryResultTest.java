@@ -0,0 +1,228 @@
+package io.celox.querycore.models;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the columnar {@link QueryResult} model.
+ */
+public class QueryResultTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void builder_storesRowsColumnWise() {
+        QueryResult.Builder builder = new QueryResult.Builder();
+        builder.addColumn("id", Types.INTEGER, "INT");
+        builder.addColumn("name", Types.VARCHAR, "VARCHAR");
+        for (int i = 0; i < 200; i++) {
+            builder.addRow(new Object[]{i, "row" + i});
+        }
+
+        QueryResult result = builder.build();
+
+        assertEquals(200, result.getRowCount());
+        assertEquals(2, result.getColumnCount());
+        assertEquals(150, result.getValue(150, 0));
+        assertEquals("row150", result.getValue(150, "name"));
+        assertEquals(-1, result.findColumn("missing"));
+    }
+
+    @Test
+    public void builder_backfillsLateColumnsWithNull() {
+        QueryResult.Builder builder = new QueryResult.Builder();
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("_id", 1);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("_id", 2);
+        second.put("extra", "x");
+        builder.addRow(first, value -> "test");
+        builder.addRow(second, value -> "test");
+
+        QueryResult result = builder.build();
+
+        assertEquals(2, result.getColumnCount());
+        assertNull(result.getValue(0, "extra"));
+        assertEquals("x", result.getValue(1, "extra"));
+    }
+
+    @Test
+    public void snapshot_isNotChangedByLaterRows() {
+        QueryResult.Builder builder = new QueryResult.Builder();
+        builder.addColumn("id", Types.INTEGER, "INT");
+        for (int i = 0; i < 50; i++) {
+            builder.addRow(new Object[]{i});
+        }
+
+        QueryResult snapshot = builder.snapshot();
+        builder.addRow(new Object[]{50});
+
+        assertEquals(50, snapshot.getRowCount());
+        assertEquals(49, snapshot.getValue(49, "id"));
+        assertEquals(51, builder.build().getRowCount());
+    }
+
+    @Test
+    public void asMaps_exposesRowsInHeaderOrder() {
+        QueryResult.Builder builder = new QueryResult.Builder();
+        builder.addColumn("b", Types.INTEGER, "INT");
+        builder.addColumn("a", Types.INTEGER, "INT");
+        builder.addColumn("b", Types.INTEGER, "INT");
+        builder.addRow(new Object[]{1, 2, 3});
+
+        List<Map<String, Object>> rows = builder.build().asMaps();
+
+        assertEquals(1, rows.size());
+        assertEquals(2, rows.get(0).size());
+        assertEquals("[b, a]", rows.get(0).keySet().toString());
+        assertEquals(1, rows.get(0).get("b"));
+    }
+
+    @Test
+    public void typedVectors_trackNullsWithoutBoxing() {
+        QueryResult.Builder builder = new QueryResult.Builder();
+        LongColumnVector ids = new LongColumnVector();
+        DoubleColumnVector amounts = new DoubleColumnVector();
+        builder.addColumn("id", Types.BIGINT, "BIGINT", ids);
+        builder.addColumn("amount", Types.DOUBLE, "DOUBLE", amounts);
+        for (int i = 0; i < 130; i++) {
+            ids.appendLong(i);
+            if (i % 64 == 63) {
+                amounts.appendNull();
+            } else {
+                amounts.appendDouble(i * 0.5);
+            }
+            builder.commitRow();
+        }
+
+        QueryResult result = builder.build();
+
+        assertEquals(130, result.getRowCount());
+        assertEquals(129L, ((LongColumnVector) result.getVector(0)).getLong(129));
+        assertTrue(result.getVector(1).isNull(63));
+        assertTrue(result.getVector(1).isNull(127));
+        assertFalse(result.getVector(1).isNull(64));
+        assertNull(result.getValue(127, 1));
+        assertEquals(32.0, result.getValue(64, 1));
+    }
+
+    @Test
+    public void spill_readsRowsBackFromDisk() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        // A tiny budget moves every full chunk of rows to the spill file
+        QueryResult.Builder builder = new QueryResult.Builder(directory, 1);
+        IntColumnVector ids = new IntColumnVector();
+        builder.addColumn("id", Types.INTEGER, "INT", ids);
+        builder.addColumn("name", Types.VARCHAR, "VARCHAR");
+        for (int i = 0; i < 1000; i++) {
+            ids.appendInt(i);
+            builder.getVector(1).appendObject(i % 10 == 0 ? null : "row" + i);
+            builder.commitRow();
+        }
+        // Columns discovered after spilling read as null for the spilled rows
+        Map<String, Object> late = new LinkedHashMap<>();
+        late.put("id", 1000);
+        late.put("extra", "x");
+        builder.addRow(late, value -> "string");
+
+        QueryResult result = builder.build();
+
+        assertTrue(result.isSpilled());
+        assertEquals(1001, result.getRowCount());
+        assertEquals(3, result.getColumnCount());
+        assertEquals(5, result.getValue(5, 0));
+        assertEquals("row999", result.getValue(999, "name"));
+        assertNull(result.getValue(10, 1));
+        assertNull(result.getValue(5, 2));
+        assertEquals("x", result.getValue(1000, 2));
+        assertEquals(1, directory.listFiles().length);
+
+        result.release();
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void spill_keepsFloatsSinglePrecision() throws Exception {
+        QueryResult.Builder builder = new QueryResult.Builder(temporaryFolder.newFolder(), 1);
+        FloatColumnVector ratios = new FloatColumnVector();
+        builder.addColumn("ratio", Types.REAL, "FLOAT", ratios);
+        for (int i = 0; i < 1000; i++) {
+            ratios.appendFloat(i / 10f);
+            builder.commitRow();
+        }
+
+        QueryResult result = builder.build();
+
+        assertTrue(result.isSpilled());
+        assertEquals(0.1f, result.getValue(1, 0));
+        assertEquals("0.1", String.valueOf(result.getValue(1, 0)));
+        result.release();
+    }
+
+    @Test
+    public void discard_deletesSpillFileOfUnfinishedResult() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        QueryResult.Builder builder = new QueryResult.Builder(directory, 1);
+        builder.addColumn("name", Types.VARCHAR, "VARCHAR");
+        for (int i = 0; i < 1000; i++) {
+            builder.addRow(new Object[]{"row" + i});
+        }
+        assertTrue(builder.isSpilled());
+        assertEquals(1, directory.listFiles().length);
+
+        builder.discard();
+
+        assertFalse(builder.isSpilled());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void dictionaryVector_sharesRepeatedValues() {
+        DictionaryColumnVector status = new DictionaryColumnVector();
+        for (int i = 0; i < 300; i++) {
+            status.appendString(i % 3 == 0 ? null : new String(i % 2 == 0 ? "open" : "closed"));
+        }
+
+        assertEquals(300, status.size());
+        assertEquals(2, status.getDictionarySize());
+        assertNull(status.get(0));
+        assertSame(status.getText(2), status.getText(4));
+        assertEquals("closed", status.getText(1));
+
+        ObjectColumnVector plain = status.toObjectVector();
+        assertEquals(300, plain.size());
+        assertNull(plain.get(3));
+        assertEquals("open", plain.get(2));
+    }
+
+    @Test
+    public void dictionaryVector_clearDropsDictionary() {
+        DictionaryColumnVector names = new DictionaryColumnVector();
+        for (int i = 0; i < 1000; i++) {
+            names.appendString("name" + i);
+        }
+        long filled = names.estimatedBytes();
+
+        names.clear();
+        names.appendString("again");
+
+        assertEquals(1, names.getDictionarySize());
+        assertEquals("again", names.get(0));
+        assertTrue(names.estimatedBytes() * 100 < filled);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typedVectors_rejectForeignValues() {
+        new IntColumnVector().appendObject("text");
+    }
+}